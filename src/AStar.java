@@ -20,6 +20,9 @@ public abstract class AStar {
 //	Index3 rotIndexes[];
 	protected HashMap<ArrayList<Index3>,EnergyTuple> energyTuples;
 	
+	//rotamer triples pruned by DEE (null if triples are not used)
+	protected PrunedTriples prunedTriples;
+	
 	double retConfE;
 	int numExpanded = 0;
 	
@@ -29,15 +32,32 @@ public abstract class AStar {
 	PrintStream outPS = System.out;
 	
 	abstract PGQueueNode doAStar(boolean run1);
+	
+	//Returns the conformations of this search one at a time, in order of increasing lower bound;
+	//	newSearch is false when continuing a search that has already returned conformations
+	public ConfEnumerator enumerate(boolean newSearch){
+		return new ConfEnumerator(this, newSearch);
+	}
 
 	public void stopSlaves() {
 		//Do nothing by default
 	}
 	
+	//Stops any slave processes and releases the expansion queue; called once the search is finished
+	public void close() {
+		stopSlaves();
+		if(curExpansion != null)
+			curExpansion.close();
+	}
+	
 	public void setEnergyTuples(HashMap<ArrayList<Index3>, EnergyTuple> eTups) {
 		energyTuples = eTups;
 	}
 	
+	public void setPrunedTriples(PrunedTriples triples) {
+		prunedTriples = triples;
+	}
+	
 	void addNodeBack(PGQueueNode node){
 		curExpansion.insert(node);
 	}
@@ -52,8 +72,8 @@ public abstract class AStar {
 
 		int index1;
 		//Setup CurConf
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 //			index1 = nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 			//Find Tuples
 			Index3 i1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//rotIndexes[index1];
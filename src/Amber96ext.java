@@ -2579,6 +2579,12 @@ public class Amber96ext implements ForceField, Serializable {
 			hbondPotential.calculateHBondGradient(curIndex,m);
 	}
 
+	//True if calculateGradient is known to match calculateTotalEnergy;
+	//the H-bond gradient has not been checked against its energy
+	public boolean hasAnalyticGradient(){
+		return !doHBondE;
+	}
+
 	// This code computes the gradient of the electrostatic and vdw energy terms
 	// The computed gradient is in the molecule's gradient member variable
 	private void calculateEVGradient(int curIndex){
@@ -2598,18 +2604,23 @@ public class Amber96ext implements ForceField, Serializable {
 		
 		int numHalfNBterms = 0; int numNBterms = 0;
 		double halfNBterms[] = null; double nbTerms[] = null;
+		int halfNBev[] = null; int nbEv[] = null;
 
 		if (curIndex==-1){ //full gradient is computed
 			numHalfNBterms = numHalfNonBondedTerms;
 			halfNBterms = halfNonBondedTerms;
+			halfNBev = halfNBeval;
 			numNBterms = numberNonBonded;
 			nbTerms = nonBondedTerms;
+			nbEv = NBeval;
 		}
 		else { //partial gradient is computed, based on flexible residue curIndex
 			numHalfNBterms = numPartHalfNonBonded[curIndex];
 			halfNBterms = partHalfNonBonded[curIndex];
+			halfNBev = partHalfNBeval[curIndex];
 			numNBterms = numPartNonBonded[curIndex];
 			nbTerms = partNonBonded[curIndex];
+			nbEv = partNBeval[curIndex];
 		}
 
 		// Note: Bmult = vdwMultiplier^6 and Amult = vdwMultiplier^12
@@ -2670,6 +2681,16 @@ public class Amber96ext implements ForceField, Serializable {
 			coulombTerm = (chargeij * tmpCoulFact) / rij3;
 			term1 = 12 * Aij / rij14;
 			term2 = 6 * Bij / rij8;
+
+			// Same halfNBeval masking as calculateEVEnergy
+			if (halfNBev[i] == 2)
+				term1 = term2 = 0.0;
+			else if (halfNBev[i] == 3)
+				coulombTerm = 0.0;
+			else if (halfNBev[i] == 0) {
+				term1 = term2 = 0.0;
+				coulombTerm = 0.0;
+			}
 			term3 = term1 - term2 + coulombTerm;
 			
 			
@@ -2699,7 +2720,7 @@ public class Amber96ext implements ForceField, Serializable {
 					tempTerm_i = solvScale * ( (coeff * dGi_free * Math.exp(-Xij*Xij) * Vj_coeff * V_j) / (lambda_i * rij3)
 							+ (coeff * dGj_free * Math.exp(-Xji*Xji) * Vi_coeff * V_i) / (lambda_j * rij3) ) ;
 
-					term3 += tempTerm_i;	
+					term3 -= tempTerm_i; //the pair solvation energy is subtracted (energyTerms[3] -= tmpE)
 				}	
 			}
 			
@@ -2749,9 +2770,19 @@ public class Amber96ext implements ForceField, Serializable {
 			if (distDepDielect) //distance-dependent dielectric
 				tmpCoulFact = (tmpCoulFact * 2) / rij;
 
-			coulombTerm = (chargeij * coulombFactor) / rij3;
+			coulombTerm = (chargeij * tmpCoulFact) / rij3;
 			term1 = 12 * Aij / rij14;
 			term2 = 6 * Bij / rij8;
+
+			// Same NBeval masking as calculateEVEnergy
+			if (nbEv[i] == 2)
+				term1 = term2 = 0.0;
+			else if (nbEv[i] == 3)
+				coulombTerm = 0.0;
+			else if (nbEv[i] == 0) {
+				term1 = term2 = 0.0;
+				coulombTerm = 0.0;
+			}
 			term3 = term1 - term2 + coulombTerm;
 			
 			if(doSolvationE){
@@ -2780,7 +2811,7 @@ public class Amber96ext implements ForceField, Serializable {
 					tempTerm_i = solvScale * ( (coeff * dGi_free * Math.exp(-Xij*Xij) * Vj_coeff * V_j) / (lambda_i * rij3)
 							+ (coeff * dGj_free * Math.exp(-Xji*Xji) * Vi_coeff * V_i) / (lambda_j * rij3) ) ;
 
-					term3 += tempTerm_i;	
+					term3 -= tempTerm_i; //the pair solvation energy is subtracted (energyTerms[3] -= tmpE)
 				}	
 			}
 			
@@ -145,6 +145,14 @@ public class CCDMinimizer {
         //No constraints specified until minimize() is called
     }
 
+    //Makes the minimizer selected in the settings (CCD, or L-BFGS if LBFGSMinimizer.useLBFGS)
+    public static CCDMinimizer newMinimizer( ObjectiveFunction ofn, boolean useCorners ){
+        if(LBFGSMinimizer.useLBFGS)
+            return new LBFGSMinimizer(ofn, useCorners);
+        else
+            return new CCDMinimizer(ofn, useCorners);
+    }
+
     public DoubleMatrix1D minimize() {
 
         long minStartTime = System.currentTimeMillis();
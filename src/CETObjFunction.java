@@ -156,6 +156,18 @@ public class CETObjFunction implements ObjectiveFunction, Serializable {
         return val;
     }
 
+    //The continuous energy terms don't have analytic gradients, so use finite differences
+    public DoubleMatrix1D getGradient(DoubleMatrix1D x){
+
+        setDOFs(x);
+
+        DoubleMatrix1D grad = DoubleFactory1D.dense.make(numDOFs);
+        for(int dof=0; dof<numDOFs; dof++)
+            grad.set(dof, LBFGSMinimizer.numericalDerivative(this, dof, x.get(dof)));
+
+        return grad;
+    }
+
     //Set just one degree of freedom
     public void setDOF(int dof, double val){
         
@@ -0,0 +1,130 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	ConfEnumerator.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily enumerates the conformations of an A* search (PGAStar, WCSPSearch, ILPSearch, ...)
+ * in order of increasing lower bound.
+ * 
+ * Each conformation is only searched for when the caller asks for it (hasNext() or next()),
+ * so a consumer can pull exactly as many conformations as it needs. The returned RotConf holds
+ * the conformation (actual rotamer numbers) and the search's lower bound on its energy.
+ *
+ */
+public class ConfEnumerator implements Iterator<RotConf>, Iterable<RotConf> {
+
+	private AStar search;
+	
+	private boolean run1; //the next call to doAStar() sets up the search
+	private RotConf nextConf = null; //extracted, but not returned yet
+	private boolean exhausted = false;
+	private boolean closed = false;
+	
+	private long numEnumerated = 0;
+	
+	//If newSearch is false, the enumeration continues a search that has already returned conformations
+	ConfEnumerator(AStar search, boolean newSearch){
+		this.search = search;
+		this.run1 = newSearch;
+	}
+	
+	public boolean hasNext(){
+		if (nextConf == null && !exhausted){
+			PGQueueNode node = search.doAStar(run1);
+			run1 = false;
+			if (node == null || node.actualConf == null) //no valid conformations remaining
+				exhausted = true;
+			else
+				nextConf = new RotConf(node.actualConf, node.fScore);
+		}
+		return nextConf != null;
+	}
+	
+	public RotConf next(){
+		if (!hasNext())
+			throw new NoSuchElementException();
+		RotConf conf = nextConf;
+		nextConf = null;
+		numEnumerated++;
+		return conf;
+	}
+	
+	public void remove(){
+		throw new UnsupportedOperationException();
+	}
+	
+	public Iterator<RotConf> iterator(){
+		return this;
+	}
+	
+	//The number of conformations returned so far
+	public long numEnumerated(){
+		return numEnumerated;
+	}
+	
+	public AStar getSearch(){
+		return search;
+	}
+	
+	//Stops the search (and any slave processes it uses) and releases its queue; no more conformations are returned after this
+	public void close(){
+		if (!closed){
+			closed = true;
+			exhausted = true;
+			nextConf = null;
+			search.close();
+		}
+	}
+}
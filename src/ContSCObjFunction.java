@@ -129,6 +129,10 @@ public class ContSCObjFunction implements ObjectiveFunction, Serializable {
 	// If true then dihedral energies are computed and
 	//  used in minimization
 
+	boolean useCoordGrad = true;//Use the energy function's Cartesian gradient in getGradient
+	boolean coordGradChecked = false;//It is checked once against finite differences and dropped if they disagree
+	static double COORD_GRAD_TOL = 1e-2;//relative tolerance for that check (abs. for derivatives below 1)
+
 
 	boolean minimizePerturbations = true;
 
@@ -674,6 +678,108 @@ public class ContSCObjFunction implements ObjectiveFunction, Serializable {
 
 
 
+	//Gradient of getValue at x
+	//Dihedral and strand translation derivatives are computed from the Cartesian gradient of the energy
+	//function; perturbations, strand rotations, and energy functions without a Cartesian gradient
+	//(e.g. with dihedral energies or H-bonds) use finite differences, as does everything if the
+	//Cartesian gradient fails checkCoordGradient
+	public DoubleMatrix1D getGradient(DoubleMatrix1D x){
+
+		setDOFs(x);
+
+		double coordGrad[] = new double[3*m.numberOfAtoms];
+		boolean haveCoordGrad = useCoordGrad && (efunc!=null) && efunc.addCoordGradient(0, 1, coordGrad);
+
+		DoubleMatrix1D grad = DoubleFactory1D.dense.make(numDOFs);
+
+		for(int dof=0; dof<numDOFs; dof++){
+
+			DegreeOfFreedom curDOF = m.DOFs[DOFNums[dof]];
+
+			if( haveCoordGrad && curDOF.type==DegreeOfFreedom.SCDIHEDRAL ){
+				int str = getDihedStrNum(dof);
+				int j = getDihedStrBasedNum(dof,str);
+				grad.set(dof, getDihedDerivative(str, j, coordGrad));
+			}
+			else if( haveCoordGrad && curDOF.type==DegreeOfFreedom.STRRIGIDMOTION && curDOF.rigidDOFNum<3 ){
+				//translation: sum of the gradient along that dimension over the strand's atoms
+				Strand curStrand = m.strand[curDOF.strandNum];
+				double deriv = 0;
+				for(int res=0; res<curStrand.numberOfResidues; res++){
+					for(Atom at : curStrand.residue[res].atom)
+						deriv += coordGrad[3*at.moleculeAtomNumber + curDOF.rigidDOFNum];
+				}
+				grad.set(dof, deriv);
+			}
+			else
+				grad.set(dof, LBFGSMinimizer.numericalDerivative(this, dof, x.get(dof)));
+		}
+
+		if( haveCoordGrad && !coordGradChecked )
+			checkCoordGradient(x, grad);
+
+		return grad;
+	}
+
+
+	//Compare grad (from the Cartesian gradient) to finite differences at x, the first time it's computed;
+	//if they disagree, grad is replaced by the finite differences and the Cartesian gradient isn't used again
+	private void checkCoordGradient(DoubleMatrix1D x, DoubleMatrix1D grad){
+
+		coordGradChecked = true;
+
+		for(int dof=0; dof<numDOFs; dof++){
+			double numDeriv = LBFGSMinimizer.numericalDerivative(this, dof, x.get(dof));
+			if( Math.abs(grad.get(dof)-numDeriv) > COORD_GRAD_TOL*Math.max(1,Math.abs(numDeriv)) ){
+				System.out.println("WARNING: analytic gradient for DOF "+dof+" is "+grad.get(dof)
+						+" but finite differences give "+numDeriv+"; using finite differences");
+				useCoordGrad = false;
+				break;
+			}
+		}
+
+		if( ! useCoordGrad ){
+			for(int dof=0; dof<numDOFs; dof++)
+				grad.set(dof, LBFGSMinimizer.numericalDerivative(this, dof, x.get(dof)));
+		}
+	}
+
+
+	//Derivative of the energy with respect to a dihedral (in degrees), given the Cartesian gradient:
+	//setTorsion rotates the distal atoms about the atom2->atom3 axis (right-handed for increasing torsion),
+	//so each moved atom contributes gradient . ( axis x (r - r3) )
+	private double getDihedDerivative(int str, int j, double coordGrad[]){
+
+		int at2x3 = 3*strDihedralAtNums[str][j][1];
+		int at3x3 = 3*strDihedralAtNums[str][j][2];
+		double coords[] = m.actualCoordinates;
+
+		double axis[] = new double[3];
+		double axisMag = 0;
+		for(int i=0; i<3; i++){
+			axis[i] = coords[at3x3+i] - coords[at2x3+i];
+			axisMag += axis[i]*axis[i];
+		}
+		axisMag = Math.sqrt(axisMag);
+		for(int i=0; i<3; i++)
+			axis[i] /= axisMag;
+
+		double deriv = 0;
+		for(int k=-1; k<strNumAtomsDistal[str][j]; k++){
+			//k==-1 is atom4 itself, which isn't in the distal list
+			int atx3 = 3 * ( (k==-1) ? strDihedralAtNums[str][j][3] : strDihedralDistal[str][j][k] );
+			double rx = coords[atx3] - coords[at3x3];
+			double ry = coords[atx3+1] - coords[at3x3+1];
+			double rz = coords[atx3+2] - coords[at3x3+2];
+			deriv += coordGrad[atx3] * ( axis[1]*rz - axis[2]*ry )
+					+ coordGrad[atx3+1] * ( axis[2]*rx - axis[0]*rz )
+					+ coordGrad[atx3+2] * ( axis[0]*ry - axis[1]*rx );
+		}
+
+		return deriv*Math.PI/180;
+	}
+
+
 	//Set the DOFs for the molecule in the state indicated by x
 	public void setDOFs(DoubleMatrix1D x){
 
@@ -98,8 +98,8 @@ public abstract class DEE {
 	//determines if distributed DEE is performed
 	boolean distrDEE = false;
 
-        //True for triples that are pruned (use tripleFlags[a][b][c] where a>b>c)
-        boolean tripleFlags[][][][][][][][][] = null;
+        //The pruned triples
+        PrunedTriples prunedTriples = null;
         boolean useTriples = false;
 
         //Use DEEPer
@@ -112,7 +112,7 @@ public abstract class DEE {
 			StrandRotamers strandLRot[], PrunedRotamers<Boolean> prunedRotAtRes, boolean doMin, double indInt[],
 			double pairInt[], boolean spFlags[][][][][][], boolean useSF, boolean minBB,
                         int mutRes2StrandP[], int mutRes2MutIndexP[], boolean typeDep, boolean iMinDEE, double Ival,
-			boolean mb, boolean dDEE, boolean residueMut[], boolean tripFlags[][][][][][][][][], boolean doPerts) {
+			boolean mb, boolean dDEE, boolean residueMut[], PrunedTriples tripFlags, boolean doPerts) {
 
 
                 doMinimize = doMin;
@@ -170,7 +170,7 @@ public abstract class DEE {
 		magicBullet = mb;
 
                 if(tripFlags != null){//Use triples...if they are not going to be used, tripFlags will be null
-                    tripleFlags = tripFlags;
+                    prunedTriples = tripFlags;
                     useTriples = true;
                 }
 
@@ -239,31 +239,15 @@ public abstract class DEE {
         boolean isPrunedTriple(int curPos1, int curAA1, int curRot1,
                 int curPos2, int curAA2, int curRot2,
                 int curPos3, int curAA3, int curRot3 ){
-            //Checks if a given triple is pruned in tripleFlags
+            //Checks if a given triple is pruned in prunedTriples
             //curPos1, curPos2, and curPos3 (positions among mutable residues of
             //residues 1, 2, and 3) are assumed to be all different (otherwise it's not a prunable triple)
-            //If useTriples==true, calling this with pruned rotamers might yield a null-pointer exception
-            //(because of the space-saving structure of tripleFlags)
+            //The order of the three rotamers does not matter
 
-            if(!useTriples)
+            if(!useTriples || prunedTriples == null)
                 return false;
 
-            if( curPos1 > curPos2 ){
-                if( curPos2 > curPos3 )
-                    return tripleFlags[curPos1][curAA1][curRot1][curPos2][curAA2][curRot2][curPos3][curAA3][curRot3];
-                else if ( curPos1 > curPos3 )
-                    return tripleFlags[curPos1][curAA1][curRot1][curPos3][curAA3][curRot3][curPos2][curAA2][curRot2];
-                else//index3 > index1 > index2
-                    return tripleFlags[curPos3][curAA3][curRot3][curPos1][curAA1][curRot1][curPos2][curAA2][curRot2];
-            }
-            else{
-                if( curPos1 > curPos3 )
-                    return tripleFlags[curPos2][curAA2][curRot2][curPos1][curAA1][curRot1][curPos3][curAA3][curRot3];
-                else if ( curPos2 > curPos3 )
-                    return tripleFlags[curPos2][curAA2][curRot2][curPos3][curAA3][curRot3][curPos1][curAA1][curRot1];
-                else
-                    return tripleFlags[curPos3][curAA3][curRot3][curPos2][curAA2][curRot2][curPos1][curAA1][curRot1];
-            }
+            return prunedTriples.contains(curPos1, curAA1, curRot1, curPos2, curAA2, curRot2, curPos3, curAA3, curRot3);
         }
 
 
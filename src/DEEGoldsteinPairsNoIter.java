@@ -1,4 +1,7 @@
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
 	This file is part of OSPREY.
@@ -123,6 +126,11 @@ public class DEEGoldsteinPairsNoIter {
 	//the single and pair interval terms in the DE pairs MinDEE criterion
 	double indIntMinDEE2Pos[][] = null;
 	double pairIntMinDEE2Pos[][] = null;
+	double maxIndIntAtPos[] = null;
+	double maxPairIntAtPos[][] = null;
+
+	//lowest pair energy of each rotamer with each position, used to skip competitors cheaply
+	PairEMinTable minTable = null;
 
 	//determines if magic bullet or full pairs is used
 	boolean magicBullet = false;
@@ -235,6 +243,15 @@ public class DEEGoldsteinPairsNoIter {
 
 			int numRes = pairwiseMinEnergyMatrix.numMutPos();		
 			
+			//The max intervals at each position and position pair do not depend on
+			//which two positions are left out, so compute them once
+			maxIndIntAtPos = new double[numRes];
+			maxPairIntAtPos = new double[numRes][numRes];
+			for (int posNum1=0; posNum1<numRes; posNum1++){
+				maxIndIntAtPos[posNum1] = MaxIndInt(posNum1);
+				for (int posNum2=0; posNum2<posNum1; posNum2++)
+					maxPairIntAtPos[posNum1][posNum2] = MaxPairInt(posNum1,posNum2);
+			}
 
 			indIntMinDEE2Pos = new double[numRes][numRes];
 			pairIntMinDEE2Pos = new double[numRes][numRes];
@@ -250,12 +267,17 @@ public class DEEGoldsteinPairsNoIter {
 			}
 		}
 
+		if (!magicBullet)
+			minTable = new PairEMinTable(pairwiseMinEnergyMatrix);
+
 		//Check for pairs pruning
-		int numRotForCurAAatPos1;
+		if(EnvironmentVars.numComputeThreads > 1){
+			PruneBlocksParallel();
+			return;
+		}
 
 		int prunedCurRun = 0;
 		boolean done = false;
-		int[] mbEntry = null;
 		numRuns = 1;
 		while (!done){
 
@@ -275,59 +297,7 @@ public class DEEGoldsteinPairsNoIter {
 
 						if ((!distrDEE)||(resInPair[j])){ //not distrDEE or cur res is in distr pair
 
-							if(magicBullet){
-								mbEntry = findMagicBullets(i, j);
-								if(mbEntry == null)
-									continue;
-							}
-							
-							int pairCtr = -1;
-							
-							//For all rot at i, i_r
-							for(int i_r_aa=0;i_r_aa < pairwiseMinEnergyMatrix.singles.E[i].length;i_r_aa++){
-								for(int i_r_rot=0;i_r_rot < pairwiseMinEnergyMatrix.singles.E[i][i_r_aa].length;i_r_rot++){
-								
-								//For all rot at j, j_s
-								for(int j_s_aa=0;j_s_aa < pairwiseMinEnergyMatrix.singles.E[j].length;j_s_aa++){
-									for(int j_s_rot=0;j_s_rot < pairwiseMinEnergyMatrix.singles.E[j][j_s_aa].length;j_s_rot++){	
-							
-
-									pairCtr++;
-									//I moved the i_r check down here to get the pairsCtr correct
-									if (pairwiseMinEnergyMatrix.singles.pruned[i][i_r_aa][i_r_rot] || 
-											pairwiseMinEnergyMatrix.singles.pruned[j][j_s_aa][j_s_rot])//not already pruned
-										continue;
-
-									
-									if(distrDEE && (pairCtr < pairStartEnd[0] || pairCtr >= pairStartEnd[1]) )
-										continue;
-									
-									if (pairwiseMinEnergyMatrix.pairs.pruned[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot]) //rotamer pair not already pruned
-										continue;
-										
-										
-									boolean pruned = false;
-
-									if(magicBullet){
-										//MBEntry holds i_t and j_u
-										pruned = CanEliminateUsing(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot,
-												mbEntry[1],mbEntry[2],mbEntry[4],mbEntry[5]);
-									} else {
-										pruned = CanEliminate(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot);
-									}
-
-									if (pruned){
-
-										pairwiseMinEnergyMatrix.pairs.pruned[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot]=true;
-										pairwiseMinEnergyMatrix.pairs.pruned[j][j_s_aa][j_s_rot][i][i_r_aa][i_r_rot]=true;
-
-										prunedCurRun++;
-									}
-									
-
-								}}
-
-							}}
+							prunedCurRun += PruneBlock(i, j);
 						}
 					}
 					//System.out.println("done");
@@ -356,6 +326,173 @@ public class DEEGoldsteinPairsNoIter {
 
 	}
 
+	//Checks every rotamer pair of the position pair (i,j) for pruning;
+	//returns the number of pairs pruned
+	private int PruneBlock(int i, int j){
+
+		int prunedCurBlock = 0;
+		int[] mbEntry = null;
+
+		if(magicBullet){
+			mbEntry = findMagicBullets(i, j);
+			if(mbEntry == null)
+				return 0;
+		}
+		
+		int pairCtr = -1;
+		
+		//For all rot at i, i_r
+		for(int i_r_aa=0;i_r_aa < pairwiseMinEnergyMatrix.singles.E[i].length;i_r_aa++){
+			for(int i_r_rot=0;i_r_rot < pairwiseMinEnergyMatrix.singles.E[i][i_r_aa].length;i_r_rot++){
+			
+			//For all rot at j, j_s
+			for(int j_s_aa=0;j_s_aa < pairwiseMinEnergyMatrix.singles.E[j].length;j_s_aa++){
+				for(int j_s_rot=0;j_s_rot < pairwiseMinEnergyMatrix.singles.E[j][j_s_aa].length;j_s_rot++){	
+		
+
+				pairCtr++;
+				//I moved the i_r check down here to get the pairsCtr correct
+				if (pairwiseMinEnergyMatrix.singles.pruned[i][i_r_aa][i_r_rot] || 
+						pairwiseMinEnergyMatrix.singles.pruned[j][j_s_aa][j_s_rot])//not already pruned
+					continue;
+
+				
+				if(distrDEE && (pairCtr < pairStartEnd[0] || pairCtr >= pairStartEnd[1]) )
+					continue;
+				
+				if (pairwiseMinEnergyMatrix.pairs.pruned[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot]) //rotamer pair not already pruned
+					continue;
+					
+					
+				boolean pruned = false;
+
+				if(magicBullet){
+					//MBEntry holds i_t and j_u
+					pruned = CanEliminateUsing(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot,
+							mbEntry[1],mbEntry[2],mbEntry[4],mbEntry[5]);
+				} else {
+					pruned = CanEliminate(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot);
+				}
+
+				if (pruned){
+
+					pairwiseMinEnergyMatrix.pairs.pruned[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot]=true;
+					pairwiseMinEnergyMatrix.pairs.pruned[j][j_s_aa][j_s_rot][i][i_r_aa][i_r_rot]=true;
+
+					prunedCurBlock++;
+				}
+				
+
+			}}
+
+		}}
+
+		return prunedCurBlock;
+	}
+
+	//Thread-parallel version of the pairs pass. Each (i,j) position pair is one task.
+	//Checking the block (i,j) reads the pruned pairs of every block that contains i or j,
+	//and writes only its own pairs, so two blocks that share no position are independent.
+	//Each block therefore waits only for the block before it (in the serial visiting order)
+	//at position i and at position j. Every block sees exactly the pruned flags it would see
+	//in the serial loop, so the result is identical to the serial version.
+	//An exception in any block is rethrown here once the blocks already started have stopped.
+	private void PruneBlocksParallel(){
+
+		int numPos = pairwiseMinEnergyMatrix.numMutPos();
+
+		//The blocks in the order the serial loop visits them
+		ArrayList<int[]> blocks = new ArrayList<int[]>();
+		for (int i=0; i<numPos; i++){
+			if (distrDEE && !resInPair[i])
+				continue;
+			for (int j=i+1; j<numPos; j++){
+				if(!pairwiseMinEnergyMatrix.areNeighbors(i, j))
+					continue;
+				if (distrDEE && !resInPair[j])
+					continue;
+				blocks.add(new int[] {i,j});
+			}
+		}
+
+		if(blocks.isEmpty())
+			return;
+
+		//For each block, the next block that shares position i and position j
+		BlockRoot root = new BlockRoot(blocks.size());
+		BlockTask tasks[] = new BlockTask[blocks.size()];
+		BlockTask lastAtPos[] = new BlockTask[numPos];
+		for(int b=0; b<blocks.size(); b++){
+			int block[] = blocks.get(b);
+			tasks[b] = new BlockTask(block[0], block[1], root);
+			for(int pos : block){
+				if(lastAtPos[pos] != null){
+					lastAtPos[pos].successors.add(tasks[b]);
+					tasks[b].numPredecessors.incrementAndGet();
+				}
+				lastAtPos[pos] = tasks[b];
+			}
+		}
+
+		//Find the blocks with no predecessors before starting any, since
+		//running blocks release their successors as they finish
+		for(BlockTask task : tasks){
+			if(task.numPredecessors.get() == 0)
+				root.ready.add(task);
+		}
+
+		//invoke joins the root, so a caller that is itself a pool worker helps
+		//run the blocks instead of blocking, and a failed block is rethrown
+		EnvironmentVars.getComputePool().invoke(root);
+	}
+
+	//Starts the blocks that have no predecessors; completes once every block has
+	//completed, or as soon as one of them throws
+	private static class BlockRoot extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		ArrayList<BlockTask> ready = new ArrayList<BlockTask>();
+
+		BlockRoot(int numBlocks){
+			super(null, numBlocks);
+		}
+
+		@Override
+		public void compute(){
+			for(BlockTask task : ready)
+				task.fork();
+			tryComplete();
+		}
+	}
+
+	//Prunes one position-pair block, then releases the blocks waiting on it.
+	//A block that throws completes the root exceptionally and releases nothing.
+	private class BlockTask extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		int i, j;
+		AtomicInteger numPredecessors = new AtomicInteger(0);
+		ArrayList<BlockTask> successors = new ArrayList<BlockTask>(2);
+
+		BlockTask(int i, int j, BlockRoot root){
+			super(root);
+			this.i = i;
+			this.j = j;
+		}
+
+		@Override
+		public void compute(){
+			PruneBlock(i, j);
+			for(BlockTask next : successors){
+				if(next.numPredecessors.decrementAndGet() == 0)
+					next.fork();
+			}
+			tryComplete();
+		}
+	}
+
 
 	//Check if the pair denoted by pairEntry can be pruned by mbEntry
 	//KER: Debug method that ignores the mbEntry given to the function
@@ -365,6 +502,8 @@ public class DEEGoldsteinPairsNoIter {
 		double checkSum=0;
 
 
+		double curEw;
+
 		double minIndVoxelE =pairwiseMinEnergyMatrix.singles.E[i][i_r_aa][i_r_rot] + pairwiseMinEnergyMatrix.singles.E[j][j_s_aa][j_s_rot]; //Individual energies
 		double minPairE = pairwiseMinEnergyMatrix.pairs.E[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot]; //Pair energy
 
@@ -395,10 +534,6 @@ public class DEEGoldsteinPairsNoIter {
 
 		if (checkSum > curEw)
 			return true;
-		else{
-			if(checkSum != 0.0)
-				minDiff = Math.max(minDiff,checkSum);
-		}
 
 		return false;
 	}
@@ -778,6 +913,8 @@ public class DEEGoldsteinPairsNoIter {
 
 		double checkSum;
 
+		double curEw;
+
 		minIndVoxelE = pairwiseMinEnergyMatrix.singles.E[i][i_r_aa][i_r_rot] + pairwiseMinEnergyMatrix.singles.E[j][j_s_aa][j_s_rot];// pairwiseMinEnergyMatrix[posNum1][AANumAtPos1][rotNumAtPos1][posNum1][0][0] + pairwiseMinEnergyMatrix[posNum2][AANumAtPos2][rotNumAtPos2][posNum2][0][0]; //formula term 1
 		minPairE = pairwiseMinEnergyMatrix.pairs.E[i][i_r_aa][i_r_rot][j][j_s_aa][j_s_rot];//pairwiseMinEnergyMatrix[posNum1][AANumAtPos1][rotNumAtPos1][posNum2][AANumAtPos2][rotNumAtPos2];
 
@@ -791,6 +928,12 @@ public class DEEGoldsteinPairsNoIter {
 			pairVoxelInterval = 0.0;
 			//}
 
+			//The lowest (i_r,j_s) interaction with each other position. If some position has no
+			//rotamer left that is compatible with the pair, every competitor's sum is -inf
+			double candMinE[] = new double[pairwiseMinEnergyMatrix.numMutPos()];
+			if (!CandidateMinE(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot,candMinE))
+				return false;
+
 
 			//For the particular position, compare the energy performance (one by one)
 			//of the remaining rotamer possibilities to that of the given rotamer:
@@ -840,6 +983,22 @@ public class DEEGoldsteinPairsNoIter {
 
 							maxPairE = pairwiseMinEnergyMatrix.pairs.E[i][i_t_aa][i_t_rot][j][j_u_aa][j_u_rot];//pairwiseMaxEnergyMatrix[posNum1][altAA1][altRot1][posNum2][altAA2][altRot2];
 
+							//Upper bound on formula term 5 from the cached tables: at each k the min difference is
+							//at most the candidate's lowest interaction minus the competitor's lowest interactions.
+							//If even that cannot reach the window, the full scan cannot either
+							minDiffPairVoxelE = 0;
+							for (int k=0; k<candMinE.length; k++){
+								if (k == i || k == j)
+									continue;
+								minDiffPairVoxelE += candMinE[k] - (minTable.get(i,i_t_aa,i_t_rot,k) + minTable.get(j,j_u_aa,j_u_rot,k));
+							}
+
+							checkSum = -templateInt + (minIndVoxelE + minPairE) - (maxIndVoxelE + maxPairE)
+									- indVoxelInterval - pairVoxelInterval + minDiffPairVoxelE;
+
+							if (checkSum <= curEw)
+								continue;
+
 							minDiffPairVoxelE = SumMinDiffPVE(i,i_r_aa,i_r_rot,j,j_s_aa,j_s_rot,i_t_aa,i_t_rot,j_u_aa,j_u_rot);	//formula term 5
 
 							checkSum = -templateInt + (minIndVoxelE + minPairE) - (maxIndVoxelE + maxPairE)
@@ -850,9 +1009,6 @@ public class DEEGoldsteinPairsNoIter {
 
 								return true;}//this rotamer can be pruned/eliminated
 							else {
-								if(checkSum != 0.0)
-									minDiff = Math.max(minDiff,checkSum);
-
 								if (magicBullet) //magic bullet pairs, so no further checks
 									return false;
 							}
@@ -867,6 +1023,52 @@ public class DEEGoldsteinPairsNoIter {
 		return false;
 	}
 
+	//Fills candMinE[k] with the lowest E(i_r,k_v)+E(j_s,k_v) over the rotamers k_v that are
+	//compatible with the pair; returns false if some position k has no such rotamer
+	private boolean CandidateMinE (int i, int i_r_aa, int i_r_rot,int j, int j_s_aa, int j_s_rot, double candMinE[]){
+
+		for (int k=0; k<candMinE.length; k++){
+
+			if (k == i || k == j)
+				continue;
+
+			boolean nbrI = pairwiseMinEnergyMatrix.areNeighbors(i, k);
+			boolean nbrJ = pairwiseMinEnergyMatrix.areNeighbors(j, k);
+			double minE = bigE;
+			boolean found = false;
+
+			for (int k_v_aa=0; k_v_aa<pairwiseMinEnergyMatrix.singles.pruned[k].length;k_v_aa++){
+				for (int k_v_rot=0; k_v_rot<pairwiseMinEnergyMatrix.singles.pruned[k][k_v_aa].length; k_v_rot++){
+
+					if (pairwiseMinEnergyMatrix.singles.pruned[k][k_v_aa][k_v_rot])
+						continue;
+
+					double min1 = 0, min2 = 0;
+					if (nbrI){
+						if (pairwiseMinEnergyMatrix.pairs.pruned[i][i_r_aa][i_r_rot][k][k_v_aa][k_v_rot])
+							continue;
+						min1 = pairwiseMinEnergyMatrix.pairs.E[i][i_r_aa][i_r_rot][k][k_v_aa][k_v_rot];
+					}
+					if (nbrJ){
+						if (pairwiseMinEnergyMatrix.pairs.pruned[j][j_s_aa][j_s_rot][k][k_v_aa][k_v_rot])
+							continue;
+						min2 = pairwiseMinEnergyMatrix.pairs.E[j][j_s_aa][j_s_rot][k][k_v_aa][k_v_rot];
+					}
+
+					if (min1+min2 < minE)
+						minE = min1+min2;
+					found = true;
+				}
+			}
+
+			if (!found)
+				return false;
+			candMinE[k] = minE;
+		}
+
+		return true;
+	}
+
 	////////////////////////////////////////////////////////////////////////
 
 	//////////////////////////////////////////////////////////////////////////////////
@@ -1095,7 +1297,7 @@ public class DEEGoldsteinPairsNoIter {
 
 			if ((curPos != withoutPos1)&&(curPos != withoutPos2)){
 
-				sum += maxScale*MaxIndInt(curPos);
+				sum += maxScale*maxIndIntAtPos[curPos];
 			}
 		}
 
@@ -1207,7 +1409,7 @@ public class DEEGoldsteinPairsNoIter {
 				for (int curPos2=0; curPos2<curPos1; curPos2++){
 					if ((curPos2 != withoutPos1)&&(curPos2 != withoutPos2)){
 
-						sum += maxScale*MaxPairInt(curPos1,curPos2);
+						sum += maxScale*maxPairIntAtPos[curPos1][curPos2];
 					}
 				}
 			}
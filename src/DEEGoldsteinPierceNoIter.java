@@ -62,6 +62,9 @@ import java.util.Iterator;
  * 
  */
 
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Performs simple Goldstein DEE rotamer pruning
  * 
@@ -104,10 +107,6 @@ public class DEEGoldsteinPierceNoIter {
 	double stericE = bigE;
 
 	private double curEw = 0.0;	//the max allowable difference from the GMEC (checkSum<=curEw should not be pruned)
-	
-
-	//the minimum difference in the checkSum when a rotamer cannot be pruned
-	private double minDiff = -Double.POSITIVE_INFINITY;
 
 	//the rotamer library
 	//RotamerLibrary rl = null;
@@ -231,11 +230,18 @@ public class DEEGoldsteinPierceNoIter {
 	//the corresponding r at i can be eliminated, and false otherwise
 	public void ComputeEliminatedRotConf(){
 
+		if(EnvironmentVars.numComputeThreads > 1){
+			ComputeEliminatedRotConfParallel();
+			return;
+		}
+
 		int numRotForCurAAatPos;
 		int prunedTotal = 0;
 		int prunedCurRun = 0;
 		boolean done = false;
 		numRuns = 1;
+		//only rotamers whose bounds changed since they were last checked are checked again
+		DEEWorklist worklist = new DEEWorklist(pairwiseMinEnergyMatrix);
 		while (!done){
 
 			prunedCurRun = 0;
@@ -256,8 +262,13 @@ public class DEEGoldsteinPierceNoIter {
 					if(distrDEE && (singleCtr < singleStartEnd[0] || singleCtr >= singleStartEnd[1]) )
 						continue;
 
+					if(!worklist.isDirty(curPos,curAA,curRot)) //would fail the check again
+						continue;
+					worklist.clear(curPos,curAA,curRot);
+
 					if (CanEliminate(curPos,curAA,curRot)){
 						pairwiseMinEnergyMatrix.singles.pruned[curPos][curAA][curRot] = true;
+						worklist.rotamerPruned(curPos,curAA,curRot);
 
 						prunedCurRun++;
 						prunedTotal++;
@@ -291,6 +302,109 @@ public class DEEGoldsteinPierceNoIter {
 
 	}
 
+	//Fork/join version of ComputeEliminatedRotConf(). In each iteration every unpruned
+	//rotamer is tested in parallel against the pruned flags as they were at the start of
+	//the iteration (nothing is written to the matrix while the tasks run). The eliminations
+	//are then applied in the same order the serial loop visits the rotamers; an elimination
+	//whose competitor was itself eliminated earlier in the same batch is not applied, and the
+	//rotamer is simply tested again in the next iteration. Iterations stop when no unpruned
+	//rotamer satisfies the criterion, which is the same stopping condition as the serial loop.
+	private void ComputeEliminatedRotConfParallel(){
+
+		//Candidate rotamers as {pos,aa,rot}, in the order the serial loop visits them
+		ArrayList<int[]> candidates = new ArrayList<int[]>();
+		for (int curPos=0; curPos<pairwiseMinEnergyMatrix.numMutPos(); curPos++){
+			if(distrDEE && !resInMut[curPos])
+				continue;
+
+			int singleCtr = -1;
+			for(int curAA=0; curAA<pairwiseMinEnergyMatrix.singles.E[curPos].length;curAA++){
+				for(int curRot=0; curRot<pairwiseMinEnergyMatrix.singles.E[curPos][curAA].length;curRot++){
+					singleCtr++;
+					if(distrDEE && (singleCtr < singleStartEnd[0] || singleCtr >= singleStartEnd[1]) )
+						continue;
+					candidates.add(new int[] {curPos,curAA,curRot});
+				}
+			}
+		}
+
+		boolean done = false;
+		numRuns = 1;
+		DEEWorklist worklist = new DEEWorklist(pairwiseMinEnergyMatrix);
+		while (!done){
+
+			//Only the rotamers whose bounds changed since they were last tested
+			ArrayList<int[]> curCandidates = new ArrayList<int[]>();
+			for(int c[] : candidates){
+				if(worklist.isDirty(c[0], c[1], c[2])){
+					worklist.clear(c[0], c[1], c[2]);
+					curCandidates.add(c);
+				}
+			}
+
+			int competitor[][] = new int[curCandidates.size()][];
+			EnvironmentVars.getComputePool().invoke(new GoldsteinTask(curCandidates, competitor, 0, curCandidates.size()));
+
+			int prunedCurRun = 0;
+			for(int i=0; i<competitor.length; i++){
+				if(competitor[i] == null)
+					continue;
+
+				int c[] = curCandidates.get(i);
+				if(pairwiseMinEnergyMatrix.getSinglePruned(c[0], competitor[i][0], competitor[i][1])){
+					worklist.markDirty(c[0], c[1], c[2]); //competitor was pruned in this batch, so test again next iteration
+					continue;
+				}
+
+				pairwiseMinEnergyMatrix.singles.pruned[c[0]][c[1]][c[2]] = true;
+				worklist.rotamerPruned(c[0], c[1], c[2]);
+				prunedCurRun++;
+			}
+
+			if (prunedCurRun==0) //no rotamers pruned this run, so done
+				done = true;
+			else 
+				numRuns++;
+		}
+	}
+
+	//Tests a range of candidate rotamers; competitor[i] is set to {aa,rot} of a
+	//rotamer that eliminates candidate i, or left null if it cannot be eliminated
+	private class GoldsteinTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		//number of candidates below which a task is not split further
+		static final int granularity = 8;
+
+		ArrayList<int[]> candidates;
+		int competitor[][];
+		int start, end;
+
+		GoldsteinTask(ArrayList<int[]> candidates, int competitor[][], int start, int end){
+			this.candidates = candidates;
+			this.competitor = competitor;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start <= granularity){
+				for(int i=start; i<end; i++){
+					int c[] = candidates.get(i);
+					if (!pairwiseMinEnergyMatrix.getSinglePruned(c[0], c[1], c[2]))
+						competitor[i] = FindCompetitor(c[0], c[1], c[2]);
+				}
+			}
+			else{
+				int mid = (start + end) / 2;
+				invokeAll(new GoldsteinTask(candidates, competitor, start, mid),
+						new GoldsteinTask(candidates, competitor, mid, end));
+			}
+		}
+	}
+
 	//Called only by ComputeEliminatedRotConf(.)
 	/*
 	 * The logic is as follows:
@@ -306,12 +420,20 @@ public class DEEGoldsteinPierceNoIter {
 	 * 
 	 */
 	private boolean CanEliminate (int pos,int i_r_aa,int i_r_rot){
+		return FindCompetitor(pos, i_r_aa, i_r_rot) != null;
+	}
+
+	//Returns {i_t_aa,i_t_rot} of the first rotamer at pos that eliminates i_r, or null if there is none.
+	//Only reads the matrix, so it can be called from several threads at once.
+	private int[] FindCompetitor (int pos,int i_r_aa,int i_r_rot){
 
 
 		double minDiffPairVoxelE;
 
 		double checkSum;
 
+		double curEw;
+
 		
 		//For all i_t
 		for(int i_t_aa=0; i_t_aa<pairwiseMinEnergyMatrix.singles.E[pos].length;i_t_aa++){
@@ -341,17 +463,14 @@ public class DEEGoldsteinPierceNoIter {
 				checkSum += minDiffPairVoxelE;
 
 				if (checkSum > curEw){
-					return true;}//this rotamer can be pruned/eliminated
-				else {
-					minDiff = Math.max(minDiff,checkSum);
-				}
+					return new int[] {i_t_aa,i_t_rot};}//this rotamer can be pruned/eliminated
 //			}
 		}}
 
 
 		//We have tried all of the other rotamers at the current position and none
-		//of them is able to prune the given rotamer, so we return false
-		return false;
+		//of them is able to prune the given rotamer, so we return null
+		return null;
 	}
 
 	////////////////////////////////////////////////////////////////////////
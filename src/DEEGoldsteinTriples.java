@@ -69,7 +69,7 @@ public class DEEGoldsteinTriples extends DEE {
 			StrandRotamers strandLRot[], boolean residueMut[],
 			boolean doMin, boolean spFlags[][][][][][], boolean mb, int mbNum, boolean dDEE,
                         boolean minBB, boolean typeDep, boolean aIMinDEE,
-                        double aIval, boolean tripFlags[][][][][][][][][], boolean doPerts) {
+                        double aIval, PrunedTriples tripFlags, boolean doPerts) {
 
             
                 init(arpMatrix, null, numResMutable,
@@ -82,7 +82,7 @@ public class DEEGoldsteinTriples extends DEE {
                     System.exit(1);
                 }
 
-                useTriples = true;//We are using triples even if tripleFlags was initialized to null (initializeTripleFlags can be called later)
+                useTriples = true;//We are using triples even if prunedTriples was initialized to null (initializeTripleFlags can be called later)
                 //This still needs to be set to true because it is used by DEE.isPrunedTriple
 
                 resInTriple= residueMut;
@@ -92,12 +92,12 @@ public class DEEGoldsteinTriples extends DEE {
 
 
 	//return the triple flags for all rotamer pairs
-	public boolean[][][][][][][][][] getTripleFlags(){
-		return tripleFlags;
+	public PrunedTriples getTripleFlags(){
+		return prunedTriples;
 	}
 
 	//Compute the conformations that can be eliminated
-        //Saves results to tripleFlags
+        //Saves results to prunedTriples
 	public void ComputeEliminatedRotConf(){
 
 		boolean done = false;
@@ -167,7 +167,7 @@ public class DEEGoldsteinTriples extends DEE {
                                                                                                                 if( (!eliminatedRotAtPos.get(curPos3,curAA3,curRot3)) 
                                                                                                                         && (!splitFlags[curPos2][curAA2][curRot2][curPos3][curAA3][curRot3])
                                                                                                                         && (!splitFlags[curPos1][curAA1][curRot1][curPos3][curAA3][curRot3])
-                                                                                                                        && (!tripleFlags[curPos3][curAA3][curRot3][curPos2][curAA2][curRot2][curPos1][curAA1][curRot1]) ){
+                                                                                                                        && (!prunedTriples.contains(curPos3,curAA3,curRot3,curPos2,curAA2,curRot2,curPos1,curAA1,curRot1)) ){
 
 
                                                                                                                     boolean pruned = false;
@@ -193,7 +193,7 @@ public class DEEGoldsteinTriples extends DEE {
                                                                                                                     }
 
                                                                                                                     if ( pruned ){
-                                                                                                                        tripleFlags[curPos3][curAA3][curRot3][curPos2][curAA2][curRot2][curPos1][curAA1][curRot1] = true;
+                                                                                                                        prunedTriples.add(curPos3,curAA3,curRot3,curPos2,curAA2,curRot2,curPos1,curAA1,curRot1);
                                                                                                                         prunedCurRun++;
                                                                                                                     }
                                                                                                                 }
@@ -451,8 +451,7 @@ public class DEEGoldsteinTriples extends DEE {
                                                             if( (!eliminatedRotAtPos.get(curPos3,curAA3,curRot3))
                                                             && (!splitFlags[curPos2][curAA2][curRot2][curPos3][curAA3][curRot3])
                                                             && (!splitFlags[curPos1][curAA1][curRot1][curPos3][curAA3][curRot3])
-                                                            && (!tripleFlags[curPos3][curAA3][curRot3][curPos2][curAA2][curRot2][curPos1][curAA1][curRot1]) ){
-                                                                //We don't need to call isPrunedTriples because we know curPos3 > curPos2 > curPos1
+                                                            && (!prunedTriples.contains(curPos3,curAA3,curRot3,curPos2,curAA2,curRot2,curPos1,curAA1,curRot1)) ){
 
 
                                                                 //This quantity is similar to the pruning condition but is just being evaluated for the single triple rather than comparing two
@@ -549,76 +548,27 @@ public class DEEGoldsteinTriples extends DEE {
 
 
 
-        public void initializeTripleFlags(){//Initializes the tripleFlags array
-            //Only initializes for each real, unpruned conformation once
-            //(permutations are handled by using descending order of position #)
-            
-            System.out.println("Initializing triple flags...");
-            tripleFlags = new boolean[numMutable][][][][][][][][];
-
-
-            for (int curPos1=0; curPos1<numMutable; curPos1++){//curPos1 and curPos2 are used differently here than in ComputeEliminatedRotConf:
-                //curPos1 > curPos2 > curPos3 here to compactly store the triple flags
-
-                int str1=strandMut.resStrand[curPos1];
-                int strResNum1=strandMut.resStrandNum[curPos1];
-
-                tripleFlags[curPos1] = new boolean[strandRot[str1].rl.getNumAAallowed()][][][][][][][];
-
-                for (int AA1=0; AA1<numAAtypes[curPos1]; AA1++){
-                    int curAA1 = strandRot[str1].getIndexOfNthAllowable(strResNum1,AA1);
-                    int numRotForCurAAatPos1 = getNumRot(str1, strResNum1, curAA1);
-
-                    tripleFlags[curPos1][curAA1] = new boolean[numRotForCurAAatPos1][][][][][][];
-
-                    for(int curRot1=0; curRot1<numRotForCurAAatPos1; curRot1++){
-
-                        if(!eliminatedRotAtPos.get(curPos1, curAA1, curRot1)){
-
-                            tripleFlags[curPos1][curAA1][curRot1] = new boolean[curPos1][][][][][];
-
-                            for(int curPos2=0; curPos2<curPos1; curPos2++){
-
-                                int str2=strandMut.resStrand[curPos2];
-                                int strResNum2=strandMut.resStrandNum[curPos2];
-
-                                tripleFlags[curPos1][curAA1][curRot1][curPos2] = new boolean[strandRot[str2].rl.getNumAAallowed()][][][][];
+        public void initializeTripleFlags(){//Initializes the prunedTriples set
+            //Only the number of rotamers for each AA type is needed; the set itself starts out empty
 
-                                for (int AA2=0; AA2<numAAtypes[curPos2]; AA2++){
-                                    int curAA2 = strandRot[str2].getIndexOfNthAllowable(strResNum2,AA2);
-                                    int numRotForCurAAatPos2 = getNumRot(str2, strResNum2, curAA2);
-
-                                    tripleFlags[curPos1][curAA1][curRot1][curPos2][curAA2] = new boolean[numRotForCurAAatPos2][][][];
-
-                                    for(int curRot2=0; curRot2<numRotForCurAAatPos2; curRot2++){
-
-                                        if(!eliminatedRotAtPos.get(curPos2, curAA2, curRot2)){
-                                            
-                                            tripleFlags[curPos1][curAA1][curRot1][curPos2][curAA2][curRot2] = new boolean[curPos2][][];
+            System.out.println("Initializing triple flags...");
 
-                                            for(int curPos3=0; curPos3<curPos2; curPos3++){
+            int numRot[][] = new int[numMutable][];
 
-                                                int str3=strandMut.resStrand[curPos3];
-                                                int strResNum3=strandMut.resStrandNum[curPos3];
+            for (int curPos=0; curPos<numMutable; curPos++){
 
-                                                tripleFlags[curPos1][curAA1][curRot1][curPos2][curAA2][curRot2][curPos3] =
-                                                        new boolean[strandRot[str3].rl.getNumAAallowed()][];
+                int str=strandMut.resStrand[curPos];
+                int strResNum=strandMut.resStrandNum[curPos];
 
-                                                for (int AA3=0; AA3<numAAtypes[curPos3]; AA3++){
-                                                    int curAA3 = strandRot[str3].getIndexOfNthAllowable(strResNum3,AA3);
-                                                    int numRotForCurAAatPos3 = getNumRot(str3, strResNum3, curAA3);
+                numRot[curPos] = new int[strandRot[str].rl.getNumAAallowed()];
 
-                                                    tripleFlags[curPos1][curAA1][curRot1][curPos2][curAA2][curRot2][curPos3][curAA3] = new boolean[numRotForCurAAatPos3];
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+                for (int AA=0; AA<numAAtypes[curPos]; AA++){
+                    int curAA = strandRot[str].getIndexOfNthAllowable(strResNum,AA);
+                    numRot[curPos][curAA] = getNumRot(str, strResNum, curAA);
                 }
             }
+
+            prunedTriples = new PrunedTriples(numRot);
         }
         
 
@@ -75,7 +75,7 @@ public class DEEIndirect extends DEE {
 			StrandRotamers strandLRot[], boolean residueMut[],
 			boolean doMin, boolean mb, boolean dDEE, boolean minBB,
 			boolean typeDep, boolean aIMinDEE,
-			double aIval, boolean tripFlags[][][][][][][][][], boolean doPerts, boolean inZ[]) {
+			double aIval, PrunedTriples tripFlags, boolean doPerts, boolean inZ[]) {
 
 		init(arpMatrix, null, arpMatrix.numMutPos(),
 				strMut, initEw, strandLRot, null, doMin, null, null,
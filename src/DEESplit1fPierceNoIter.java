@@ -197,6 +197,8 @@ public class DEESplit1fPierceNoIter {
 		int prunedCurRun = 0;
 		boolean done = false;
 		numRuns = 1;
+		//only rotamers whose bounds changed since they were last checked are checked again
+		DEEWorklist worklist = new DEEWorklist(pairwiseMinEnergyMatrix);
 
 		while (!done){
 
@@ -223,10 +225,15 @@ public class DEESplit1fPierceNoIter {
 					if(distrDEE && (singleCtr < singleStartEnd[0] || singleCtr >= singleStartEnd[1]) )
 						continue;
 					
+					if(!worklist.isDirty(curPos,i_r_aa,i_r_rot)) //would fail the check again
+						continue;
+					worklist.clear(curPos,i_r_aa,i_r_rot);
+					
 					setupDiffMatrix(curPos,i_r_aa,i_r_rot);
 
 					if (CanEliminate(curPos,i_r_aa,i_r_rot)){
 						pairwiseMinEnergyMatrix.singles.pruned[curPos][i_r_aa][i_r_rot] = true;
+						worklist.rotamerPruned(curPos,i_r_aa,i_r_rot);
 						prunedCurRun++;
 					}
 					
@@ -0,0 +1,139 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	DEEWorklist.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+/**
+ * Keeps track of which rotamers an iterative singles DEE driver has to check again.
+ * 
+ * The singles criteria (Goldstein and split-DEE) for r at i only become easier to
+ * satisfy when a rotamer s at a neighboring position j is pruned, since s is then
+ * dropped from the min over j. Pruning a competitor t at i can only make r harder
+ * to prune, and s never entered the bound for r if the pair (i_r,j_s) was already pruned.
+ * So when s at j is pruned, only the unpruned rotamers at the neighbors of j that are
+ * still paired with s are marked dirty. A rotamer that has been checked and is not
+ * dirty would fail the check again, so the drivers skip it; visiting the dirty
+ * rotamers in the usual order prunes exactly what the full sweep prunes.
+ *
+ */
+public class DEEWorklist {
+
+	private Emat emat;
+
+	//dirty[pos][aa][rot] is true if the rotamer has to be checked again
+	private boolean dirty[][][];
+
+	private int numDirty = 0;
+
+	//Every unpruned rotamer starts out dirty
+	DEEWorklist(Emat emat){
+		this.emat = emat;
+
+		dirty = new boolean[emat.numMutPos()][][];
+		for(int pos=0; pos<dirty.length; pos++){
+			dirty[pos] = new boolean[emat.singles.pruned[pos].length][];
+			for(int aa=0; aa<dirty[pos].length; aa++){
+				dirty[pos][aa] = new boolean[emat.singles.pruned[pos][aa].length];
+				for(int rot=0; rot<dirty[pos][aa].length; rot++){
+					if(!emat.singles.pruned[pos][aa][rot]){
+						dirty[pos][aa][rot] = true;
+						numDirty++;
+					}
+				}
+			}
+		}
+	}
+
+	public boolean isDirty(int pos, int aa, int rot){
+		return dirty[pos][aa][rot];
+	}
+
+	public boolean isEmpty(){
+		return numDirty == 0;
+	}
+
+	//Called when the rotamer is about to be checked
+	public void clear(int pos, int aa, int rot){
+		if(dirty[pos][aa][rot]){
+			dirty[pos][aa][rot] = false;
+			numDirty--;
+		}
+	}
+
+	public void markDirty(int pos, int aa, int rot){
+		if(!dirty[pos][aa][rot] && !emat.singles.pruned[pos][aa][rot]){
+			dirty[pos][aa][rot] = true;
+			numDirty++;
+		}
+	}
+
+	//Called after the rotamer (p,p_aa,p_rot) has been pruned: marks the rotamers whose bounds it was part of
+	public void rotamerPruned(int p, int p_aa, int p_rot){
+
+		clear(p, p_aa, p_rot);
+
+		for(int j=0; j<dirty.length; j++){
+			if(j == p || !emat.areNeighbors(j, p))
+				continue;
+
+			for(int j_aa=0; j_aa<dirty[j].length; j_aa++){
+				for(int j_rot=0; j_rot<dirty[j][j_aa].length; j_rot++){
+					if(emat.singles.pruned[j][j_aa][j_rot])
+						continue;
+					if(emat.pairs.pruned[j][j_aa][j_rot][p][p_aa][p_rot]) //s was never in the bound for this rotamer
+						continue;
+					markDirty(j, j_aa, j_rot);
+				}
+			}
+		}
+	}
+
+}
@@ -74,6 +74,15 @@ public abstract class EnergyFunction implements Serializable {
     //NOTE: some subclasses may not support partial computation and will return the entire energy regardless
 
 
+    //Adds coeff times the gradient of getEnergy(a) with respect to the molecule's atom coordinates
+    //(x,y,z for each atom, as in Molecule.gradient) to grad
+    //Returns false if there is no analytic gradient for this energy function, in which case
+    //grad may have been partially updated and shouldn't be used
+    public boolean addCoordGradient(int a, double coeff, double grad[]){
+        return false;
+    }
+
+
     //Add a term to the energy function by creating a MultiTermEnergyFunction
     //If this is already a MultiTermEnergyFunction then the term will be added directly
     //but this is in the overriding function MultiTermEnergyFunction.addTerm
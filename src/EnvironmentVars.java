@@ -55,6 +55,7 @@
 
 import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class EnvironmentVars {
@@ -110,6 +111,27 @@ public class EnvironmentVars {
     public static boolean useMPLP = false;
     public static int MPLP_iterations = 100;
     
+    //Number of threads used by the in-process parallel algorithms (e.g. fork/join DEE); 1 means serial
+    public static int numComputeThreads = 1;
+    private static ForkJoinPool computePool = null;
+    
+    //A* queue implementation: HEAP (unsynchronized d-ary heap) or BLOCKING (PriorityBlockingQueue)
+    public static String asQueueType = "HEAP";
+    //If positive, the A* queue keeps at most this many nodes in memory and spills the
+    //worst-scoring asQueueSpillFrac of them to localDir when the limit is exceeded
+    public static int asQueueMaxNodes = 0;
+    public static double asQueueSpillFrac = 0.5;
+    //Number of A* children below which scoring is not split further across the compute threads
+    public static int asScoreGranularity = 4;
+    //WCSP bounds and solutions are computed in process ("JAVA") or by running toulbar2 ("TOULBAR2")
+    public static String wcspSolver = "JAVA";
+    //If positive, GMEC enumeration minimizes conformations on this many threads while A* keeps extracting
+    public static int numMinimizerThreads = 0;
+    //If positive, the master merges finished energy matrix jobs on this many threads while it keeps dispatching
+    public static int numMergeThreads = 0;
+    //Max number of side-chain minimization results cached across searches (0 for no cache)
+    public static int minEnergyCacheSize = 0;
+    
         
         
 	public static String getDataDir() {
@@ -131,6 +153,22 @@ public class EnvironmentVars {
 	}
 	
 	
+	public static void setNumComputeThreads(int n) {
+		if(n < 1)
+			n = 1;
+		numComputeThreads = n;
+	}
+	
+	/**
+	 * Returns the fork/join pool shared by the in-process parallel algorithms.
+	 * The pool is created on first use with numComputeThreads threads.
+	 */
+	public static synchronized ForkJoinPool getComputePool() {
+		if(computePool == null)
+			computePool = new ForkJoinPool(numComputeThreads);
+		return computePool;
+	}
+	
 	public static void setForcefld(String frcefld) {
 		forcefld = FORCEFIELD.valueOf(frcefld.toUpperCase());
 	}
@@ -119,6 +119,23 @@ public class ForceFieldEnergy extends EnergyFunction {
     }
 
 
+    //Gradient of the partial energy (a==-1 for the full energy)
+    //Returns false, leaving grad unchanged, if the force field can't supply a matching gradient
+  @Override
+    public boolean addCoordGradient(int a, double coeff, double grad[]){
+
+        if( ! a96ff.hasAnalyticGradient() )
+            return false;
+
+        a96ff.calculateGradient(a);//this fills in m.gradient
+
+        for(int i=0; i<grad.length; i++)
+            grad[i] += coeff * m.gradient[i];
+
+        return true;
+    }
+
+
     
   @Override
     public Amber96ext getAmber96ext(){
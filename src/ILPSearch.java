@@ -31,6 +31,8 @@ public class ILPSearch extends AStar {
 		
 		GurobiOptimization.GurobiConf ilpConf = ilpOpt.optimize(emat,energyTuples);
 		dummy.actualConf = ilpConf.conf;
+		if(ilpConf.conf != null)
+			dummy.fScore = ilpOpt.getObjVal();
 		
 		ilpOpt.removeConf(ilpConf.conf);
 	
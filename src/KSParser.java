@@ -84,11 +84,16 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import mpi.MPI;
 import mpi.MPIException;
@@ -148,6 +153,7 @@ public class KSParser
 	}
 
 	int numThreads = 1;
+	int numWorkerProcs = 0; //if >0 the slaves are run as this many local worker processes over sockets
 
 	//Tags that are passed to denote MPI status 
 	final static int regTag = 1; //regular tag for MPI messages
@@ -170,6 +176,7 @@ public class KSParser
 	PrintStream outPS = System.out;
 	
 	Molecule[] mols = new Molecule[5];
+	private static ExecutorService statePool = null; //runs the states of a mutation concurrently (CONCURRENTSTATES)
 	RotamerLibrary[][] rotLibs = new RotamerLibrary[5][];
 	//make room to cache molecules and rotLibs for up to 5 configurations of strands
 	//though we may not need them all
@@ -193,19 +200,47 @@ public class KSParser
 
 			try{ handleDoMPI(args);} catch (Exception e){};
 		}
+		else if ((args.length>3)&&(args[0].equalsIgnoreCase("worker"))) { //worker process of a socket run
+
+			mpiRun = false;
+			int port = new Integer(args[1]);
+			int rank = new Integer(args[2]);
+			int numWorkers = new Integer(args[3]);
+
+			String tmp[] = new String[args.length-4]; //remove the worker arguments
+			System.arraycopy(args, 4, tmp, 0, tmp.length);
+			args = parseArgs(tmp);
+
+			MPItoThread.initializeWorker(port, rank, numWorkers);
+			KSParser.numProc = MPItoThread.numProc;
+
+			setConfigPars();
+			for(int i=0; i<mols.length;i++)
+				mols[i] = null;
+
+			try{ handleDoMPISlave(); } catch (Exception e){ e.printStackTrace(); }
+			System.exit(0);
+		}
 		else { //Threaded run
 			mpiRun = false;
 
 			args = parseArgs(args);
 
-			MPItoThread.initialize(mpiRun, numThreads); 
-			KSParser.numProc = MPItoThread.numProc;
-			//Store all the threads that are available for Kyle's "thread mpi"
-			MPItoThread.threadEle.put(Thread.currentThread(), new ThreadElement(0));
-			
-			//KER: If it isn't an mpiRun start extra threads so that we can simulate
-			//an mpiRun
-			MPItoThread.startThreads(this,Thread.currentThread());
+			if(numWorkerProcs > 0){
+				//Run the slaves as separate local processes that communicate over sockets
+				MPItoThread.initializeSockets(numWorkerProcs, cfgName);
+				KSParser.numProc = MPItoThread.numProc;
+			}
+			else{
+				MPItoThread.initialize(mpiRun, numThreads); 
+				KSParser.numProc = MPItoThread.numProc;
+				//Store all the threads that are available for Kyle's "thread mpi"
+				MPItoThread.threadEle.put(Thread.currentThread(), new ThreadElement(0));
+
+				//KER: If it isn't an mpiRun start extra threads so that we can simulate
+				//an mpiRun
+				MPItoThread.startThreads(this,Thread.currentThread());
+			}
 
 			outputProgInfo(); //output program information
 			setConfigPars(); //set the parameters from the configuration file
@@ -235,6 +270,12 @@ public class KSParser
 				System.arraycopy(args,2,temp,0,args.length-2);
 				args = temp;
 			}
+			else if(args[0].equalsIgnoreCase("-p")){
+				numWorkerProcs = new Integer(args[1]);
+				String temp []= new String[args.length-2];
+				System.arraycopy(args,2,temp,0,args.length-2);
+				args = temp;
+			}
 		}
 
 		return args;
@@ -320,6 +361,8 @@ public class KSParser
 			handleComputeEnergyMol(s);
 		else if (firstToken.equalsIgnoreCase("KSMaster"))
 			handleKSMaster(s);
+		else if (firstToken.equalsIgnoreCase("exportResults"))
+			KSResultStore.exportLog(getToken(s,2), getToken(s,3)); //results store, text log to write
 		else if (firstToken.equalsIgnoreCase("computeEmats"))
 			handleComputeAllPairwiseRotamerEnergies(s);
 
@@ -336,7 +379,7 @@ public class KSParser
 					+ "The available functions are: \n"
 					+ "doResEntropy, selectResidues, compStericOverlap, precomputeBackrubs,\n"
 					+ "doDEE, genStructDEE, generateRandConfs, fitEparams, computeEnergyMol,\n"
-					+ "KSMaster, computeEmats, genBackbones, identifyRots, makeStericShell,\n"
+					+ "KSMaster, exportResults, computeEmats, genBackbones, identifyRots, makeStericShell,\n"
 					+ "and fixStruct.\n"
 					+ "Exiting...";
 			System.out.println(output);	
@@ -348,7 +391,7 @@ public class KSParser
 	} // End parse function	
 
 	public static void cleanUpNodes(){
-		if (mpiRun || MPItoThread.exe != null){ //exit from all slave nodes
+		if (mpiRun || MPItoThread.exe != null || MPItoThread.socketRun){ //exit from all slave nodes
 			CommucObj cObj[] = new CommucObj[1];
 			cObj[0] = null;
 			for (int curProc=1; curProc<numProc; curProc++){
@@ -356,6 +399,7 @@ public class KSParser
 			}
 			if(MPItoThread.exe!=null)
 				MPItoThread.exe.shutdown();
+			MPItoThread.stopProcesses();
 		}
 	}
 
@@ -390,6 +434,8 @@ public class KSParser
 
 		if(mpiRun)
 			System.out.println("OSPREY running on "+numProc+" processor(s)");
+		else if(MPItoThread.socketRun)
+			System.out.println("OSPREY running on "+numWorkerProcs+" worker process(es)");
 		else
 			System.out.println("OSPREY running on "+numThreads+" thread(s)");
 		System.out.println();
@@ -420,6 +466,8 @@ public class KSParser
 		EnvironmentVars.setEntropyScale(entropyScale);
 
 		EnvironmentVars.setLocalDir(rParams.getValue("LOCALDIR","./"));
+		EnvironmentVars.setNumComputeThreads(new Integer((String)rParams.getValue("COMPUTETHREADS","1")));
+		EnvironmentVars.numMergeThreads = (new Integer((String)rParams.getValue("MERGETHREADS","0"))).intValue();
 
 		double hbondScale = (new Double((String)rParams.getValue("HBONDSCALE","0"))).doubleValue();
 		String dsspFile = rParams.getValue("DSSPFILE","");
@@ -498,33 +546,11 @@ public class KSParser
 	}
 
 	// This function generates all possible combinations of n choose m
+	//  (use MutationCombinations directly to unrank them one at a time)
 	public void generateCombinations(int residueMutatable[][], int n, int m) {
 
-		int curIndex[] = new int[1];
-		int curComb[] = new int[n];
-		curIndex[0] = 0;
-		generateCombHelper(0,n,curIndex,residueMutatable,curComb,0,m);
-	}
-	private void generateCombHelper(int depth, int maxDepth, int curIndex[], int
-			residueMutatable[][], int curComb[], int numUsed, int maxToUse){
-
-		if (depth >= maxDepth){
-			if (numUsed == maxToUse) {
-				for (int i=0; i<maxDepth; i++) {
-					residueMutatable[curIndex[0]][i] = curComb[i];
-				}
-				curIndex[0]++;
-			}
-			return;
-		}
-
-		curComb[depth] = 0;
-		generateCombHelper(depth+1,maxDepth,curIndex,residueMutatable,curComb,numUsed,maxToUse);
-
-		if (numUsed < maxToUse) {
-			curComb[depth] = 1;
-			generateCombHelper(depth+1,maxDepth,curIndex,residueMutatable,curComb,numUsed+1,maxToUse);
-		}
+		for (int i=0; i<residueMutatable.length; i++)
+			MutationCombinations.unrank(i,n,m,residueMutatable[i]);
 	}
 	// end combination code
 
@@ -1032,29 +1058,14 @@ public class KSParser
 		MutableResParams strandMut = mp.strandMut;
 		String[][] strandDefault = mp.strandDefault;
 
-		// Create the mutation list with estimated energies
-		Set<OneMutation> mutSet = new TreeSet<OneMutation>();
+		List<OneMutation> mutSet = null;
 
 
-		// Generate all combinations (include (n choose m), (n choose m-1), ... , (n choose 1), and (n choose 0) )
-		int numCombAll = 0;
+		// All combinations (include (n choose m), (n choose m-1), ... , (n choose 1), and (n choose 0) );
+		//  each one is a 0/1 array, 1 indicates that that residues can mutate.
+		//  They are unranked lazily when the mutation list is generated
 		int numMutations = Math.min(kstarSettings.numMutations, numberMutable);
-		for (int i=numMutations; i>=0; i--)
-			numCombAll += factorial(numberMutable).divide(factorial(numberMutable-i).multiply(factorial(i))).intValue();
-		int residueMutatableAll[][] = new int[numCombAll][numberMutable];
-		int curInd = 0;
-		for (int i=numMutations; i>=0; i--){
-			int numCombCur = factorial(numberMutable).divide(factorial(numberMutable-i).multiply(factorial(i))).intValue();
-			int residueMutatableCur[][] = new int[numCombCur][numberMutable];
-			generateCombinations(residueMutatableCur,numberMutable,i);
-			for (int j=0; j<numCombCur; j++){
-				residueMutatableAll[curInd] = residueMutatableCur[j];
-				curInd++;
-			}
-		}
-
-		// At this point each row of residueMutatble is a 0/1 array, 1 indicates
-		//  that that residues can mutate
+		MutationCombinations mutComb = new MutationCombinations(numberMutable, numMutations, 0);
 
 		if(minSettings.selectPerturbations)//Need to run the automatic perturbation selection
 			//This only needs to be done once though: after that the perturbations can be read from pertFile
@@ -1170,7 +1181,7 @@ public class KSParser
 			loadCETMatrix(sParams,rs,COMPLEX,Double.POSITIVE_INFINITY,false, emat);
 
 		//Load mutation list for distribution
-		mutSet = hybridKSLoadMutList(kstarSettings.mutFileName, mp, numCombAll, residueMutatableAll,
+		mutSet = hybridKSLoadMutList(kstarSettings.mutFileName, mp, mutComb,
 				sParams, kstarSettings.targetVol, kstarSettings.volWindow);
 
 		OneMutation[] mutArray = mutSet.toArray(new OneMutation[1]);
@@ -1225,13 +1236,24 @@ public class KSParser
 			}
 		}
 
-		//Check to see if any of the strands sequences are repeated so we don't have to compute them more than once
-		checkDuplicateMutations(mutArray, mp.m);
-
 		//Check to see if all the sequences are valid, given the energy matrix
 		checkSequenceValidity(mutArray,mp.m,emat);
 		
+		//Best-first search: order the sequences by their K* score bounds
+		KSSeqBounds seqBounds = null;
+		if(kstarSettings.numTopSeqs > 0)
+			seqBounds = new KSSeqBounds(mutArray, emat, mp.m, kstarSettings.numTopSeqs);
+
+		//Check to see if any of the strands sequences are repeated so we don't have to compute them more than once
+		checkDuplicateMutations(mutArray, mp.m);
+		
 		MutationManager mutMan = new MutationManager(runName,mutArray,false);
+		if(!kstarSettings.resultStoreName.equalsIgnoreCase("none"))
+			mutMan.setResultStore(new KSResultStore(kstarSettings.resultStoreName));
+		if(seqBounds != null){
+			seqBounds.initSearch();
+			mutMan.setSeqBounds(seqBounds);
+		}
 
 //		mutMan.setMutationSearch(true);
 		mutMan.setMolecule(mp.m);
@@ -1299,6 +1321,7 @@ public class KSParser
 			e.printStackTrace();
 			System.exit(1);
 		}
+		mutMan.closeLog();
 
 		System.out.println("DONE: K* computation");
 	}
@@ -1485,21 +1508,23 @@ public class KSParser
 	//	}
 
 	//Loads the mutation sequence list for Hybrid MinDEE-K*; computes a list if one cannot be loaded
-	private Set<OneMutation> hybridKSLoadMutList (String mutFileName, MolParameters mp,
-			int numComb, int[][] residueMutatable,ParamSet sParams,double targetVol,double volWindow ){
+	private List<OneMutation> hybridKSLoadMutList (String mutFileName, MolParameters mp,
+			MutationCombinations mutComb,ParamSet sParams,double targetVol,double volWindow ){
 
 		// Look for previous mutation file
 		System.out.println();
 		System.out.print("Looking for mutation list file ");
-		Set<OneMutation> mutSet = loadMutationList(mutFileName,mp.strandMut.numMutPos(),mp);
+		List<OneMutation> mutSet = loadMutationList(mutFileName,mp.strandMut.numMutPos(),mp);
 
 
 		if (mutSet == null) {
 
 			mp.m.aaRotLib.loadVolFile(); //load the rotamer volume file
 
-			// Create the mutation list with estimated energies
-			mutSet = new TreeSet<OneMutation>();
+			// Sequences are spooled to disk, numbered, as they are found; each sequence
+			//  is generated once, so the finished spool is the mutation list file
+			String spoolFileName = mutFileName+".spool";
+			PrintStream spool = setupOutputFile(spoolFileName);
 			RotamerSearch rs = new RotamerSearch(mp.m,mp.strandMut.numMutPos(), mp.strandsPresent, hElect, hVDW, hSteric, true,
 					true, 0.0f, stericThresh, softStericThresh, distDepDielect, dielectConst, doDihedE, doSolvationE, solvScale, softvdwMultiplier, 
 					false, "", false, false, false, null,hbonds, mp.strandMut);
@@ -1510,9 +1535,11 @@ public class KSParser
 				mp.strandMut.checkWT(mp.strandPresent, sParams);
 
 			int curNumSeq = 0;
-			for(int i=0; i<numComb; i++) {
+			long combNum = 0;
+			for(int[] residueMutatable : mutComb) {
 				// Reset each amino acid type
-				System.out.print("Starting mutation combination " + i + " ... ");
+				System.out.print("Starting mutation combination " + combNum + " ... ");
+				combNum++;
 
 
 				//for(int str=0;str<strandMut.length;str++)
@@ -1521,7 +1548,7 @@ public class KSParser
 				for(int j=0; j< mp.strandMut.allMut.length;j++){
 					Residue r = mp.m.residue[mp.strandMut.allMut[j]];
 					r.clearAllowable(); //clear the allowables before we set them
-					if (residueMutatable[i][j] == 1)
+					if (residueMutatable[j] == 1)
 						setAllowablesHelper(sParams, addWT, r);
 					else
 						r.setAllowable(r.defaultAA); //the default type is set last
@@ -1529,49 +1556,27 @@ public class KSParser
 
 
 				// Perform simple mutation search for this set of mutatable residues
-				curNumSeq = rs.simpleMasterMutationSearch(mp.strandMut, mp.strandMut.allMut.length,curNumSeq,mutSet, targetVol-volWindow,
+				curNumSeq = rs.simpleMasterMutationSearch(mp.strandMut, mp.strandMut.allMut.length,curNumSeq,residueMutatable,spool, targetVol-volWindow,
 						targetVol+volWindow);
 
 				System.out.println("finished");
 			}
+			spool.close();
 
 			System.out.println("Sequences remaining after volume filter "+curNumSeq);
 
-			// We now have all the mutations in mutArray, collapse the mutArray
-			//  to the actual number of mutations we have.
-
-			//KER: mutArray is now a set so we don't need to reallocate a smaller array
-			//OneMutation newArray[] = new OneMutation[curNumSeq];
-			//System.out.println("Allocated newArray");
-			//System.out.println("Initial Length of mutArray: "+mutArray.length);
-			//System.arraycopy(mutArray,0,newArray,0,curNumSeq);
-			//mutArray = newArray;
-			System.out.println("Trimmed Length of mutArray: "+mutSet.size());
+			//The spool only becomes the mutation list once it is complete
+			if(!new File(spoolFileName).renameTo(new File(mutFileName))){
+				System.out.println("ERROR: could not rename "+spoolFileName+" to "+mutFileName);
+				System.exit(1);
+			}
 
-			//KER: mutArray is now a set so there should be no duplicates to begin with
-			/*System.out.print("Removing duplicates...");
-				mutArray = removeDuplicates(mutArray);
-				System.out.println("done");*/
+			System.out.print("Reading spooled mutation list");
+			mutSet = loadMutationList(mutFileName,mp.strandMut.numMutPos(),mp);
+			if (mutSet == null)
+				mutSet = new ArrayList<OneMutation>();
 
 			System.out.println(mutSet.size()+" unique mutation sequences found"); //in volume range "+(targetVol-volWindow)+" to "+(targetVol+volWindow));
-			BigInteger numConfs = BigInteger.ZERO;
-
-
-			//Set Seq Num
-			Iterator<OneMutation> i = mutSet.iterator();
-			int ctr=1;
-			while(i.hasNext()){
-				OneMutation tmp = i.next();
-				tmp.mutNum = ctr;
-				ctr++;
-			}
-
-			//while(i.hasNext()){
-			//	OneMutation tmp = i.next();
-			//	numConfs = numConfs.add(tmp.numConfUB.add(tmp.numConfB));
-			//}
-			//System.out.println("Total number of conformations (bound and unbound) for all sequences: "+numConfs);// Save mutation list
-			saveMutationList(mutSet,mutFileName,mp);
 		}
 
 
@@ -1587,6 +1592,20 @@ public class KSParser
 	public HashMap<String,OneMutation> readResumeFile(HashMap<String,OneMutation> resumeResults, String resumeFilename, 
 			int numMutable, boolean distrDACS, boolean PEMcomp, int initDepth, Molecule m, MutableResParams strandMut) {
 
+		//An indexed results store holds the sequence of each result, so there is no log to parse
+		if (!distrDACS && KSResultStore.isStore(resumeFilename)){
+			HashMap<String,BigDecimal> scores = KSResultStore.readScores(resumeFilename);
+			for(String seq : scores.keySet()){
+				OneMutation oneMut = new OneMutation();
+				oneMut.score = scores.get(seq);
+				oneMut.resTypes = new int[numMutable];
+				for(int q=0;q<numMutable;q++)
+					oneMut.resTypes[q] = new Integer(getToken(seq,q+1)).intValue();
+				resumeResults.put(seq, oneMut);
+			}
+			return (resumeResults);
+		}
+
 		BufferedReader bufread = null;
 		try {
 			File file = new File(resumeFilename);		
@@ -1678,8 +1697,8 @@ public class KSParser
 	//	}
 
 
-	// Attempts to read a list of mutations from file
-	public Set<OneMutation> loadMutationList(String fName, int numMutable, MolParameters mp) {
+	// Attempts to read a list of mutations from file; the mutations are returned in file order
+	public List<OneMutation> loadMutationList(String fName, int numMutable, MolParameters mp) {
 
 		BufferedReader bufread = null;
 		try {
@@ -1695,7 +1714,7 @@ public class KSParser
 		boolean done = false;
 		String str = null;
 		int resultNum = 0;
-		Set<OneMutation> mutList = new TreeSet<OneMutation>();
+		List<OneMutation> mutList = new ArrayList<OneMutation>();
 
 		while (!done) {
 			try {
@@ -1725,9 +1744,7 @@ public class KSParser
 					}
 				}
 
-				boolean added = mutList.add(tmp);
-				if(!added)
-					System.out.println("Duplicate Seq: "+str);
+				mutList.add(tmp);
 
 				resultNum++;
 				/*if (resultNum >= mutList.length){
@@ -1783,29 +1800,20 @@ public class KSParser
 	//Removes duplicate mutations (for which the mutation sequence is the same) from a given list
 	public OneMutation [] removeDuplicates(OneMutation mutArray[]){
 
-		//First, sort the list alphabetically, according to the mutation sequence
+		//Keep the first mutation with each sequence
+		HashSet<String> seen = new HashSet<String>();
+		ArrayList<OneMutation> unique = new ArrayList<OneMutation>();
+		for (OneMutation mut : mutArray){
+			if (seen.add(Arrays.toString(mut.resTypes)))
+				unique.add(mut);
+		}
+		mutArray = unique.toArray(new OneMutation[unique.size()]);
+
+		//Sort the list alphabetically, according to the mutation sequence
 		RyanQuickSort rqs = new RyanQuickSort();
 		rqs.Sort(mutArray);
 		rqs = null;
 
-		//Copy mutArray into nArray, excluding duplicate entries
-		OneMutation nArray[] = new OneMutation[mutArray.length];
-
-		//Copy the first element
-		nArray[0] = mutArray[0];
-		int nAIndex = 1;
-
-		//Compare each mutation with the previous one in the list
-		for (int i=1; i<mutArray.length; i++){ //for each mutation
-			if (!(mutArray[i].isSame(mutArray[i-1].resTypes))){ //different sequence
-				nArray[nAIndex] = mutArray[i];
-				nAIndex++;
-			}
-		}
-
-		mutArray = new OneMutation[nAIndex];
-		System.arraycopy(nArray,0,mutArray,0,mutArray.length);
-
 		return mutArray;//return the reduced list
 	}
 
@@ -1902,18 +1910,15 @@ public class KSParser
 		}
 		
 		//KER: Run through all of the partition function calculations
+		//The states are independent apart from the inter-mutation pruning of the complex,
+		//so with CONCURRENTSTATES they run as separate tasks that are joined here
+		boolean concurrentStates = (new Boolean((String)cObj.params.getValue("CONCURRENTSTATES","false"))).booleanValue();
+		ArrayList<Integer> runs = new ArrayList<Integer>();
 		for(int runNum = 0; runNum<fullMol.numberOfStrands+1; runNum++) {
-			long startTime = System.currentTimeMillis();
-
 			boolean lastRun = false;
 			if(runNum == fullMol.numberOfStrands)
 				lastRun = true;
 
-			int curStrForMatrix = runNum;
-			if(lastRun)
-				curStrForMatrix = -1;
-
-			
 			//Skip this run if this is a duplicate sequence that
 			//is being calculated somewhere else
 			//Code will break if lastRun is skipped, Also there should
@@ -1926,129 +1931,233 @@ public class KSParser
 					continue;
 				}
 			}
-			
-			String unboundStr = Integer.toString(runNum);
-			int strandsPresent = 0;
-			boolean strandPresent[] = new boolean[cObj.strandPresent.length];
 
-			boolean notFullComplex = (runNum != fullMol.numberOfStrands) ;
-			int numMut = 0;
-			for(int str=0;str<strandPresent.length;str++){
-				strandPresent[str] = (1==allCombos[runNum][str]);
+			if(cObj.doPerturbations)
+				Perturbation.idealizeSC = cObj.idealizeSC;
 
-				if(strandPresent[str]){
+			//Set up the molecules before any state starts, since the unbound
+			//molecules are copied from the complex the first time they are needed
+			setupStateMolecule(fullMol, runNum);
+			runs.add(runNum);
+		}
 
-					strandsPresent++;
-					numMut += numMutPerStrand[str];
-				}
-			}
+		if(concurrentStates && runs.size() > 1)
+			hybridKSStatesConcurrently(cObj, runs, fullMol, allCombos, numMutPerStrand, offsetMutPerStrand);
+		else {
+			for(int runNum : runs)
+				hybridKSState(cObj, runNum, fullMol, allCombos, numMutPerStrand, offsetMutPerStrand, cObj.q);
+		}
 
-			ParamSet params = null;
-			String minEmatrixFile = null;
-//			String maxEmatrixFile = null;
-			String strandPertFile = null;
-			//TODO:fix this hack....
-			if ( notFullComplex && ((new Boolean((String)cObj.params.getValue("USEUNBOUNDSTRUCT"+unboundStr,"false"))).booleanValue()) ) { //use a different input PDB structure for the unbound case
-				params = new ParamSet();
-				params.setParamsValues(cObj.params.getParams(), cObj.params.getValues(), cObj.params.getCurNum());
-				params.setValue("PDBNAME",params.getValue("UNBOUNDPDBNAME"+unboundStr));
-				//params.setValue("PDBLIGNUM","-1");
-				minEmatrixFile = cObj.arpFilenameMin;
-//				maxEmatrixFile = cObj.arpFilenameMax;
-				minEmatrixFile = minEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
-//				maxEmatrixFile = maxEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
-				strandPertFile = "STR"+unboundStr+"."+cObj.pertFile;
-				//minEmatrixFile = params.getValue("MINENERGYMATRIXNAMEUNBOUND"+unboundStr)+".dat";
-				//maxEmatrixFile = params.getValue("MAXENERGYMATRIXNAMEUNBOUND"+unboundStr)+".dat";
-			}
-			else { //a single input PDB structure is used for the bound and unbound computations
-				params = cObj.params;
-				minEmatrixFile = cObj.arpFilenameMin;
-//				maxEmatrixFile = cObj.arpFilenameMax;
-				if(notFullComplex){
-					minEmatrixFile = minEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
-//					maxEmatrixFile = maxEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
-					strandPertFile = "STR"+unboundStr+"."+cObj.pertFile;
+		System.out.print("## CurMut: "+cObj.curMut+" Finished Sequence: ");
+		for(int i=0;i<cObj.currentMutation.length;i++)
+			System.out.print(" "+cObj.currentMutation[i]);
+		System.out.println(" &&");
+
+		cObj.m = null; //We don't need to pass back the molecule
+		return cObj;
+	}
+
+	//Sets up (and caches in mols) the molecule for state runNum of a Hybrid MinDEE-K* run
+	private void setupStateMolecule(Molecule fullMol, int runNum){
+
+		int curStrForMatrix = runNum;
+		if(runNum == fullMol.numberOfStrands)
+			curStrForMatrix = -1;
+
+		Molecule stateMol = null;
+		if(mols[curStrForMatrix+1] == null){
+			
+			// For each unbound entity, copy the full molecule and then delete the other strands.
+			if(runNum != fullMol.numberOfStrands){
+				//KER: Test to not have to load the molecule from scratch
+				Molecule m = null;
+				try {
+					m = (Molecule)MPItoThread.deepCopy(fullMol);
+				} catch (Exception e) {
+					// TODO Auto-generated catch block
+					e.printStackTrace();
 				}
-				else{
-					minEmatrixFile = minEmatrixFile.replace(".dat", "_COM.dat");
-//					maxEmatrixFile = maxEmatrixFile.replace(".dat", "_COM.dat");
-					strandPertFile = cObj.pertFile;
+
+				int strOffset = 0;
+				for(int i=0; i<fullMol.numberOfStrands;i++){
+					if(i != runNum){
+						m.deleteStrand(strOffset+i);
+						strOffset--;
+					}
 				}
-			}
+				stateMol = m;
 
-			if(cObj.doPerturbations)
-				Perturbation.idealizeSC = cObj.idealizeSC;
+			}else{
+				stateMol = fullMol;
+			}
+			mols[curStrForMatrix+1] = stateMol;
+		}
+	}
 
-			//Setup the molecule system
-			MolParameters mp = new MolParameters();
-			mp.numOfStrands = cObj.numberOfStrands;	
-			mp.strandLimits = cObj.strandLimits;
-			mp.strandPresent = strandPresent;
-			mp.strandsPresent = strandsPresent;
-
-			//Setup the molecule system	for each of the strands
-			if(mols[curStrForMatrix+1] == null){
-				
-				// For each unbound entity, copy the full molecule and then delete the other strands.
-				if(runNum != fullMol.numberOfStrands){
-					//KER: Test to not have to load the molecule from scratch
-					Molecule m = null;
-					try {
-						m = (Molecule)MPItoThread.deepCopy(fullMol);
-					} catch (Exception e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
+	/**
+	 * Runs the given states (unbound strands and complex) of one mutation sequence as separate
+	 * tasks on the state pool; the last one runs on the calling thread. Only the unbound partition
+	 * functions known before the tasks start are used for the inter-mutation pruning of the complex.
+	 */
+	private void hybridKSStatesConcurrently(final CommucObj cObj, ArrayList<Integer> runs, final Molecule fullMol,
+			final int[][] allCombos, final int[] numMutPerStrand, final int[] offsetMutPerStrand){
+
+		final BigDecimal[] unboundQ = cObj.q.clone();
+		//Let the pool threads use this slave's message endpoint (threaded runs only)
+		final ThreadElement te = (MPItoThread.threadEle == null) ? null : MPItoThread.threadEle.get(Thread.currentThread());
+
+		ArrayList<Future<?>> states = new ArrayList<Future<?>>();
+		for(int i=0; i<runs.size()-1; i++){
+			final int runNum = runs.get(i);
+			states.add(getStatePool().submit(new Runnable(){
+				public void run(){
+					if(te != null)
+						MPItoThread.threadEle.put(Thread.currentThread(), te);
+					try{
+						hybridKSState(cObj, runNum, fullMol, allCombos, numMutPerStrand, offsetMutPerStrand, unboundQ);
 					}
-
-					int strOffset = 0;
-					for(int i=0; i<fullMol.numberOfStrands;i++){
-						if(i != runNum){
-							m.deleteStrand(strOffset+i);
-							strOffset--;
-						}
+					finally{
+						if(te != null)
+							MPItoThread.threadEle.remove(Thread.currentThread());
 					}
-					mp.m = m;
+				}
+			}));
+		}
+
+		hybridKSState(cObj, runs.get(runs.size()-1), fullMol, allCombos, numMutPerStrand, offsetMutPerStrand, unboundQ);
+
+		for(Future<?> state : states){
+			try{
+				state.get();
+			}
+			catch(Exception e){
+				System.out.println("ERROR: a state computation for mutation "+cObj.curMut+" failed");
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
 
-				}else{
-					mp.m = fullMol;
+	//The pool shared by all slaves of this process for running the states of a mutation concurrently
+	private static synchronized ExecutorService getStatePool(){
+		if(statePool == null){
+			statePool = Executors.newCachedThreadPool(new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					return t;
 				}
-				mols[curStrForMatrix+1] = mp.m;
+			});
+		}
+		return statePool;
+	}
+
+	/**
+	 * Computes the partition function for state runNum (an unbound strand, or the complex
+	 * if runNum is the number of strands) of the mutation sequence in cObj. unboundQ holds the
+	 * unbound partition functions used for the inter-mutation pruning of the complex (null if unknown).
+	 */
+	private void hybridKSState(CommucObj cObj, int runNum, Molecule fullMol, int[][] allCombos,
+			int[] numMutPerStrand, int[] offsetMutPerStrand, BigDecimal[] unboundQ){
+
+		long startTime = System.currentTimeMillis();
+
+		boolean lastRun = false;
+		if(runNum == fullMol.numberOfStrands)
+			lastRun = true;
+
+		int curStrForMatrix = runNum;
+		if(lastRun)
+			curStrForMatrix = -1;
+
+		String unboundStr = Integer.toString(runNum);
+		int strandsPresent = 0;
+		boolean strandPresent[] = new boolean[cObj.strandPresent.length];
+
+		boolean notFullComplex = (runNum != fullMol.numberOfStrands) ;
+		int numMut = 0;
+		for(int str=0;str<strandPresent.length;str++){
+			strandPresent[str] = (1==allCombos[runNum][str]);
+
+			if(strandPresent[str]){
+
+				strandsPresent++;
+				numMut += numMutPerStrand[str];
+			}
+		}
+
+		ParamSet params = null;
+		String minEmatrixFile = null;
+//			String maxEmatrixFile = null;
+		String strandPertFile = null;
+		//TODO:fix this hack....
+		if ( notFullComplex && ((new Boolean((String)cObj.params.getValue("USEUNBOUNDSTRUCT"+unboundStr,"false"))).booleanValue()) ) { //use a different input PDB structure for the unbound case
+			params = new ParamSet();
+			params.setParamsValues(cObj.params.getParams(), cObj.params.getValues(), cObj.params.getCurNum());
+			params.setValue("PDBNAME",params.getValue("UNBOUNDPDBNAME"+unboundStr));
+			//params.setValue("PDBLIGNUM","-1");
+			minEmatrixFile = cObj.arpFilenameMin;
+//				maxEmatrixFile = cObj.arpFilenameMax;
+			minEmatrixFile = minEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
+//				maxEmatrixFile = maxEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
+			strandPertFile = "STR"+unboundStr+"."+cObj.pertFile;
+			//minEmatrixFile = params.getValue("MINENERGYMATRIXNAMEUNBOUND"+unboundStr)+".dat";
+			//maxEmatrixFile = params.getValue("MAXENERGYMATRIXNAMEUNBOUND"+unboundStr)+".dat";
+		}
+		else { //a single input PDB structure is used for the bound and unbound computations
+			params = cObj.params;
+			minEmatrixFile = cObj.arpFilenameMin;
+//				maxEmatrixFile = cObj.arpFilenameMax;
+			if(notFullComplex){
+				minEmatrixFile = minEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
+//					maxEmatrixFile = maxEmatrixFile.replace(".dat", "_"+unboundStr+".dat");
+				strandPertFile = "STR"+unboundStr+"."+cObj.pertFile;
 			}
 			else{
-				mp.m = mols[curStrForMatrix+1];
+				minEmatrixFile = minEmatrixFile.replace(".dat", "_COM.dat");
+//					maxEmatrixFile = maxEmatrixFile.replace(".dat", "_COM.dat");
+				strandPertFile = cObj.pertFile;
 			}
+		}
+
+		//Setup the molecule system
+		MolParameters mp = new MolParameters();
+		mp.numOfStrands = cObj.numberOfStrands;	
+		mp.strandLimits = cObj.strandLimits;
+		mp.strandPresent = strandPresent;
+		mp.strandsPresent = strandsPresent;
+		mp.m = mols[curStrForMatrix+1];
 
-			//			loadMutationParams(cObj.params, mp);
-			//			mp.numberMutable = getNumberMutable(mp.strandMut);
+		//			loadMutationParams(cObj.params, mp);
+		//			mp.numberMutable = getNumberMutable(mp.strandMut);
 
 //			System.out.println("NumMutable "+mp.strandMut.numMutPos());
 
-			//KER: Create local variables so I don't have to add mp to everything...
-			Molecule m = mp.m;
-			
-			int numMutPos = 0;
-			try{
-			for(Residue r: mp.m.residue)
-				if(r.isMutable)
-					numMutPos++;
-			}catch(Exception E){
-				E.printStackTrace();
-			}
-			
-			MutableResParams strandMut = new MutableResParams(numMutPos, mp.m.numberOfStrands);
+		//KER: Create local variables so I don't have to add mp to everything...
+		Molecule m = mp.m;
+		
+		int numMutPos = 0;
+		try{
+		for(Residue r: mp.m.residue)
+			if(r.isMutable)
+				numMutPos++;
+		}catch(Exception E){
+			E.printStackTrace();
+		}
+		
+		MutableResParams strandMut = new MutableResParams(numMutPos, mp.m.numberOfStrands);
 
-			//If we shorten the molecule we need to shorten the allMut as well
-			int ctr = 0;
+		//If we shorten the molecule we need to shorten the allMut as well
+		int ctr = 0;
 //			if(!lastRun){
-				for(Residue r:mp.m.residue){
-					if(r.isMutable){
-						//Get the molResNum relative to the short molecule
-						strandMut.addRes(ctr, r, m.rotLibForStrand(r.strandNumber), cObj.addOrigRots);
+			for(Residue r:mp.m.residue){
+				if(r.isMutable){
+					//Get the molResNum relative to the short molecule
+					strandMut.addRes(ctr, r, m.rotLibForStrand(r.strandNumber), cObj.addOrigRots);
 //						allMut[ctr] = m.mapPDBresNumToMolResNum(r.getResNumberString());
-						ctr++;
-					}
+					ctr++;
 				}
+			}
 //			}else{
 //				for(Residue r:fullMol.residue){
 //					if(r.isMutable){
@@ -2060,170 +2169,163 @@ public class KSParser
 //				}
 //			}
 
-			double minEBound = 0.0;
-			BigInteger numConfsPrunedMinDEESteric = null;
-			double initEw = cObj.initEw;
+		double minEBound = 0.0;
+		BigInteger numConfsPrunedMinDEESteric = null;
+		double initEw = cObj.initEw;
 
-			
-			
-			RotamerSearch rs = new RotamerSearch(m,numMutPos,strandsPresent, hElect, hVDW, hSteric, true,
-					true, cObj.epsilon, cObj.stericThresh, cObj.softStericThresh, cObj.distDepDielect, 
-					cObj.dielectConst,cObj.doDihedE,cObj.doSolvationE,cObj.solvScale,cObj.vdwMult,
-					cObj.doPerturbations,strandPertFile, cObj.minimizePerts, false, false, cObj.es,hbonds,strandMut);
+		
+		
+		RotamerSearch rs = new RotamerSearch(m,numMutPos,strandsPresent, hElect, hVDW, hSteric, true,
+				true, cObj.epsilon, cObj.stericThresh, cObj.softStericThresh, cObj.distDepDielect, 
+				cObj.dielectConst,cObj.doDihedE,cObj.doSolvationE,cObj.solvScale,cObj.vdwMult,
+				cObj.doPerturbations,strandPertFile, cObj.minimizePerts, false, false, cObj.es,hbonds,strandMut);
 
 
-			rs.useCCD = (new Boolean((String)cObj.params.getValue("USECCD","true"))).booleanValue();
-			CCDMinimizer.EConvTol = (new Double((String)cObj.params.getValue("ECONVTOL","0.01"))).doubleValue();
+		rs.useCCD = (new Boolean((String)cObj.params.getValue("USECCD","true"))).booleanValue();
+		CCDMinimizer.EConvTol = (new Double((String)cObj.params.getValue("ECONVTOL","0.01"))).doubleValue();
+		LBFGSMinimizer.useLBFGS = (new Boolean((String)cObj.params.getValue("USELBFGS","false"))).booleanValue();
+		EnvironmentVars.minEnergyCacheSize = (new Integer((String)cObj.params.getValue("MINCACHESIZE","0"))).intValue();
 
-			boolean doDih = false;
-			double lowestBound = Double.POSITIVE_INFINITY;
-			Emat emat = new Emat(minEmatrixFile,doDih,m);
-			rs.setMinMatrix(emat);
+		boolean doDih = false;
+		double lowestBound = Double.POSITIVE_INFINITY;
+		Emat emat = new Emat(minEmatrixFile,doDih,m);
+		rs.setMinMatrix(emat);
 
-			outPS.print("Starting sequence: ");
+		outPS.print("Starting sequence: ");
 
-			ctr=0;
-			for(Residue r: m.residue){
-				if(r.isMutable){
-					r.clearAllowable();
-					//KER: Note: the offsetMutPerStrand[fullMol.numOfStrands] is 0
-					try{
-						String newAA = r.rl.getAAName(cObj.currentMutation[ctr+offsetMutPerStrand[runNum]]);
-						outPS.print(newAA+" ");
-						r.setAllowable(newAA);
-						//Set all of the allowedRCs for the current residue
-						ArrayList<ResidueConformation> allowedResConf;
-						if(lastRun)
-							allowedResConf = fullMol.strand[r.strandNumber].rcl.getRCsPosType(r.strandResidueNumber, newAA);
-						else
-							allowedResConf = fullMol.strand[runNum].rcl.getRCsPosType(r.strandResidueNumber, newAA);
-						
-						for(ResidueConformation rc: allowedResConf)
-							r.setAllowable(rc);
-						
-						r.flexible = true;
-
-						//KER: Mutate to the proper amino acids
-						MutUtils.changeResidueType(m, r.moleculeResidueNumber, newAA, true);
-						MutUtils.applyRC(m, r, r.getRCsForType(newAA).get(0));//We set the rotamer for the minimizer initialization
-					}catch(Exception E){
-						E.printStackTrace();
-						System.out.println("DELETE ME");
-					}
-					ctr++;
-				}else{
-					r.flexible = false;
-				}
-			}
-			outPS.println("");
-			outPS.flush();
+		ctr=0;
+		for(Residue r: m.residue){
+			if(r.isMutable){
+				r.clearAllowable();
+				//KER: Note: the offsetMutPerStrand[fullMol.numOfStrands] is 0
+				try{
+					String newAA = r.rl.getAAName(cObj.currentMutation[ctr+offsetMutPerStrand[runNum]]);
+					outPS.print(newAA+" ");
+					r.setAllowable(newAA);
+					//Set all of the allowedRCs for the current residue
+					ArrayList<ResidueConformation> allowedResConf;
+					if(lastRun)
+						allowedResConf = fullMol.strand[r.strandNumber].rcl.getRCsPosType(r.strandResidueNumber, newAA);
+					else
+						allowedResConf = fullMol.strand[runNum].rcl.getRCsPosType(r.strandResidueNumber, newAA);
+					
+					for(ResidueConformation rc: allowedResConf)
+						r.setAllowable(rc);
+					
+					r.flexible = true;
 
-			//Prune all rotamers that don't belong to the allowed position
-			emat.pruneNotAllowed(m);
-			emat.removePrunedRotReducedMem(false);
-			
-			
-			//Prune Steric
-			int[] prunedStericPerPos = RotamerSearch.DoPruneStericTemplate(emat,cObj.stericE,true,outPS);
-
-			//			if(cObj.doPerturbations)
-			//				rs.setupRCs(cObj.addWTRot);
-
-			boolean KSCONFTHRESH = cObj.numKSconfs.compareTo(BigInteger.ZERO) > 0;
-			double Ival = cObj.Ival;
-			boolean finished = false;
-			boolean finalRun = true;
-			//DEE Section
-			boolean runDEE = true;
-			int loopCtr = 1;
-			
-			int numSplits = 0;
-			while(!finished || !finalRun){
-				double DEEIval = Ival;
-				
-				//Run DEE with the current Ival
-				int maxLoopNum = Integer.MAX_VALUE;
-
-				if(runDEE)
-					runDEE(cObj.useSF, cObj.doMinimization, cObj.minimizeBB, cObj.scaleInt,
-							cObj.initEw,cObj.maxIntScale,false,DEEIval, emat,
-							true, false,cObj.stericE, cObj.params,0,maxLoopNum,cObj.deeSettings,
-							rs.strandRot,strandMut,rs.m,rs.doPerturbations);
-
-				//Compute the Ec value and prunedIsSteric[] (last parameter is true)
-				rs.DoMinBounds(cObj.pruningE,initEw, cObj.useSF, true, false);
-
-
-				//TODO: Fix usingInitialBest and setting initialBest
-				boolean usingInitialBest = (!notFullComplex);
-				BigDecimal initialBest = (new BigDecimal("0.0"));
-
-				//Inter-mutation pruning
-				if (usingInitialBest){
-					initialBest = cObj.bestScore.multiply(new BigDecimal(cObj.gamma * cObj.epsilon));
-					for(int i=0;i<allCombos.length-1;i++){
-						if(cObj.q[i] == null) 
-							//This can happen when one of the sequences is a duplicate and the original sequences
-							//hasn't been computed yet. Since we don't know q, initialBest = 0
-							initialBest = BigDecimal.ZERO;
-						else
-							initialBest = initialBest.multiply(cObj.q[i]);
-					}
+					//KER: Mutate to the proper amino acids
+					MutUtils.changeResidueType(m, r.moleculeResidueNumber, newAA, true);
+					MutUtils.applyRC(m, r, r.getRCsForType(newAA).get(0));//We set the rotamer for the minimizer initialization
+				}catch(Exception E){
+					E.printStackTrace();
+					System.out.println("DELETE ME");
 				}
+				ctr++;
+			}else{
+				r.flexible = false;
+			}
+		}
+		outPS.println("");
+		outPS.flush();
 
+		//Prune all rotamers that don't belong to the allowed position
+		emat.pruneNotAllowed(m);
+		emat.removePrunedRotReducedMem(false);
+		
+		
+		//Prune Steric
+		int[] prunedStericPerPos = RotamerSearch.DoPruneStericTemplate(emat,cObj.stericE,true,outPS);
 
-				if(cObj.es.useEPIC){
-					//Load the CET Matrix and then make the smaller version that matches the emat
-					//This should always already be calculated
-					loadCETMatrix(cObj.params,rs,curStrForMatrix,0,true, emat);
-				
-				}
-				//strandPresent from loadCETMatrix is the strand number if positive,
-				//-1 for the complex
-				//which corresponds to curStr-1 here
-				//THIS SHOULD ALREADY BE CALCULATED, ONCE FOR ALL MUTANTS...
+		//			if(cObj.doPerturbations)
+		//				rs.setupRCs(cObj.addWTRot);
 
-				SaveConfsParams saveConfsParams = new SaveConfsParams(cObj.numTopConfs, cObj.saveTopConfs, cObj.printTopConfs, false);
-				AStarResults asr = rs.slaveDoRotamerSearch(runNum, cObj.computeEVEnergy,cObj.doMinimization,numMutPos,
-						strandMut,usingInitialBest,initialBest,cObj,cObj.minimizeBB,cObj.doBackrubs,cObj.backrubFile,
-						saveConfsParams, cObj.curMut, cObj.useMaxKSconfs, cObj.numKSconfs,prunedStericPerPos, DEEIval, cObj.enumSettings);
+		boolean KSCONFTHRESH = cObj.numKSconfs.compareTo(BigInteger.ZERO) > 0;
+		double Ival = cObj.Ival;
+		boolean finished = false;
+		boolean finalRun = true;
+		//DEE Section
+		boolean runDEE = true;
+		int loopCtr = 1;
+		
+		int numSplits = 0;
+		while(!finished || !finalRun){
+			double DEEIval = Ival;
+			
+			//Run DEE with the current Ival
+			int maxLoopNum = Integer.MAX_VALUE;
 
-				if(KSCONFTHRESH && rs.numConfsEvaluated.compareTo(cObj.numKSconfs) >= 0){
-					finished = true;
-				}else if (asr.status == AStarResults.DONE){ //we have reached an appropriate epsilon score
-					finished = true;
-				}else if(rs.numConfsEvaluated.compareTo(rs.numConfsTotal.subtract(rs.numConfsPrunedByS)) == 0){
-					finished = true;
-				}
-				else{
-					//Ival += 0.5;
-					if(Ival < 0.5)
-						Ival = 0.5;
+			if(runDEE)
+				runDEE(cObj.useSF, cObj.doMinimization, cObj.minimizeBB, cObj.scaleInt,
+						cObj.initEw,cObj.maxIntScale,false,DEEIval, emat,
+						true, false,cObj.stericE, cObj.params,0,maxLoopNum,cObj.deeSettings,
+						rs.strandRot,strandMut,rs.m,rs.doPerturbations);
+
+			//Compute the Ec value and prunedIsSteric[] (last parameter is true)
+			rs.DoMinBounds(cObj.pruningE,initEw, cObj.useSF, true, false);
+
+
+			//TODO: Fix usingInitialBest and setting initialBest
+			boolean usingInitialBest = (!notFullComplex);
+			BigDecimal initialBest = (new BigDecimal("0.0"));
+
+			//Inter-mutation pruning
+			if (usingInitialBest){
+				initialBest = cObj.bestScore.multiply(new BigDecimal(cObj.gamma * cObj.epsilon));
+				for(int i=0;i<allCombos.length-1;i++){
+					if(unboundQ[i] == null) 
+						//This can happen when one of the sequences is a duplicate and the original sequences
+						//hasn't been computed yet. Since we don't know q, initialBest = 0
+						initialBest = BigDecimal.ZERO;
 					else
-						Ival *= 2;
-					emat.unPrune();
+						initialBest = initialBest.multiply(unboundQ[i]);
 				}
+			}
 
 
-				if(finished){
-					rs.printTopConfs(runNum, cObj.seqNum, cObj.saveTopConfs, cObj.printTopConfs,
-							cObj.minimizeBB,cObj.doBackrubs,cObj.pdbOutDir);
-				}
+			if(cObj.es.useEPIC){
+				//Load the CET Matrix and then make the smaller version that matches the emat
+				//This should always already be calculated
+				loadCETMatrix(cObj.params,rs,curStrForMatrix,0,true, emat);
+			
+			}
+			//strandPresent from loadCETMatrix is the strand number if positive,
+			//-1 for the complex
+			//which corresponds to curStr-1 here
+			//THIS SHOULD ALREADY BE CALCULATED, ONCE FOR ALL MUTANTS...
+
+			SaveConfsParams saveConfsParams = new SaveConfsParams(cObj.numTopConfs, cObj.saveTopConfs, cObj.printTopConfs, false);
+			AStarResults asr = rs.slaveDoRotamerSearch(runNum, cObj.computeEVEnergy,cObj.doMinimization,numMutPos,
+					strandMut,usingInitialBest,initialBest,cObj,cObj.minimizeBB,cObj.doBackrubs,cObj.backrubFile,
+					saveConfsParams, cObj.curMut, cObj.useMaxKSconfs, cObj.numKSconfs,prunedStericPerPos, DEEIval, cObj.enumSettings);
 
+			if(KSCONFTHRESH && rs.numConfsEvaluated.compareTo(cObj.numKSconfs) >= 0){
+				finished = true;
+			}else if (asr.status == AStarResults.DONE){ //we have reached an appropriate epsilon score
+				finished = true;
+			}else if(rs.numConfsEvaluated.compareTo(rs.numConfsTotal.subtract(rs.numConfsPrunedByS)) == 0){
+				finished = true;
+			}
+			else{
+				//Ival += 0.5;
+				if(Ival < 0.5)
+					Ival = 0.5;
+				else
+					Ival *= 2;
+				emat.unPrune();
 			}
 
 
-			long stopTime = System.currentTimeMillis();
-			cObj.q_Time[runNum] = Math.round((stopTime - startTime) / 1000.0f);
-		} // end for(runNum)
+			if(finished){
+				rs.printTopConfs(runNum, cObj.seqNum, cObj.saveTopConfs, cObj.printTopConfs,
+						cObj.minimizeBB,cObj.doBackrubs,cObj.pdbOutDir);
+			}
 
-		System.out.print("## CurMut: "+cObj.curMut+" Finished Sequence: ");
-		for(int i=0;i<cObj.currentMutation.length;i++)
-			System.out.print(" "+cObj.currentMutation[i]);
-		System.out.println(" &&");
+		}
 
-		cObj.m = null; //We don't need to pass back the molecule
-		return cObj;
+
+		long stopTime = System.currentTimeMillis();
+		cObj.q_Time[runNum] = Math.round((stopTime - startTime) / 1000.0f);
 	}
 
 
@@ -2520,6 +2622,8 @@ public class KSParser
 		String CETMatrixName = (String)sParams.getValue("CETMATRIXNAME",runName+"CETM");
 
 		CCDMinimizer.EConvTol = (new Double((String)sParams.getValue("ECONVTOL","0.01"))).doubleValue();
+		LBFGSMinimizer.useLBFGS = (new Boolean((String)sParams.getValue("USELBFGS","false"))).booleanValue();
+		EnvironmentVars.minEnergyCacheSize = (new Integer((String)sParams.getValue("MINCACHESIZE","0"))).intValue();
 		//ContSCObjFunction.gradStep = (new Double((String)sParams.getValue("GRADSTEP","0.0002"))).doubleValue();
 
 		if( ( es.useEPIC && (!useCCD) ) ) {
@@ -2824,6 +2928,8 @@ public class KSParser
 		String CETMatrixName = (String)sParams.getValue("CETMATRIXNAME",runName+"CETM");
 
 		CCDMinimizer.EConvTol = (new Double((String)sParams.getValue("ECONVTOL","0.01"))).doubleValue();
+		LBFGSMinimizer.useLBFGS = (new Boolean((String)sParams.getValue("USELBFGS","false"))).booleanValue();
+		EnvironmentVars.minEnergyCacheSize = (new Integer((String)sParams.getValue("MINCACHESIZE","0"))).intValue();
 		//ContSCObjFunction.gradStep = (new Double((String)sParams.getValue("GRADSTEP","0.0002"))).doubleValue();
 
 		if( ( es.useEPIC && (!useCCD) )) {
@@ -3641,7 +3747,7 @@ public class KSParser
 					m.DOFs = DegreeOfFreedom.makeDOFArray(strandRot, strandMut, m);
 					of = new ContSCObjFunction(m,numOfStrands,ef,strandRot,doDihedE,null);
 					ef = of.efunc;//Dihedral energies now included if needed
-					ccdMin = new CCDMinimizer(of,false);
+					ccdMin = CCDMinimizer.newMinimizer(of,false);
 				}
 				else{
 
@@ -6169,14 +6275,15 @@ public class KSParser
 
 		CommucObj cObjArray[] = new CommucObj[size];
 		int numFinished = 0;
+		int numToSend = cObjArray.length; //reduced if a best-first sequence search finishes early
 
 		int curMut = 0;
 		for (int curProc=1; curProc<numProc; curProc++){ //distribute a single mutation per processor, for all processors
 
-			if (curMut<cObjArray.length){ //more mutations to distribute
+			if (curMut<numToSend){ //more mutations to distribute
 
 				System.out.println("Retrieving "+curMut+" of "+(cObjArray.length));
-				cObjArray[curMut] = mutMan.getNextComObj(curMut);
+				cObjArray[curMut] = mutMan.getNextComObj(mutMan.nextMutIndex(curMut));
 
 				MPItoThread.Send(cObjArray, curMut, 1, ThreadMessage.OBJECT, curProc, regTag);
 				curMut++;
@@ -6190,7 +6297,7 @@ public class KSParser
 
 		boolean distrDACS = mutMan.getDistrDACS(); //distributed DACS computation
 
-		while (numFinished<cObjArray.length){ //distribute and receive all remaining mutations
+		while (numFinished<numToSend){ //distribute and receive all remaining mutations
 
 			CommucObj cObj[] = new CommucObj[1];
 			cObj[0] = new CommucObj();
@@ -6225,11 +6332,14 @@ public class KSParser
 				numFinished++;
 
 				System.out.println("Finished: "+cObj[0].mutationNumber+", Time: "+(cObj[0].elapsedTime/60.0));
+				
+				if (curMut<numToSend && mutMan.searchDone())
+					numToSend = curMut; //only wait for the mutations already sent out
 
-				if (curMut<cObjArray.length){
+				if (curMut<numToSend){
 
 					System.out.print("Retrieving "+curMut+" of "+(cObjArray.length));
-					cObjArray[curMut] = mutMan.getNextComObj(curMut);
+					cObjArray[curMut] = mutMan.getNextComObj(mutMan.nextMutIndex(curMut));
 
 					MPItoThread.Send(cObjArray, curMut, 1, ThreadMessage.OBJECT, MPItoThread.getStatusSource(s), regTag);
 					curMut++;
@@ -6239,6 +6349,7 @@ public class KSParser
 				}
 			}
 		}
+		mutMan.finishMerging();
 	}
 
 
@@ -6255,12 +6366,13 @@ public class KSParser
 		}
 
 		System.out.println("Performing slave calculations locally...");
-		for(int curMut=0; curMut<size; curMut++){
-			CommucObj cObj = mutMan.getNextComObj(curMut);
+		for(int curMut=0; curMut<size && !mutMan.searchDone(); curMut++){
+			CommucObj cObj = mutMan.getNextComObj(mutMan.nextMutIndex(curMut));
 			cObj = handleKSSlave(cObj);
 			mutMan.processFinishedMutation(cObj);
 			System.out.println("Finished: "+cObj.mutationNumber+", Time: "+(cObj.elapsedTime/60.0));
 		}
+		mutMan.finishMerging();
 	}
 
 
@@ -8387,8 +8499,9 @@ public class KSParser
 	
 	/**
 	 * Given the array of K* sequences this function checks whether
-	 * any of the sequences are duplicates and marks them as duplicates
-	 * so their scores only need to be computed once by once by K*
+	 * any of the strand (unbound) sequences are duplicates and marks them as duplicates
+	 * so their partition functions only need to be computed once by K*.
+	 * The unbound runs are keyed by the strand's flexible residues together with their amino acid types
 	 * @param mutArray Array that holds all of the K* slave sequences
 	 * @param m Molecule m
 	 */
@@ -8405,6 +8518,18 @@ public class KSParser
 		int[] numMutPerStrand = new int[m.numberOfStrands];
 		for(int i=0; i<numMutPerStrand.length;i++)
 			numMutPerStrand[i] = m.numMutableForStrand(i);
+		
+		//The flexible residues of each strand (in the order of the sequence entries)
+		int[][] flexResPerStrand = new int[m.numberOfStrands][];
+		for(int i=0; i<flexResPerStrand.length;i++){
+			flexResPerStrand[i] = new int[numMutPerStrand[i]];
+			int ctr = 0;
+			for(Residue r: m.strand[i].residue){
+				if(r.isMutable)
+					flexResPerStrand[i][ctr++] = r.strandResidueNumber;
+			}
+		}
+		int numReused = 0;
 
 		for(int i=0; i<mutArray.length; i++){
 			OneMutation mut = mutArray[i];
@@ -8426,7 +8551,7 @@ public class KSParser
 					curStr++;
 				}
 				
-				seqs[curStr] += mut.resTypes[j]+" ";
+				seqs[curStr] += flexResPerStrand[curStr][j-strOffset]+":"+mut.resTypes[j]+" ";
 				
 			}
 
@@ -8436,6 +8561,7 @@ public class KSParser
 					mut.duplicateMut[j] = sequences[j].get(seqs[j]);
 					//Tell the independent mutArray that is has things depending on it 
 					mutArray[sequences[j].get(seqs[j])].setDupMut(DUPFOUND, j);
+					numReused++;
 				}
 				else{
 					//Add the sequence to our list of sequences being computed so far
@@ -8444,6 +8570,8 @@ public class KSParser
 			}
 
 		}
+		
+		System.out.println("Unbound partition functions reused across sequences: "+numReused+" of "+(mutArray.length*m.numberOfStrands));
 
 	}
 	
@@ -9814,6 +9942,7 @@ public class KSParser
 					CommucObj cObj = handleComputeAllPairwiseRotamerEnergiesSlave(mutMan.getNextComObj(i));
 					mutMan.processFinishedMutation(cObj);
 				}
+				mutMan.finishMerging();
 			}
 		}catch (Exception e){
 			System.out.println("Couldn't calculate partitioned rotamer energies");
@@ -0,0 +1,299 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	KSResultStore.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store of the completed K* sequences, one record per sequence keyed by the
+ * sequence (the amino acid indices of the mutable residues separated by spaces).
+ * Each record holds the K* score and the text log line of the sequence, so the text
+ * log can be exported from the store. Records are written in batches: a batch is
+ * flushed and synced to disk once it holds COMMIT_RECORDS records or COMMIT_MILLIS
+ * have passed since the last commit. On opening, a partially written tail (e.g. from
+ * a crash) is dropped; those sequences are simply computed again on resume.
+ */
+public class KSResultStore {
+
+	private static final int MAGIC = 0x4B535231; //"KSR1"
+	private static final int COMMIT_RECORDS = 64;
+	private static final long COMMIT_MILLIS = 5000;
+	private static final int MAX_RECORD = 3*65537; //three modified-UTF-8 strings
+
+	private String fileName;
+	private FileOutputStream fos = null;
+	private DataOutputStream out = null;
+
+	//score of each stored sequence
+	private HashMap<String,BigDecimal> index = new HashMap<String,BigDecimal>();
+
+	private int numPending = 0;
+	private long lastCommit = System.currentTimeMillis();
+
+	/**
+	 * Opens the store for writing. An existing store is never truncated: its records are
+	 * kept (and indexed) and new records are appended. A new, empty store is created only
+	 * if the file does not exist or is empty; any other existing file is an error.
+	 */
+	public KSResultStore(String fileName){
+		this.fileName = fileName;
+		try{
+			File f = new File(fileName);
+			boolean keep = isStore(fileName);
+			if(!keep && f.exists() && f.length() > 0){
+				System.out.println("ERROR: "+fileName+" exists and is not a results store; not overwriting it");
+				System.exit(1);
+			}
+			if(keep){
+				long goodLength = scan(fileName, index, null);
+				RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+				if(raf.length() > goodLength){
+					System.out.println("WARNING: dropping an incomplete record at the end of "+fileName);
+					raf.setLength(goodLength);
+				}
+				raf.close();
+			}
+			fos = new FileOutputStream(fileName, keep);
+			out = new DataOutputStream(new BufferedOutputStream(fos, 1<<16));
+			if(!keep){
+				out.writeInt(MAGIC);
+				commit();
+			}
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to open the results store "+fileName+": "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	//Returns true if fileName is a results store (rather than, e.g., a text log)
+	public static boolean isStore(String fileName){
+		File f = new File(fileName);
+		if(!f.isFile() || f.length() < 4)
+			return false;
+		try{
+			DataInputStream in = new DataInputStream(new FileInputStream(f));
+			int magic = in.readInt();
+			in.close();
+			return magic == MAGIC;
+		}
+		catch(IOException e){
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the records of the store fileName (in the order they were written), putting the
+	 * score of each sequence in index and printing its log line to log (if not null).
+	 * Returns the length of the file up to the last complete record.
+	 */
+	static long scan(String fileName, HashMap<String,BigDecimal> index, PrintStream log) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1<<16));
+		CRC32 crc = new CRC32();
+		BigDecimal bestScore = new BigDecimal("0.0"); //for the exported log
+		long goodLength = 0;
+		try{
+			if(in.readInt() != MAGIC)
+				throw new IOException(fileName+" is not a results store");
+			goodLength = 4;
+			while(true){
+				int len = in.readInt();
+				if(len < 0 || len > MAX_RECORD)
+					break;
+				byte rec[] = new byte[len];
+				in.readFully(rec);
+				long sum = in.readLong();
+				crc.reset();
+				crc.update(rec, 0, len);
+				if(sum != crc.getValue())
+					break;
+
+				DataInputStream recIn = new DataInputStream(new ByteArrayInputStream(rec));
+				String key = recIn.readUTF();
+				BigDecimal score = new BigDecimal(recIn.readUTF());
+				String line = recIn.readUTF();
+				if(index != null)
+					index.put(key, score);
+				if(log != null){
+					log.println(line);
+					if(score.compareTo(bestScore) > 0){
+						log.println("BestScoreChange "+bestScore+" to "+score);
+						bestScore = score;
+					}
+				}
+				goodLength += 4 + len + 8;
+			}
+		}
+		catch(EOFException e){
+			//end of the file or a partially written record
+		}
+		finally{
+			in.close();
+		}
+		return goodLength;
+	}
+
+	/**
+	 * Reads the score of every sequence in the store fileName
+	 */
+	public static HashMap<String,BigDecimal> readScores(String fileName){
+		HashMap<String,BigDecimal> scores = new HashMap<String,BigDecimal>();
+		try{
+			scan(fileName, scores, null);
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to read the results store "+fileName+": "+e.getMessage());
+			System.exit(1);
+		}
+		return scores;
+	}
+
+	/**
+	 * Writes the text log of the store fileName to logName: the "Completed mutation" lines in
+	 * the order the sequences finished, with the best score changes between them
+	 */
+	public static void exportLog(String fileName, String logName){
+		try{
+			PrintStream log = new PrintStream(new BufferedOutputStream(new FileOutputStream(logName)));
+			scan(fileName, null, log);
+			log.close();
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to export the results store "+fileName+": "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	public boolean contains(String key){
+		return index.containsKey(key);
+	}
+
+	//The score of the given sequence (null if it is not in the store)
+	public BigDecimal getScore(String key){
+		return index.get(key);
+	}
+
+	public int size(){
+		return index.size();
+	}
+
+	/**
+	 * Adds the result of one sequence; returns true if this committed the current batch
+	 */
+	public boolean add(String key, BigDecimal score, String line){
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			DataOutputStream rec = new DataOutputStream(bytes);
+			rec.writeUTF(key);
+			rec.writeUTF(score.toString());
+			rec.writeUTF(line);
+			rec.flush();
+
+			CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray());
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			out.writeLong(crc.getValue());
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to write to the results store "+fileName+": "+e.getMessage());
+			System.exit(1);
+		}
+		index.put(key, score);
+
+		numPending++;
+		if(numPending >= COMMIT_RECORDS || System.currentTimeMillis() - lastCommit >= COMMIT_MILLIS){
+			commit();
+			return true;
+		}
+		return false;
+	}
+
+	//Writes the pending records to disk
+	public void commit(){
+		try{
+			out.flush();
+			fos.getChannel().force(false);
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to write to the results store "+fileName+": "+e.getMessage());
+			System.exit(1);
+		}
+		numPending = 0;
+		lastCommit = System.currentTimeMillis();
+	}
+
+	public void close(){
+		commit();
+		try{
+			out.close();
+		}
+		catch(IOException e){
+			System.out.println("ERROR: unable to close the results store "+fileName);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	KSSeqBounds.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Best-first search over the K* sequence list (NUMTOPSEQS &gt; 0).
+ * 
+ * An upper bound on each sequence's complex q* is computed from the complex energy matrix: the number
+ * of conformations times the Boltzmann weight of a lower bound on the GMEC energy (sum of the min single and
+ * min pairwise energies for the sequence's amino acid types). Once the unbound q* of every strand of a sequence is
+ * known (from any sequence sharing that strand sequence, see checkDuplicateMutations()), the two give an upper
+ * bound on the sequence's K* score. The sequences are dispatched best bound first (sequences with unknown
+ * strands first, by their complex bound), the bounds tighten as strand partition functions come in, and the
+ * search stops once the best NUMTOPSEQS scores found are at least the bound of every sequence not yet sent out.
+ * The bounds are relative to the energy matrix (the minimized energies are never below the matrix lower bounds).
+ *
+ */
+public class KSSeqBounds {
+	
+	private OneMutation mutArray[];
+	private int numStrands;
+	private int numTopSeqs;
+	
+	//upper bound on ln(q*) of the complex for each sequence, by OneMutation
+	private HashMap<OneMutation,Double> complexLogQBound = new HashMap<OneMutation,Double>();
+	
+	//[seq][strand] the sequence whose run computes the strand's unbound q*
+	private int strandOrig[][];
+	//[seq][strand] ln(q*) of the unbound strand computed by the seq's run (NaN until known)
+	private double strandLogQ[][];
+	
+	//the sequences not sent out yet, best bound first (bounds only decrease, so they are refreshed lazily)
+	private PriorityQueue<Candidate> queue;
+	//ln(K* score) of the best numTopSeqs sequences so far (lowest first)
+	private PriorityQueue<Double> topScores = new PriorityQueue<Double>();
+	private int numScored = 0;
+	
+	KSSeqBounds(OneMutation[] mutArray, Emat emat, Molecule m, int numTopSeqs){
+		this.mutArray = mutArray;
+		this.numStrands = m.numberOfStrands;
+		this.numTopSeqs = numTopSeqs;
+		
+		int numPos = emat.singles.E.length;
+		
+		//The emat amino acid index for each amino acid type at each position
+		ArrayList<HashMap<Integer,Integer>> ematAA = new ArrayList<HashMap<Integer,Integer>>(numPos);
+		for(int p=0; p<numPos; p++){
+			ematAA.add(new HashMap<Integer,Integer>());
+			Residue r = m.residue[emat.resByPos.get(p).get(0)];
+			for(int a=0; a<emat.singles.E[p].length; a++){
+				if(emat.singles.E[p][a].length == 0)
+					continue;
+				ResidueConformation rc = m.strand[r.strandNumber].rcl.getRC(emat.singles.getRot(p,a,0)[0]); //Assuming no super rotamers
+				ematAA.get(p).put(rc.rot.aaType.index, a);
+			}
+		}
+		
+		//Min single and pairwise energies by amino acid type
+		double minSingle[][] = new double[numPos][];
+		double minPair[][][][] = new double[numPos][][][];
+		for(int p=0; p<numPos; p++){
+			minSingle[p] = new double[emat.singles.E[p].length];
+			minPair[p] = new double[emat.singles.E[p].length][][];
+			for(int a=0; a<minSingle[p].length; a++){
+				minSingle[p][a] = Double.POSITIVE_INFINITY;
+				for(int r=0; r<emat.singles.E[p][a].length; r++)
+					minSingle[p][a] = Math.min(minSingle[p][a], emat.singles.E[p][a][r]);
+				minPair[p][a] = new double[numPos][];
+				for(int q=p+1; q<numPos; q++){
+					if(!emat.areNeighbors(p, q))
+						continue;
+					minPair[p][a][q] = new double[emat.singles.E[q].length];
+					for(int b=0; b<minPair[p][a][q].length; b++){
+						double minE = Double.POSITIVE_INFINITY;
+						for(int r=0; r<emat.singles.E[p][a].length; r++){
+							double pairE[] = emat.pairs.E[p][a][r][q][b];
+							for(int s=0; s<pairE.length; s++)
+								minE = Math.min(minE, pairE[s]);
+						}
+						minPair[p][a][q][b] = minE;
+					}
+				}
+			}
+		}
+		
+		for(OneMutation mut: mutArray){
+			int aa[] = new int[numPos];
+			double logNumConfs = 0.0;
+			double minE = emat.getTemplMinE();
+			for(int p=0; p<numPos; p++){
+				aa[p] = ematAA.get(p).get(mut.resTypes[p]);
+				logNumConfs += Math.log(emat.singles.E[p][aa[p]].length);
+				minE += minSingle[p][aa[p]];
+			}
+			for(int p=0; p<numPos; p++){
+				for(int q=p+1; q<numPos; q++){
+					if(minPair[p][aa[p]][q] != null)
+						minE += minPair[p][aa[p]][q][aa[q]];
+				}
+			}
+			complexLogQBound.put(mut, logNumConfs - minE/RotamerSearch.constRT);
+		}
+		
+		//Best complex bound first, so that the first sequence with a given strand sequence (the one whose run
+		//	computes the strand's partition function) is also sent out first
+		Arrays.sort(mutArray, new Comparator<OneMutation>(){
+			public int compare(OneMutation m1, OneMutation m2){
+				return Double.compare(complexLogQBound.get(m2), complexLogQBound.get(m1));
+			}
+		});
+	}
+	
+	//Sets up the search once the duplicate strand sequences of the (sorted) mutArray are known
+	public void initSearch(){
+		strandOrig = new int[mutArray.length][numStrands];
+		strandLogQ = new double[mutArray.length][numStrands];
+		queue = new PriorityQueue<Candidate>(Math.max(1, mutArray.length));
+		for(int i=0; i<mutArray.length; i++){
+			for(int j=0; j<numStrands; j++){
+				int dup[] = mutArray[i].duplicateMut;
+				strandOrig[i][j] = (dup != null && dup[j] >= 0) ? dup[j] : i;
+				strandLogQ[i][j] = Double.NaN;
+			}
+			queue.add(new Candidate(i));
+		}
+	}
+	
+	//Upper bound on ln(K* score) for the given sequence (+Infinity while an unbound q* is unknown)
+	public double logScoreBound(int seq){
+		double bound = complexLogQBound.get(mutArray[seq]);
+		for(int j=0; j<numStrands; j++){
+			double logQ = strandLogQ[strandOrig[seq][j]][j];
+			if(Double.isNaN(logQ))
+				return Double.POSITIVE_INFINITY;
+			bound -= logQ;
+		}
+		return bound;
+	}
+	
+	//Returns the mutArray index of the next sequence to compute (-1 if none are left)
+	public synchronized int nextSequence(){
+		Candidate c = freshTop();
+		if(c == null)
+			return -1;
+		queue.poll();
+		return c.seq;
+	}
+	
+	//Records the partition functions and score of a computed sequence
+	public synchronized void addResult(int seq, BigDecimal q[], BigDecimal score){
+		for(int j=0; j<numStrands; j++){
+			if(q[j] != null)
+				strandLogQ[strandOrig[seq][j]][j] = LogPartitionFunction.log(q[j]);
+		}
+		topScores.add(LogPartitionFunction.log(score));
+		if(topScores.size() > numTopSeqs)
+			topScores.poll();
+		numScored++;
+	}
+	
+	//True once the top sequences are known: no sequence that has not been sent out can beat them
+	public synchronized boolean topSeqsFound(){
+		if(topScores.size() < numTopSeqs)
+			return false;
+		Candidate c = freshTop();
+		if(c == null || c.bound <= topScores.peek()){
+			System.out.println("Top "+numTopSeqs+" sequences found after scoring "+numScored+" of "+mutArray.length+" sequences");
+			return true;
+		}
+		return false;
+	}
+	
+	//The queued sequence with the best current bound
+	private Candidate freshTop(){
+		while(!queue.isEmpty()){
+			Candidate c = queue.peek();
+			double bound = logScoreBound(c.seq);
+			if(bound == c.bound)
+				return c;
+			queue.poll();
+			c.bound = bound;
+			queue.add(c);
+		}
+		return null;
+	}
+	
+	private class Candidate implements Comparable<Candidate> {
+		int seq;
+		double bound;
+		
+		Candidate(int seq){
+			this.seq = seq;
+			bound = logScoreBound(seq);
+		}
+		
+		//best score bound first, then best complex bound, then list order
+		public int compareTo(Candidate other){
+			int c = Double.compare(other.bound, bound);
+			if(c == 0)
+				c = Double.compare(complexLogQBound.get(mutArray[other.seq]), complexLogQBound.get(mutArray[seq]));
+			if(c == 0)
+				c = seq - other.seq;
+			return c;
+		}
+	}
+}
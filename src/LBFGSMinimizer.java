@@ -0,0 +1,350 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as
+	published by the Free Software Foundation, either version 3 of
+	the License, or (at your option) any later version.
+
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+ */
+
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	LBFGSMinimizer.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//	  MAH           Mark A. Hallen	  Duke University               mah43@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleFactory1D;
+
+import java.util.LinkedList;
+
+
+//Limited-memory BFGS minimizer over the box constraints of an objective function
+//It uses the objective function's gradient, so for the side-chain objective function
+//a step costs an energy and a gradient evaluation instead of several energy evaluations per DOF
+//It extends CCDMinimizer so it can be used anywhere the CCD minimizer is (same constraints,
+//initial values and fields); the special-purpose options of CCDMinimizer (non-box constraints,
+//rescaling, random minimum checks) aren't supported, so minimization falls back to CCD if they're set
+
+//Bounds are handled by projecting onto the box and freezing the DOFs that are at a bound
+//with the gradient pointing outward (a simplified L-BFGS-B)
+
+public class LBFGSMinimizer extends CCDMinimizer {
+
+    static boolean useLBFGS = false;//Use this minimizer instead of CCD (see CCDMinimizer.newMinimizer)
+
+    static int numMemory = 5;//number of correction pairs kept
+    static int maxIter = 100;
+    static int maxLineSearch = 20;//maximum number of step halvings per line search
+    static double armijoCoeff = 1e-4;
+    static double gradTol = 1e-3;//convergence threshold for the projected gradient (energy per unit DOF)
+
+    int numEvals;//number of energy + gradient evaluations in the most recent minimization
+
+
+    public LBFGSMinimizer( ObjectiveFunction ofn, boolean useCorners ){
+        super(ofn, useCorners);
+    }
+
+
+    @Override
+    public DoubleMatrix1D minimize() {
+
+        if( nonBoxConstrGC.length>0 || rescalingGC!=null || useRandMinCheck || jumpOOR || banZero )
+            return super.minimize();
+
+        long minStartTime = System.currentTimeMillis();
+
+        DoubleMatrix1D constr[] = objFcn.getConstraints();
+        DOFmin = constr[0];
+        DOFmax = constr[1];
+
+        if(!compInitVals())
+            return null;
+
+        numEvals = 0;
+        double E = objFcn.getValue(x);
+        numEvals++;
+
+        if(Double.isInfinite(E) || Double.isNaN(E)){
+            //Gradient steps can't get us out of an infinite-energy region, but the CCD line searches might
+            return super.minimize();
+        }
+
+        double g[] = objFcn.getGradient(x).toArray();
+
+        LinkedList<double[]> sList = new LinkedList<double[]>();//s = x_{k+1}-x_k
+        LinkedList<double[]> yList = new LinkedList<double[]>();//y = g_{k+1}-g_k
+
+        for(int iter=0; iter<maxIter; iter++){
+
+            boolean free[] = freeDOFs(g);
+
+            double gNorm = 0;
+            for(int dof=0; dof<numDOFs; dof++){
+                if(free[dof])
+                    gNorm = Math.max(gNorm, Math.abs(g[dof]));
+            }
+            if(gNorm < gradTol)//projected gradient is zero: we're at a minimum in the box
+                break;
+
+            double d[] = searchDirection(g, free, sList, yList);
+            double slope = dot(g,d);
+
+            if( !(slope<0) ){//not a descent direction: drop the curvature information
+                sList.clear();
+                yList.clear();
+                d = searchDirection(g, free, sList, yList);
+                slope = dot(g,d);
+            }
+
+            double alpha = 1;
+            if(sList.isEmpty()){//no curvature information yet: limit the first step to the usual step sizes
+                for(int dof=0; dof<numDOFs; dof++){
+                    if(d[dof]!=0)
+                        alpha = Math.min( alpha, objFcn.getInitStepSize(dof)/Math.abs(d[dof]) );
+                }
+            }
+
+            //Backtracking line search along the projected path
+            DoubleMatrix1D xNew = null;
+            double ENew = Double.POSITIVE_INFINITY;
+            boolean accepted = false;
+
+            for(int ls=0; ls<maxLineSearch; ls++){
+
+                xNew = project(x, d, alpha);
+
+                double decrease = 0;//predicted change in energy
+                for(int dof=0; dof<numDOFs; dof++)
+                    decrease += g[dof] * ( xNew.get(dof) - x.get(dof) );
+
+                ENew = objFcn.getValue(xNew);
+                numEvals++;
+
+                if( ENew <= E + armijoCoeff*decrease ){
+                    accepted = true;
+                    break;
+                }
+
+                alpha /= 2;
+            }
+
+            if(!accepted){
+                if(sList.isEmpty())//even a short steepest-descent step doesn't help
+                    break;
+
+                //try again from steepest descent
+                sList.clear();
+                yList.clear();
+                continue;
+            }
+
+            double gNew[] = objFcn.getGradient(xNew).toArray();
+
+            double s[] = new double[numDOFs];
+            double y[] = new double[numDOFs];
+            for(int dof=0; dof<numDOFs; dof++){
+                s[dof] = xNew.get(dof) - x.get(dof);
+                y[dof] = gNew[dof] - g[dof];
+            }
+
+            if( dot(s,y) > numTol*dot(y,y) ){//keep the pair only if it has positive curvature
+                sList.addFirst(s);
+                yList.addFirst(y);
+                if(sList.size()>numMemory){
+                    sList.removeLast();
+                    yList.removeLast();
+                }
+            }
+
+            double oldE = E;
+            x = xNew;
+            E = ENew;
+            g = gNew;
+
+            //A step here is a single move rather than a CCD sweep over all the DOFs,
+            //so the energy convergence threshold is tightened accordingly
+            if( oldE - E < 0.01*EConvTol )
+                break;
+        }
+
+        objFcn.setDOFs(x);//leave the molecule at the minimum (the last line search may have moved it)
+
+        minTime = System.currentTimeMillis() - minStartTime;
+        return x;
+    }
+
+
+    //DOFs we can move: DOFs at a bound with the gradient pointing out of the box are held fixed
+    private boolean[] freeDOFs(double g[]){
+
+        boolean free[] = new boolean[numDOFs];
+
+        for(int dof=0; dof<numDOFs; dof++){
+            double val = x.get(dof);
+            if( DOFmax.get(dof) == DOFmin.get(dof) )
+                free[dof] = false;
+            else if( val<=DOFmin.get(dof) && g[dof]>0 )
+                free[dof] = false;
+            else if( val>=DOFmax.get(dof) && g[dof]<0 )
+                free[dof] = false;
+            else
+                free[dof] = true;
+        }
+
+        return free;
+    }
+
+
+    //L-BFGS two-loop recursion, restricted to the free DOFs
+    private double[] searchDirection(double g[], boolean free[], LinkedList<double[]> sList, LinkedList<double[]> yList){
+
+        int numPairs = sList.size();
+        double q[] = new double[numDOFs];
+        for(int dof=0; dof<numDOFs; dof++)
+            q[dof] = free[dof] ? g[dof] : 0;
+
+        double a[] = new double[numPairs];
+        double rho[] = new double[numPairs];
+
+        for(int i=0; i<numPairs; i++){//most recent pair first
+            double s[] = sList.get(i);
+            double y[] = yList.get(i);
+            double sy = dotFree(s,y,free);
+            if(sy<=0)
+                continue;
+            rho[i] = 1/sy;
+            a[i] = rho[i]*dotFree(s,q,free);
+            for(int dof=0; dof<numDOFs; dof++){
+                if(free[dof])
+                    q[dof] -= a[i]*y[dof];
+            }
+        }
+
+        if(numPairs>0){//initial Hessian scaling
+            double s[] = sList.getFirst();
+            double y[] = yList.getFirst();
+            double yy = dotFree(y,y,free);
+            double sy = dotFree(s,y,free);
+            if(yy>0 && sy>0){
+                for(int dof=0; dof<numDOFs; dof++)
+                    q[dof] *= sy/yy;
+            }
+        }
+
+        for(int i=numPairs-1; i>=0; i--){
+            if(rho[i]==0)
+                continue;
+            double s[] = sList.get(i);
+            double y[] = yList.get(i);
+            double b = rho[i]*dotFree(y,q,free);
+            for(int dof=0; dof<numDOFs; dof++){
+                if(free[dof])
+                    q[dof] += (a[i]-b)*s[dof];
+            }
+        }
+
+        for(int dof=0; dof<numDOFs; dof++)
+            q[dof] = free[dof] ? -q[dof] : 0;
+
+        return q;
+    }
+
+
+    //x + alpha*d, projected onto the box constraints
+    private DoubleMatrix1D project(DoubleMatrix1D start, double d[], double alpha){
+        DoubleMatrix1D ans = DoubleFactory1D.dense.make(numDOFs);
+        for(int dof=0; dof<numDOFs; dof++){
+            double val = start.get(dof) + alpha*d[dof];
+            val = Math.max( DOFmin.get(dof), Math.min( DOFmax.get(dof), val ) );
+            ans.set(dof, val);
+        }
+        return ans;
+    }
+
+
+    private static double dot(double u[], double v[]){
+        double ans = 0;
+        for(int i=0; i<u.length; i++)
+            ans += u[i]*v[i];
+        return ans;
+    }
+
+    private static double dotFree(double u[], double v[], boolean free[]){
+        double ans = 0;
+        for(int i=0; i<u.length; i++){
+            if(free[i])
+                ans += u[i]*v[i];
+        }
+        return ans;
+    }
+
+
+    //Central-difference derivative of objFcn with respect to dof at the current DOF values,
+    //for objective functions (or DOFs) without an analytic gradient
+    //The DOF is set back to val afterwards
+    static double numericalDerivative(ObjectiveFunction objFcn, int dof, double val){
+
+        double h = 1e-3*objFcn.getInitStepSize(dof);
+
+        double up = objFcn.getValForDOF(dof, val+h);
+        double down = objFcn.getValForDOF(dof, val-h);
+        double ans;
+
+        if( Double.isInfinite(up) || Double.isInfinite(down) ){//one-sided if we're next to an invalid conformation
+            double cur = objFcn.getValForDOF(dof, val);
+            if(!Double.isInfinite(up))
+                ans = (up-cur)/h;
+            else if(!Double.isInfinite(down))
+                ans = (cur-down)/h;
+            else
+                ans = 0;
+        }
+        else
+            ans = (up-down)/(2*h);
+
+        objFcn.setDOF(dof, val);
+        return ans;
+    }
+
+}
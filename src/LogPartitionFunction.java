@@ -0,0 +1,179 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	LogPartitionFunction.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A partition function (a sum of Boltzmann weights) accumulated in log space with doubles.
+ * 
+ * The weights are summed relative to the largest exponent seen so far (log-sum-exp) with Kahan
+ * compensation. The terms are positive, so the compensated sum has relative error at most
+ * 2u + O(n u^2) (u = 2^-53), i.e. a few ulps for any realistic number n of conformations.
+ * Each term exp(t - shift) adds a relative error of about u*|t|, from the rounding of the
+ * exponent t = -E/RT, and ln(q) rounds to within u*|ln q|. The absolute error of ln(q) is
+ * thus of order u*(4 + max|t|). Since max t <= ln(q) <= max t + ln(n), that is a few ulps
+ * relative to max(1,|ln q|), far below LOG_TOL. This leaves room for the rounding in pStar
+ * and in the BigDecimal reference itself.
+ * 
+ * The K* epsilon checks compare such logs through lessThan(), which treats values within
+ * LOG_TOL*max(1,|a|,|b|) of each other as equal. They therefore make the same decision as the
+ * exact BigDecimal arithmetic unless the two sides agree to within LOG_TOL (relative, in ln
+ * space). Near-ties resolve on the side that keeps the search going, so a search is never
+ * halted early by rounding. The BigDecimal value is only formed for printing and for
+ * reporting q to the master.
+ *
+ */
+public class LogPartitionFunction {
+	
+	//relative tolerance (in ln space) within which two logs are not told apart
+	static final double LOG_TOL = 1e-12;
+	
+	private static final double LN2 = Math.log(2.0);
+	private static final double LN10 = Math.log(10.0);
+	
+	private double shift = Double.NEGATIVE_INFINITY; //ln of the largest term added so far
+	private double sum = 0.0; //sum of exp(ln(term)-shift) over the added terms
+	private double comp = 0.0; //Kahan compensation for sum
+	
+	LogPartitionFunction(){
+	}
+	
+	LogPartitionFunction(BigDecimal val){
+		addLog(log(val));
+	}
+	
+	//Adds the term exp(logTerm)
+	public void addLog(double logTerm){
+		if (logTerm == Double.NEGATIVE_INFINITY)
+			return;
+		if (logTerm > shift){ //rescale so that the largest term is 1
+			double scale = Math.exp(shift - logTerm);
+			sum *= scale;
+			comp *= scale;
+			shift = logTerm;
+		}
+		double y = Math.exp(logTerm - shift) - comp;
+		double t = sum + y;
+		comp = (t - sum) - y;
+		sum = t;
+	}
+	
+	//Adds the Boltzmann weight of a conformation with the given energy
+	public void addEnergy(double energy, double RT){
+		addLog(-energy/RT);
+	}
+	
+	//ln of the accumulated value (-Infinity if it is zero)
+	public double log(){
+		if (sum <= 0.0)
+			return Double.NEGATIVE_INFINITY;
+		return shift + Math.log(sum);
+	}
+	
+	public boolean isZero(){
+		return sum <= 0.0;
+	}
+	
+	public BigDecimal toBigDecimal(){
+		if (isZero())
+			return BigDecimal.ZERO;
+		return new ExpFunction().exp(log());
+	}
+	
+	public String toString(){
+		return toBigDecimal().toString();
+	}
+	
+	//True if a < b, or if a and b agree within LOG_TOL, i.e. unless a is clearly at least b
+	public static boolean lessThan(double a, double b){
+		if (b == Double.NEGATIVE_INFINITY)
+			return false;
+		if (a == Double.NEGATIVE_INFINITY)
+			return true;
+		double scale = Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+		return a < b + LOG_TOL*scale;
+	}
+	
+	//ln(exp(a)+exp(b))
+	public static double logAdd(double a, double b){
+		double max = Math.max(a, b);
+		if (max == Double.NEGATIVE_INFINITY)
+			return max;
+		return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+	}
+	
+	//ln(exp(a)-exp(b)) for a >= b
+	public static double logSubtract(double a, double b){
+		if (b == Double.NEGATIVE_INFINITY)
+			return a;
+		return a + Math.log1p(-Math.exp(b - a));
+	}
+	
+	//ln(n) for a non-negative BigInteger of any size
+	public static double log(BigInteger n){
+		if (n.signum() <= 0)
+			return Double.NEGATIVE_INFINITY;
+		int extraBits = n.bitLength() - 62;
+		if (extraBits <= 0)
+			return Math.log(n.doubleValue());
+		return Math.log(n.shiftRight(extraBits).doubleValue()) + extraBits*LN2;
+	}
+	
+	//ln(x) for a non-negative BigDecimal of any size
+	public static double log(BigDecimal x){
+		if (x.signum() <= 0)
+			return Double.NEGATIVE_INFINITY;
+		return log(x.unscaledValue()) - x.scale()*LN10;
+	}
+}
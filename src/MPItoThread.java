@@ -55,7 +55,11 @@
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -72,6 +76,9 @@ import mpi.Status;
  * to another threads memory contents. Note that this can be inefficient if all
  * the threads want to do is share a large energy matrix. However, by mimicking 
  * mpi functionality, it is possible to debug mpi runs using threaded code. 
+ * A third mode runs the slaves as separate local JVM processes that talk to the
+ * master over loopback sockets (see SocketElement); this gives each slave its
+ * own heap without requiring an MPI installation.
  * @author kroberts
  *
  */
@@ -80,6 +87,8 @@ public class MPItoThread {
 	static ThreadElement[] threadEleArray = null;
 	static ExecutorService exe = null;
 	static boolean mpiRun = false;
+	static boolean socketRun = false;
+	static SocketElement socketEle = null; //the endpoint of this process in a socket run
 	static int numThreads;
 	static int numProc;
 	
@@ -108,6 +117,87 @@ public class MPItoThread {
 		}
 	}
 	
+	/**
+	 * Initializes a socket run on the master: starts numWorkers local worker
+	 * processes and waits for them to connect.
+	 * @param numWorkers number of worker processes to start
+	 * @param cfgName configuration file the workers should read
+	 */
+	public static void initializeSockets(int numWorkers, String cfgName) {
+		MPItoThread.mpiRun = false;
+		MPItoThread.socketRun = true;
+		MPItoThread.numThreads = numWorkers;
+		MPItoThread.numProc = numWorkers+1;
+
+		try{
+			socketEle = new SocketElement(numWorkers, cfgName);
+		}
+		catch(IOException e){
+			System.out.println("ERROR: could not start the worker processes: "+e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Initializes a worker process of a socket run and connects it to the master
+	 * @param port loopback port the master is listening on
+	 * @param rank rank of this worker
+	 * @param numWorkers total number of worker processes
+	 */
+	public static void initializeWorker(int port, int rank, int numWorkers) {
+		MPItoThread.mpiRun = false;
+		MPItoThread.socketRun = true;
+		MPItoThread.numThreads = numWorkers;
+		MPItoThread.numProc = numWorkers+1;
+
+		try{
+			socketEle = new SocketElement(port, rank);
+		}
+		catch(IOException e){
+			System.out.println("ERROR: worker "+rank+" could not connect to the master: "+e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Launches a worker JVM with the same classpath and heap settings as this one
+	 * @param port loopback port the master is listening on
+	 * @param rank rank of the new worker
+	 * @param cfgName configuration file the worker should read
+	 * @return the worker process
+	 */
+	static Process startWorkerProcess(int port, int rank, String cfgName) throws IOException {
+		ArrayList<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+		for(String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()){
+			//Pass on heap and property settings, but not debugger or agent options
+			if(arg.startsWith("-X") || arg.startsWith("-D"))
+				cmd.add(arg);
+		}
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add("KStar");
+		cmd.add("worker");
+		cmd.add(""+port);
+		cmd.add(""+rank);
+		cmd.add(""+numThreads);
+		cmd.add("-c");
+		cmd.add(cfgName);
+
+		ProcessBuilder pb = new ProcessBuilder(cmd);
+		pb.inheritIO();
+		return pb.start();
+	}
+
+	/**
+	 * Waits for the worker processes of a socket run to exit
+	 */
+	public static void stopProcesses(){
+		if(socketRun && socketEle != null && socketEle.getRank() == 0)
+			socketEle.shutdown();
+	}
+
 	public static ThreadElement getThreadElement(int i){
 		return threadEleArray[i];
 	}
@@ -138,6 +228,17 @@ public class MPItoThread {
 		}
 	}
 	
+	/**
+	 * Returns the message endpoint of the calling thread. In a socket run there
+	 * is only one endpoint per process.
+	 */
+	static ThreadElement localElement(){
+		if(socketRun)
+			return socketEle;
+		else
+			return threadEle.get(Thread.currentThread());
+	}
+
 	/******** Threaded Functions *********/
 	//These functions are wrappers of the MPI commands with similar
 	//names so that we can run in threaded mode if we like
@@ -146,14 +247,14 @@ public class MPItoThread {
 		if(mpiRun)
 			return MPI.COMM_WORLD.Rank();
 		else
-			return threadEle.get(Thread.currentThread()).getRank();
+			return localElement().getRank();
 	}
 	
 	public static int Size() throws MPIException{
 		if(mpiRun)
 			return MPI.COMM_WORLD.Size();
 		else
-			return threadEle.get(Thread.currentThread()).getSize();
+			return localElement().getSize();
 	}
 	
 	public static Object Probe(int source, int tag) throws MPIException, InterruptedException{
@@ -165,7 +266,7 @@ public class MPItoThread {
 			return MPI.COMM_WORLD.Probe(source, tag);
 		}
 		else
-			return threadEle.get(Thread.currentThread()).Probe(source, tag);
+			return localElement().Probe(source, tag);
 		
 	}
 	
@@ -178,7 +279,7 @@ public class MPItoThread {
 			return MPI.COMM_WORLD.Iprobe(source, tag);
 		}
 		else
-			return threadEle.get(Thread.currentThread()).Iprobe(source, tag);
+			return localElement().Iprobe(source, tag);
 		
 	}
 	
@@ -194,7 +295,7 @@ public class MPItoThread {
 			return MPI.COMM_WORLD.Recv(buf, offset, count, dtype, source, tag);
 		}
 		else
-			return threadEle.get(Thread.currentThread()).Recv(buf, offset, count, type, source, tag);
+			return localElement().Recv(buf, offset, count, type, source, tag);
 		
 	}
 	
@@ -205,7 +306,7 @@ public class MPItoThread {
 			MPI.COMM_WORLD.Send(buf, offset, count, dtype, dest, tag);
 		}
 		else
-			threadEle.get(Thread.currentThread()).Send(buf, offset, count, type, dest, tag);
+			localElement().Send(buf, offset, count, type, dest, tag);
 		
 	}
 	
@@ -218,7 +319,7 @@ public class MPItoThread {
 			MPI.COMM_WORLD.Isend(buf, offset, count, dtype, dest, tag);
 		}
 		else
-			threadEle.get(Thread.currentThread()).Send(buf, offset, count, type, dest, tag);
+			localElement().Send(buf, offset, count, type, dest, tag);
 		
 	}
 	
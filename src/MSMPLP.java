@@ -1,8 +1,10 @@
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 
 
 public class MSMPLP {
+	//a sweep that raises the bound by less than this counts as converged
+	static final double convTol = 1e-4;
+	
 	//number of residues under consideration
 	private int numResidues;
 
@@ -12,15 +14,28 @@ public class MSMPLP {
 	//the offset in the array index for each level
 	private int nodeIndexOffset[] = null;
 	
+	//total number of rotamers over all residues
+	private int numTotalNodes;
+	
 	//the reduced min pairwise energy matrix
 	private double [][][][] unifiedMinEnergyMatrix = null;
 	
+	//intra-shell energies of residues that have no neighbors (and thus no entries in the unified matrix)
+	private double [][] isolatedMinEnergy = null;
+	
+	//message and belief buffers, allocated once per thread
+	private ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>(){
+		protected Workspace initialValue(){
+			return new Workspace();
+		}
+	};
+	
 	MSMPLP(int aNumResidues, int aNumRotForRes[], Index3[][] twoDTo3D, Emat aPairwiseMinEnergyMatrix){
 		numResidues = aNumResidues;
 
 		numRotForRes = new int [numResidues];
 		nodeIndexOffset = new int [numResidues];
-		int numTotalNodes = 0;
+		numTotalNodes = 0;
 
 
 		for (int i=0; i<numResidues; i++){
@@ -29,89 +44,176 @@ public class MSMPLP {
 			numTotalNodes += aNumRotForRes[i];
 		}
 		unifiedMinEnergyMatrix = MSMPLP.mergeIntraAndPairMats(numResidues, numRotForRes, twoDTo3D, aPairwiseMinEnergyMatrix);
+		isolatedMinEnergy = MSMPLP.isolatedIntraMats(numResidues, numRotForRes, twoDTo3D, aPairwiseMinEnergyMatrix);
 	}
 	
-	// Computes the low-energy bound using the EMPLP algorithm
-	// availableRots is a "numRes*rots" matrix that tells us which 
-	// rotamers at each position are available.  Only those rotamers
-	// will be considered for the calculation.
+	// Computes the low-energy bound using the EMPLP algorithm, starting from zero messages
 	public double optimizeEMPLP(int partialConf[], int iterations){
-
+		return optimizeEMPLP(partialConf, null, iterations);
+	}
+	
+	// Computes the low-energy bound using the EMPLP algorithm
+	// Only the rotamers allowed by partialConf (all of them at unassigned residues, the assigned one otherwise)
+	// are considered.  The messages start from initMsgs (as returned by getMessages(), e.g. the converged messages 
+	// of the parent node) or from zero if initMsgs is null, and the updates stop once the bound converges or 
+	// after maxIterations sweeps.
+	public double optimizeEMPLP(int partialConf[], double initMsgs[], int maxIterations){
 		
-		// availableRots is just a list of lists with the list of rotamers available for the calculation at each rotamer; it is more convenient
-		// 		than partialConf.  This code might be unnecessary but it makes the algorithm more elegant, IMO
-		int availableRots[][] = new int[numResidues][];
+		Workspace ws = workspace.get();
+		
+		// availableRots holds the rotamers available for the calculation at each residue; it is more convenient
+		// 		than partialConf
+		int availableRots[][] = ws.availableRots;
+		int numAvailable[] = ws.numAvailable;
 		for(int res = 0; res < numResidues; res++){			
 			if(partialConf[res]== -1){ 
-				availableRots[res] = new int[numRotForRes[res]];
+				numAvailable[res] = numRotForRes[res];
 				for(int rot =0; rot < numRotForRes[res]; rot++){
 					availableRots[res][rot] = rot;
 				}
 			}
 			else{ // residue has a rotamer already assigned in the partialConf.
-				availableRots[res] = new int[1];
+				numAvailable[res] = 1;
 				availableRots[res][0] = partialConf[res];
 			}
 		}
 		
-		// Here comes the actual algorithm
-		
-		// lambda is the message matrix for EMPLP; we set all messages to zero
-		double lambda[][][] = CreateMatrix.create3DMsgMat(numResidues, numRotForRes, 0.0f);
-		
-		// The belief on each rotamer.
-		double belief[][] = CreateMatrix.create2DRotMatrix(numResidues, numRotForRes, 0.0f);
-			
+		// lambda is the message matrix for EMPLP: the message from resJ to rotamer rotIR of resI
+		//	is at lambda[msgIndex(resJ,resI,rotIR)]
+		double lambda[] = ws.lambda;
+		if(initMsgs != null)
+			System.arraycopy(initMsgs, 0, lambda, 0, lambda.length);
+		else
+			Arrays.fill(lambda, 0.0);
 		
+		// The belief on each rotamer (only the entries for available rotamers are used)
+		double belief[] = ws.belief;
+		for(int resI = 0; resI < numResidues; resI++){
+			for(int r = 0; r < numAvailable[resI]; r++){
+				int rotIR = availableRots[resI][r];
+				double b = isolatedMinEnergy[resI][rotIR];
+				for(int resJ = 0; resJ < numResidues; resJ++){
+					if(resJ != resI)
+						b += lambda[msgIndex(resJ,resI,rotIR)];
+				}
+				belief[nodeIndexOffset[resI]+rotIR] = b;
+			}
+		}
 		
-	    // EMPLP algorithm.  
-	    // The algorithm should loop until convergence.  For now we do it I times. 
-	    // Complexity of EMPLP: O(I*numRes*numRes*rotsPerRes*rotsPerRes*numRes)
-		for(int i = 0; i < iterations; i++){
+	    // EMPLP algorithm: sweep over all residue pairs until the bound stops improving.
+	    // Complexity of a sweep: O(numRes*numRes*rotsPerRes*rotsPerRes)
+		// The node minima before the first sweep are not a bound yet, so only consecutive sweeps are compared
+		double Ebound = 0.0;
+		for(int i = 0; i < maxIterations; i++){
 			for (int resI = 0; resI < numResidues; resI++){
 				for(int resJ = resI+1; resJ < numResidues; resJ++){
-					// We first update lambda[resJ][resI][rotIR] and immediately after we update lambda[resI][resJ][rotJS]
-					//for(int rotIR = 0; rotIR < numRotForRes[resI]; rotIR++){
-					for(int rotIR: availableRots[resI]){
-						belief[resI][rotIR] -= lambda[resJ][resI][rotIR];
-						
-						ArrayList <Double> msgsFromRotsAtJ_to_rotIR = new ArrayList<Double>();
-						//for (int rotJS = 0; rotJS < numRotForRes[resJ]; rotJS++){
-						for(int rotJS: availableRots[resJ]){
-							msgsFromRotsAtJ_to_rotIR.add(belief[resJ][rotJS]-lambda[resI][resJ][rotJS] + unifiedMinEnergyMatrix[resI][rotIR][resJ][rotJS]);
-						}
-						
-						lambda[resJ][resI][rotIR] = -0.5f*belief[resI][rotIR] + 0.5f*Collections.min(msgsFromRotsAtJ_to_rotIR);
-						belief[resI][rotIR] += lambda[resJ][resI][rotIR];						
-					}
-					// Now we update lambda[resI][resJ][rotJS]
-					//for(int rotJS = 0; rotJS < numRotForRes[resJ]; rotJS++){
-					for(int rotJS: availableRots[resJ]){
-						belief[resJ][rotJS] -= lambda[resI][resJ][rotJS];
-						
-						ArrayList <Double> msgsFromRotsAtI_to_rotJS = new ArrayList<Double>();
-						//for (int rotIR = 0; rotIR < numRotForRes[resI]; rotIR++){
-						for(int rotIR: availableRots[resI]){
-							msgsFromRotsAtI_to_rotJS.add(belief[resI][rotIR]-lambda[resJ][resI][rotIR] + unifiedMinEnergyMatrix[resI][rotIR][resJ][rotJS]);
-						}
-						
-						lambda[resI][resJ][rotJS] = -0.5f*belief[resJ][rotJS] + 0.5f*Collections.min(msgsFromRotsAtI_to_rotJS);
-						belief[resJ][rotJS] += lambda[resI][resJ][rotJS];
-					}
+					// We first update the messages from resJ to resI and immediately after those from resI to resJ
+					updateMessages(ws, resI, resJ, false);
+					updateMessages(ws, resJ, resI, true);
 				}				
 			}
-			
+			double newBound = nodeBound(ws);
+			boolean converged = i > 0 && Math.abs(newBound - Ebound) < convTol;
+			Ebound = newBound;
+			if(converged)
+				break;
 		}
-		double Ebound = 0.0f;
+		
+		// The node minima alone are only a bound once every edge has been updated; adding the edge minima
+		//	gives the full dual objective, which is a valid bound for any messages (including warm-started ones)
 		for (int resI = 0; resI < numResidues; resI++){
-			Ebound += Util.min(belief[resI]);
+			for(int resJ = resI+1; resJ < numResidues; resJ++){
+				Ebound += edgeBound(ws, resI, resJ);
+			}
 		}
 		//System.out.println("MPLP energy = "+ Ebound);
 		return Ebound;
+	}
+	
+	// Returns a copy of the messages of the last optimizeEMPLP() call on this thread, for warm-starting the children
+	public double[] getMessages(){
+		return workspace.get().lambda.clone();
+	}
+	
+	private int msgIndex(int fromRes, int toRes, int toRot){
+		return fromRes*numTotalNodes + nodeIndexOffset[toRes] + toRot;
+	}
+	
+	// Updates the messages from resJ to each available rotamer of resI;
+	//	the unified matrix is indexed [resI][rotIR][resJ][rotJS] unless transposed
+	private void updateMessages(Workspace ws, int resI, int resJ, boolean transposed){
+		double lambda[] = ws.lambda;
+		double belief[] = ws.belief;
+		int rotsI[] = ws.availableRots[resI];
+		int rotsJ[] = ws.availableRots[resJ];
+		int numI = ws.numAvailable[resI];
+		int numJ = ws.numAvailable[resJ];
+		int offI = nodeIndexOffset[resI];
+		int offJ = nodeIndexOffset[resJ];
+		int msgJI = msgIndex(resJ,resI,0);
+		int msgIJ = msgIndex(resI,resJ,0);
 		
+		for(int r = 0; r < numI; r++){
+			int rotIR = rotsI[r];
+			double beliefNoJ = belief[offI+rotIR] - lambda[msgJI+rotIR];
+			
+			double minMsg = Double.POSITIVE_INFINITY;
+			for(int s = 0; s < numJ; s++){
+				int rotJS = rotsJ[s];
+				double e = transposed ? unifiedMinEnergyMatrix[resJ][rotJS][resI][rotIR] : unifiedMinEnergyMatrix[resI][rotIR][resJ][rotJS];
+				double msg = belief[offJ+rotJS] - lambda[msgIJ+rotJS] + e;
+				if(msg < minMsg)
+					minMsg = msg;
+			}
+			
+			lambda[msgJI+rotIR] = -0.5*beliefNoJ + 0.5*minMsg;
+			belief[offI+rotIR] = beliefNoJ + lambda[msgJI+rotIR];
+		}
+	}
+	
+	// Sum over residues of the min belief among the available rotamers
+	private double nodeBound(Workspace ws){
+		double bound = 0.0;
+		for(int res = 0; res < numResidues; res++){
+			double minB = Double.POSITIVE_INFINITY;
+			for(int r = 0; r < ws.numAvailable[res]; r++){
+				double b = ws.belief[nodeIndexOffset[res]+ws.availableRots[res][r]];
+				if(b < minB)
+					minB = b;
+			}
+			bound += minB;
+		}
+		return bound;
+	}
+	
+	// Min over the available rotamer pairs of the edge energy minus the messages sent over the edge (zero at an MPLP fixed point)
+	private double edgeBound(Workspace ws, int resI, int resJ){
+		double lambda[] = ws.lambda;
+		int msgJI = msgIndex(resJ,resI,0);
+		int msgIJ = msgIndex(resI,resJ,0);
+		double minE = Double.POSITIVE_INFINITY;
+		for(int r = 0; r < ws.numAvailable[resI]; r++){
+			int rotIR = ws.availableRots[resI][r];
+			for(int s = 0; s < ws.numAvailable[resJ]; s++){
+				int rotJS = ws.availableRots[resJ][s];
+				double e = unifiedMinEnergyMatrix[resI][rotIR][resJ][rotJS] - lambda[msgJI+rotIR] - lambda[msgIJ+rotJS];
+				if(e < minE)
+					minE = e;
+			}
+		}
+		return minE;
+	}
+	
+	private class Workspace {
+		double lambda[] = new double[numResidues*numTotalNodes];
+		double belief[] = new double[numTotalNodes];
+		int availableRots[][] = new int[numResidues][];
+		int numAvailable[] = new int[numResidues];
 		
-		
-		
+		Workspace(){
+			for(int res = 0; res < numResidues; res++)
+				availableRots[res] = new int[numRotForRes[res]];
+		}
 	}
 	
 	// The original dual derivation of MPLP did not consider intra-energies.  Thus, 
@@ -172,5 +274,22 @@ public class MSMPLP {
 		return unifiedEmat;
 	}
 	
+	// Residues without neighbors get no share of the unified matrix, so their intra-shell energies
+	//	are kept as node potentials instead (zero rows for all other residues)
+	static double [][] isolatedIntraMats(int numRes, int rotsPerRes [], Index3[][] twoDTo3D, Emat emat ){
+		double isolatedE [][] = CreateMatrix.create2DRotMatrix(numRes, rotsPerRes, 0.0f);
+		for(int resI = 0; resI < numRes; resI++){
+			boolean isolated = true;
+			for(int resJ = 0; resJ < numRes; resJ++){
+				if(resJ != resI && emat.areNeighbors(resI, resJ))
+					isolated = false;
+			}
+			if(isolated){
+				for(int rotIR = 0; rotIR < rotsPerRes[resI]; rotIR++)
+					isolatedE[resI][rotIR] = emat.getSingleMinE(twoDTo3D[resI][rotIR]);
+			}
+		}
+		return isolatedE;
+	}
 
 }
@@ -165,6 +165,10 @@ public class MSMinBounds {
 	double indInt[] = null;
 	double pairInt[] = null;
 	
+	//the lowest single energy at each position and the lowest pair energy at each position pair
+	double minIndIntAtPos[] = null;
+	double minPairIntAtPos[][] = null;
+	
 	//split flags for all rotamer pairs
 	boolean splitFlags[][][][][][] = null;
 	
@@ -246,6 +250,23 @@ public class MSMinBounds {
 		indInt = new double[numRes];
 		pairInt = new double[numRes];
 		
+		//The per-position and per-position-pair terms do not depend on which position
+		//is left out, so scan the matrix for each of them only once
+		minIndIntAtPos = new double[numRes];
+		minPairIntAtPos = new double[numRes][numRes];
+		for (int curPos1=0; curPos1<numRes; curPos1++){
+			curEc = 0.0;
+			MaxIndInt(curPos1);
+			minIndIntAtPos[curPos1] = curEc;
+			for (int curPos2=0; curPos2<curPos1; curPos2++){
+				if(pairwiseMinEnergyMatrix.areNeighbors(curPos2, curPos1)){
+					curEc = 0.0;
+					MaxPairInt(curPos2,curPos1);
+					minPairIntAtPos[curPos2][curPos1] = curEc;
+				}
+			}
+		}
+		
 		for (int curPos=0; curPos<numRes; curPos++){
 		
 			curEc = 0.0;
@@ -582,7 +603,7 @@ public class MSMinBounds {
 		//get the contribution from the active site residue rotamers
 		for (int curPos=0; curPos<numMutable; curPos++){			
 			if (curPos != withoutPos)			
-				MaxIndInt(curPos);
+				curEc += minIndIntAtPos[curPos];
 		}
 		
 		/*if (numLigRot!=0){ //ther is a ligand
@@ -672,7 +693,7 @@ public class MSMinBounds {
 					if (curPos2 != withoutPos){
 						if(pairwiseMinEnergyMatrix.areNeighbors(curPos2, curPos1)){
 							//curPos2 will always be less so we put it first
-							MaxPairInt(curPos2,curPos1);
+							curEc += minPairIntAtPos[curPos2][curPos1];
 						}
 					}
 				}
@@ -7,6 +7,8 @@ public class Metrics {
 	
 	long numExpanded = 0;
 	long totNumNodes = 0;
+	long numQueuePolls = 0;
+	int peakQueueSize = 0;
 	long totalNumConfs = 0;
 	
 	long startTime = -1;
@@ -57,6 +59,14 @@ public class Metrics {
 		System.out.println("TotalNumConfs: "+totalNumConfs);
 		System.out.println("ASNumExpanded: "+numExpanded);
 		System.out.println("ASTotalNodes: "+totNumNodes);
+		System.out.println("ASQueuePolls: "+numQueuePolls);
+		System.out.println("ASPeakQueueSize: "+peakQueueSize);
+		MinEnergyCache minCache = MinEnergyCache.getCache();
+		if(minCache != null && minCache.numLookups > 0){
+			System.out.println("MinCacheLookups: "+minCache.numLookups);
+			System.out.println("MinCacheHits: "+minCache.numHits);
+			System.out.println("MinCacheHitRate: "+((double)minCache.numHits/minCache.numLookups));
+		}
 		if(boundTightnessPerLevel != null){
 			System.out.print("boundTightnessAvgPerLevel: ");for(int i=0; i<boundTightnessPerLevel.length;i++){System.out.print((boundTightnessPerLevel[i]/nodesEvaluatedPerLevel[i])+" ");}System.out.println("");
 		}
@@ -78,6 +88,13 @@ public class Metrics {
 		}
 	}
 
+	public void updateQueueMetrics(PGExpansionQueue queue) {
+		totNumNodes += queue.totalNodes;
+		numQueuePolls += queue.numPolls;
+		if(queue.peakSize > peakQueueSize)
+			peakQueueSize = queue.peakSize;
+	}
+
 	public void updateASTimes(int curLevel, long time, int numNodes) {
 		timePerLevel[curLevel] += time;
 		nodesEvaluatedPerLevel[curLevel] += numNodes;
@@ -0,0 +1,227 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	MinEnergyCache.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleFactory1D;
+
+/**
+ * Bounded LRU cache of side-chain minimization results, shared by all the searches in this process.
+ * 
+ * An entry is keyed by the residue conformations of the flexible residues (molecule residue, RC),
+ * together with a context describing everything else the minimization depends on: the residues and
+ * strands in the molecule and the energy function and minimizer settings. It holds the minimized
+ * energy and the minimized DOF values, so a conformation that is minimized again (a repeated A* search
+ * with a larger Ival, a node re-inserted with its final score, or the same unbound conformation in
+ * another K* run) is set to its minimum without repeating the minimization.
+ *
+ */
+public class MinEnergyCache {
+	
+	private static MinEnergyCache cache = null; //null if minimization results are not cached
+	
+	private LinkedHashMap<Key,Entry> map;
+	private HashMap<String,Integer> contexts = new HashMap<String,Integer>(); //context description -> context id
+	
+	long numLookups = 0;
+	long numHits = 0;
+	
+	MinEnergyCache(final int maxEntries){
+		map = new LinkedHashMap<Key,Entry>(1024, 0.75f, true){ //access order, so the eldest entry is the least recently used
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest){
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	//The shared cache, or null if EnvironmentVars.minEnergyCacheSize is not positive
+	static synchronized MinEnergyCache getCache(){
+		if(cache == null && EnvironmentVars.minEnergyCacheSize > 0)
+			cache = new MinEnergyCache(EnvironmentVars.minEnergyCacheSize);
+		return cache;
+	}
+	
+	/**
+	 * Minimizes the current conformation with min (built on a ContSCObjFunction whose energy
+	 * function is ef) and returns the minimized energy ef.getEnergy(). If the conformation is in the
+	 * cache, the molecule is set to the cached minimum instead. Either way the molecule is left in the
+	 * minimized conformation, as after min.minimize().
+	 */
+	static double minimize(CCDMinimizer min, EnergyFunction ef, boolean hElect, boolean hVDW){
+		
+		MinEnergyCache c = getCache();
+		if(c == null || !(min.objFcn instanceof ContSCObjFunction)){
+			min.minimize();
+			return ef.getEnergy();
+		}
+		
+		ContSCObjFunction of = (ContSCObjFunction)min.objFcn;
+		int key[] = c.makeKey(of, ef.getAmber96ext(), hElect, hVDW);
+		
+		Entry e = c.get(key);
+		if(e != null && e.DOFVals.length == of.getNumDOFs()){
+			of.getConstraints(); //resets the strand rotations and translations that the DOF values are relative to
+			of.setDOFs(DoubleFactory1D.dense.make(e.DOFVals));
+			min.minTime = 0;
+			return e.energy;
+		}
+		
+		DoubleMatrix1D x = min.minimize();
+		double energy = ef.getEnergy();
+		if(x != null)
+			c.put(key, new Entry(energy, x.toArray()));
+		return energy;
+	}
+	
+	//Context id followed by (molecule residue number, RC id) for each flexible residue
+	private int[] makeKey(ContSCObjFunction of, Amber96ext ff, boolean hElect, boolean hVDW){
+		
+		Molecule m = of.m;
+		
+		StringBuilder context = new StringBuilder();
+		context.append(EnvironmentVars.forcefld).append(' ').append(ff.dielectric).append(' ').append(ff.distDepDielect)
+			.append(' ').append(ff.vdwMultiplier).append(' ').append(ff.doSolvationE).append(' ').append(ff.solvScale)
+			.append(' ').append(ff.doHBondE).append(' ').append(hElect).append(' ').append(hVDW)
+			.append(' ').append(of.doDihedEnergy).append(' ').append(ContSCObjFunction.maxMovement)
+			.append(' ').append(LBFGSMinimizer.useLBFGS).append(' ').append(CCDMinimizer.EConvTol).append(';');
+		
+		int numFlex = 0;
+		for(int str=0; str<m.numberOfStrands; str++){
+			Strand s = m.strand[str];
+			context.append(s.rotTrans ? 'T' : 'F');
+			for(int i=0; i<s.numberOfResidues; i++){
+				Residue r = s.residue[i];
+				context.append(' ').append(r.getResNumberString()).append(r.name);
+				if(r.flexible){
+					context.append('*');
+					numFlex++;
+				}
+			}
+			context.append(';');
+		}
+		
+		int key[] = new int[1+2*numFlex];
+		key[0] = getContextId(context.toString());
+		int cur = 1;
+		for(Residue r : m.residue){
+			if(r.flexible){
+				key[cur++] = r.moleculeResidueNumber;
+				key[cur++] = (r.curRC != null) ? r.curRC.id : -1;
+			}
+		}
+		return key;
+	}
+	
+	private synchronized int getContextId(String context){
+		Integer id = contexts.get(context);
+		if(id == null){
+			id = contexts.size();
+			contexts.put(context, id);
+		}
+		return id;
+	}
+	
+	synchronized Entry get(int key[]){
+		numLookups++;
+		Entry e = map.get(new Key(key));
+		if (e != null)
+			numHits++;
+		return e;
+	}
+	
+	synchronized void put(int key[], Entry e){
+		map.put(new Key(key), e);
+	}
+	
+	public synchronized int size(){
+		return map.size();
+	}
+	
+	static class Entry {
+		
+		double energy; //minimized energy
+		double DOFVals[]; //minimized values of the objective function's DOFs
+		
+		Entry(double energy, double DOFVals[]){
+			this.energy = energy;
+			this.DOFVals = DOFVals;
+		}
+	}
+	
+	private static class Key {
+		
+		int key[];
+		int hash;
+		
+		Key(int key[]){
+			this.key = key;
+			hash = Arrays.hashCode(key);
+		}
+		
+		public int hashCode(){
+			return hash;
+		}
+		
+		public boolean equals(Object o){
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key)o;
+			return hash == other.hash && Arrays.equals(key, other.key);
+		}
+	}
+}
@@ -170,6 +170,18 @@ public class MultiTermEnergyFunction extends EnergyFunction {
     }
 
 
+  @Override
+    public boolean addCoordGradient(int part, double coeff, double grad[]){
+
+        for(int a=0;a<numTerms; a++){
+            if( ! terms[a].addCoordGradient(part, coeff*coeffs[a], grad) )
+                return false;
+        }
+
+        return true;
+    }
+
+
     //This returns the Amber96ext from some ForceFieldEnergy term
     //for purposes of getting parameters
   @Override
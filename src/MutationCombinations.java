@@ -0,0 +1,153 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	MutationCombinations.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The mutable-position combinations of a K* search: every 0/1 array of length n with
+ * between minK and maxK ones (1 indicates that the residue can mutate), ordered by
+ * decreasing number of ones and, within each size, in the order of the old recursive
+ * generator (0 before 1 at each position). Combinations are unranked on demand, so
+ * the whole list never has to be held in memory.
+ */
+public class MutationCombinations implements Iterable<int[]> {
+
+	private int n;
+	private int maxK;
+	private int minK;
+
+	//levelStart[k] is the rank of the first combination with k ones
+	private long levelStart[];
+	private long size;
+
+	public MutationCombinations(int n, int maxK, int minK){
+		this.n = n;
+		this.maxK = maxK;
+		this.minK = minK;
+
+		levelStart = new long[maxK+1];
+		size = 0;
+		for (int k=maxK; k>=minK; k--){
+			levelStart[k] = size;
+			long numComb = binomial(n,k);
+			size += numComb;
+			if (numComb < 0 || size < 0){
+				System.out.println("ERROR: too many mutation combinations ("+n+" positions, up to "+maxK+" mutations)");
+				System.exit(1);
+			}
+		}
+	}
+
+	//The total number of combinations
+	public long size(){
+		return size;
+	}
+
+	//Returns the combination with the given rank
+	public int[] get(long rank){
+		if (rank < 0 || rank >= size)
+			throw new NoSuchElementException();
+		int k = maxK;
+		while (k > minK && rank >= levelStart[k-1])
+			k--;
+		int comb[] = new int[n];
+		unrank(rank-levelStart[k], n, k, comb);
+		return comb;
+	}
+
+	//Fills comb with the rank-th combination of n choose k
+	public static void unrank(long rank, int n, int k, int comb[]){
+		for (int i=0; i<n; i++){
+			//number of completions with a 0 at position i
+			long numZero = binomial(n-i-1, k);
+			if (rank < numZero)
+				comb[i] = 0;
+			else {
+				comb[i] = 1;
+				rank -= numZero;
+				k--;
+			}
+		}
+	}
+
+	//n choose k (-1 if it does not fit in a long)
+	public static long binomial(int n, int k){
+		if (k < 0 || k > n)
+			return 0;
+		k = Math.min(k, n-k);
+		long b = 1;
+		for (int i=1; i<=k; i++){
+			//b*(n-k+i) is divisible by i
+			if (b > Long.MAX_VALUE / (n-k+i))
+				return -1;
+			b = b*(n-k+i)/i;
+		}
+		return b;
+	}
+
+	public Iterator<int[]> iterator(){
+		return new Iterator<int[]>(){
+			long cur = 0;
+			public boolean hasNext(){
+				return cur < size;
+			}
+			public int[] next(){
+				return get(cur++);
+			}
+			public void remove(){
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -71,6 +71,11 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.math.*;
 
 import mpi.*;
@@ -93,6 +98,17 @@ public class MutationManager
 
 	Queue<CommucObj> waitingRuns;
 	PartitionMessage[][] completedRuns = null;
+	
+	//Best-first order of the K* sequences (null if they are computed in list order)
+	KSSeqBounds seqBounds = null;
+	//Indexed store of the finished K* sequences (null if only the text log is written)
+	KSResultStore resultStore = null;
+
+	//Energy matrix results are merged on this pool when EnvironmentVars.numMergeThreads > 0
+	private ExecutorService mergePool = null;
+	private Semaphore mergeSlots = null; //bounds the number of results waiting to be merged
+	private ReentrantLock posLocks[] = null; //one per matrix position
+	private final ReentrantLock templLock = new ReentrantLock();
 
 	// Information needed by all mutations
 	CommucObj cObjArray[] = null;
@@ -256,6 +272,18 @@ public class MutationManager
 		distrDEE = false; //if this is a distributed DEE computation, the flag will be set with setDistrDEE()
 	}
 
+	// Returns the mutArray index of the curMut-th mutation to send out
+	public synchronized int nextMutIndex(int curMut) {
+		if (seqBounds == null)
+			return curMut;
+		return seqBounds.nextSequence();
+	}
+	
+	// Returns true if no more mutations have to be sent out (the best-first sequence search is done)
+	public synchronized boolean searchDone() {
+		return seqBounds != null && seqBounds.topSeqsFound();
+	}
+
 	// Returns the next mutation packaged in a communication object
 	public synchronized CommucObj getNextComObj(int curMutIndex) {
 
@@ -528,156 +556,19 @@ public class MutationManager
 
 
 	// Output a finished mutation to the results file
-	public synchronized void processFinishedMutation(CommucObj cObj) {
+	public void processFinishedMutation(CommucObj cObj) {
 
-		if (PEMcomp){ //energy matrix computation
-			if(!entropyComp){
-				if(cObj.flagMutType.equals("TEMPL")){
-					if(compCETM)
-						cetm.mergeIn(cObj.cetm,cObj.resMut);
-					else
-						pairEMatrixMin.setTemplMinE(cObj.compEE.get(0).minE);
-				}
-				else if(cObj.flagMutType.equals("INTRA")){
-					if(!compCETM){
-						//KER: initialize eref to big E
-						Set<String> keys = eRef.keySet();
-						for(String pdbNum: keys){
-							double[] eRefs = eRef.get(pdbNum);
-							for(int j=0; j<eRefs.length;j++)
-								eRefs[j]=Double.POSITIVE_INFINITY;
-						}
-						//KER: I now output a separate Eref matrix
-						for(EMatrixEntrySlim re: cObj.compEE){
-							RotamerEntry eme = (RotamerEntry)pairEMatrixMin.singles.getTerm(re.index);
-							Residue mutRes = m.residue[pairEMatrixMin.resByPos.get(re.index[0]).get(0)];
-							int aaInd = m.strand[mutRes.strandNumber].rcl.getRC(eme.r.rotamers[0]).rot.aaType.index;
-							eRef.get(mutRes.getResNumberString())[aaInd] = Math.min(eRef.get(mutRes.getResNumberString())[aaInd],re.minE);	
-						}
-						//KER: Remove all of the bigE
-						for(String pdbNum: keys){
-							double[] eRefs = eRef.get(pdbNum);
-							for(int j=0; j<eRefs.length;j++)
-								if(eRef.get(pdbNum)[j]==Double.POSITIVE_INFINITY)
-									eRef.get(pdbNum)[j] = 0.0f;
-						}
-						pairEMatrixMin.eRef = eRef;//outputObject(eRef,eRefMatrix+".dat");
-					}
-				}
-				else{
-					if(compCETM)
-						cetm.mergeIn(cObj.cetm,cObj.resMut);
-					else{
-						if(cObj.flagMutType.equals("SHL-AS")){ //Shell-AS computation
-							for(EMatrixEntrySlim re : cObj.compEE){
-								pairEMatrixMin.singles.setE(re);
-								if(re.rotDih1 != null){
-									pairEMatrixMin.singles.setMaxE(re);
-									pairEMatrixMin.singles.setDihed(re);
-								}
-							}
-						}
-						else{ //Pairs Computation
-//							String fileName = cObj.arpFilenameMin+"_"+cObj.runParams.pos1+"_"+cObj.runParams.pos2;
-//							PairMats tmpPairs = PairMats.read(fileName, cObj.doDih);
-							PairMats tmpPairs = cObj.emat.pairs;
-							//Get what AAs we need to loop over
-							int p1 = cObj.runParams.pos1;
-							int p2 = cObj.runParams.pos2;
-							Integer[] AA1,AA2;
-							if(cObj.runParams.AAs1 != null)
-								AA1 = cObj.runParams.AAs1.toArray(new Integer[0]);
-							else{
-								AA1 = new Integer[tmpPairs.E[p1].length];
-								for(int i=0; i<AA1.length;i++){AA1[i] = i;}
-							}
-							if(cObj.runParams.AAs2 != null)
-								AA2 = cObj.runParams.AAs2.toArray(new Integer[0]);
-							else{
-								AA2 = new Integer[pairEMatrixMin.singles.E[p2].length];
-								for(int i=0; i<AA2.length;i++){AA2[i] = i;}
-							}
-							//Copy over all terms in tmpPairs
-							for(int a1 : AA1){
-								for(int r1=0; r1<tmpPairs.E[p1][a1].length;r1++){
-									for(int a2 : AA2){
-										for(int r2=0;r2<tmpPairs.E[p1][a1][r1][p2][a2].length;r2++){
-											if(cObj.runParams.rotamers == null || cObj.runParams.rotamers.contains(new Index3(p1,a1,r1)) ){
-												pairEMatrixMin.pairs.E[p1][a1][r1][p2][a2][r2] = tmpPairs.E[p1][a1][r1][p2][a2][r2];
-												pairEMatrixMin.pairs.E[p2][a2][r2][p1][a1][r1] = tmpPairs.E[p1][a1][r1][p2][a2][r2]; //Set Symmetric entry
-												if(cObj.doDih){
-													pairEMatrixMin.pairs.rotDih1[p1][a1][r1][p2][a2][r2] = tmpPairs.rotDih1[p1][a1][r1][p2][a2][r2];
-													pairEMatrixMin.pairs.rotDih1[p2][a2][r2][p1][a1][r1] = tmpPairs.rotDih1[p1][a1][r1][p2][a2][r2];
-													pairEMatrixMin.pairs.rotDih2[p1][a1][r1][p2][a2][r2] = tmpPairs.rotDih2[p1][a1][r1][p2][a2][r2];
-													pairEMatrixMin.pairs.rotDih2[p2][a2][r2][p1][a1][r1] = tmpPairs.rotDih2[p1][a1][r1][p2][a2][r2];
-													pairEMatrixMin.pairs.maxE[p1][a1][r1][p2][a2][r2] = tmpPairs.maxE[p1][a1][r1][p2][a2][r2];
-													pairEMatrixMin.pairs.maxE[p2][a2][r2][p1][a1][r1] = tmpPairs.maxE[p1][a1][r1][p2][a2][r2];
-												}
-											}
-													
-										}
-									}
-								}
-							}
-							
-//								pairEMatrixMin.pairs.setE(re);
-//								if(re.rotDih1 != null){
-//									pairEMatrixMin.pairs.setDihed(re);
-//									pairEMatrixMin.pairs.setMaxE(re);
-//								}
-							tmpPairs = null;
-							System.gc();
-						}
-						
-					}
-				}
-			}
-			else { //entropy E matrix computation
-				if (compASdist){ //AS-AS distance computation
-					asDist[cObj.mutationNumber] = cObj.asDist;
-				}
-				else {
-					//TODO: Fix entropy Ematrix
-					System.out.println("Need to fix Entropy");
-					//				if (cObj.flagMutType.equalsIgnoreCase("INTRA")){
-					//					for (int i=0; i<countNewEntries; i++){
-					//						int index1 = 1 + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i2] + cObj.compEE[i].i3;
-					//						pairEMatrixMinEntropy[cObj.mutationNumber*rotLib.getTotalNumRotamers()+index1][0] = cObj.compEE[i].minE;
-					//					}
-					//				}
-					//				else { //AS-AS run
-					//					for (int i=0; i<countNewEntries; i++){
-					//						int ind1 = -1;
-					//						int ind2 = -1;
-					//						int index1 = cObj.compEE[i].i1*rotLib.getTotalNumRotamers() + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i2] + cObj.compEE[i].i3;
-					//						int index2 = cObj.compEE[i].i4*rotLib.getTotalNumRotamers() + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i5] + cObj.compEE[i].i6;
-					//						if (index1<rotLib.getTotalNumRotamers()){
-					//							ind1 = index1;
-					//							ind2 = index2-rotLib.getTotalNumRotamers();
-					//						}
-					//						else {
-					//							ind1 = index2;
-					//							ind2 = index1-rotLib.getTotalNumRotamers();
-					//						}
-					//						asasE[cObj.strandMut[0][0]][cObj.strandMut[0][1]][ind1][ind2] = cObj.compEE[i].minE;
-					//					}
-					//				}
-				}
+		if (PEMcomp && EnvironmentVars.numMergeThreads > 0)
+			submitMerge(cObj); //merged on the merge pool while the master keeps dispatching
+		else
+			processResult(cObj);
+	}
 
-			}	
-			//Output mutation information to results file (for resume)
-			/*System.out.println("MutNUM: "+cObj.curMut+" produced "+countNewEntries+" new entries.");
-			logPS.print("Completed mutation "+cObj.curMut);
-				logPS.print(" SlaveNum "+cObj.slaveNum);
-				logPS.print(" Time "+(cObj.elapsedTime/60.0));
-				if (!entropyComp){
-					for(int i=0;i<cObj.mutableSpots;i++)
-						logPS.print(" "+cObj.resMut[i]);
-					logPS.print(" "+cObj.flagMutType);
-				}
-				logPS.println();
-				logPS.flush();*/
-		}			
+	private synchronized void processResult(CommucObj cObj) {
+
+		if (PEMcomp){ //energy matrix computation
+			mergePEMResult(cObj);
+		}
 		else { //mutation search
 			if ((!distrDEE)&&(!distrDACS)){ //Hybrid MinDEE-K*, not (distributed DACS or distributed DEE)
 
@@ -696,7 +587,8 @@ public class MutationManager
 				//if the finished run had duplicates waiting on it to finish)
 				for(CommucObj cObj1: cObjs){
 					System.out.println("MutNUM: "+cObj1.mutationNumber);
-					logPS.print("Completed mutation "+cObj1.mutationNumber);
+					StringBuilder line = new StringBuilder();
+					line.append("Completed mutation "+cObj1.mutationNumber);
 					BigDecimal score = new BigDecimal("0.0");
 					BigDecimal denom = new BigDecimal("1.0");
 
@@ -707,58 +599,66 @@ public class MutationManager
 					}
 					if (denom.compareTo(new BigDecimal("0.0")) != 0)
 						score = cObj1.q[cObj1.numComplexes-1].divide(denom,ExpFunction.mc);
-					logPS.print(" Score "+score);
+					line.append(" Score "+score);
 
-					logPS.print(" Volume "+mutArray[cObj1.mutationNumber].vol);
-					logPS.print(" SlaveNum "+cObj1.slaveNum);
-					logPS.print(" Time ");
+					line.append(" Volume "+mutArray[cObj1.mutationNumber].vol);
+					line.append(" SlaveNum "+cObj1.slaveNum);
+					line.append(" Time ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print((cObj1.q_Time[i]/60.0)+" ");
-					logPS.print(" InitBest "+cObj1.bestScore);
+						line.append((cObj1.q_Time[i]/60.0)+" ");
+					line.append(" InitBest "+cObj1.bestScore);
 					BigDecimal bs = cObj1.bestScore;
 					if (score.compareTo(cObj1.bestScore) >0)
 						bs = score;
-					logPS.print(" FinalBest "+bs);
+					line.append(" FinalBest "+bs);
 					int ctr=0;
 					for(Residue r: m.residue){
 						if(r.isMutable){
 							String aaName = r.rl.getAAName(cObj1.currentMutation[ctr]);
-							logPS.print(" "+aaName);
+							line.append(" "+aaName);
 							ctr++;
 						}
 					}
 
 					for(int i=0;i<cObj1.numComplexes;i++){
-						logPS.print(" "+i+"ConfInfo "+cObj1.searchNumConfsEvaluated[i]+" "+cObj1.searchNumPrunedMinDEE[i]+" "
+						line.append(" "+i+"ConfInfo "+cObj1.searchNumConfsEvaluated[i]+" "+cObj1.searchNumPrunedMinDEE[i]+" "
 								+cObj1.searchNumConfsPrunedByS[i]+" "+cObj1.searchNumConfsLeft[i]);
 					}
-					logPS.print(" MinEMinimized ");
+					line.append(" MinEMinimized ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.bestEMin[i]+" ");
-					logPS.print(" MinEUnMinimized ");
+						line.append(cObj1.bestEMin[i]+" ");
+					line.append(" MinEUnMinimized ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.bestE[i]+" ");
-					logPS.print(" EffectiveEpsilon: ");
+						line.append(cObj1.bestE[i]+" ");
+					line.append(" EffectiveEpsilon: ");
 					/*for(int i=0;i<cObj1.numComplexes;i++)
-					logPS.print(cObj1.effEpsilon[i]+" ");*/
-					logPS.print(" Partial_q_E ");
+					line.append(cObj1.effEpsilon[i]+" ");*/
+					line.append(" Partial_q_E ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.q[i]+" ");
-					logPS.print(" E_total ");
+						line.append(cObj1.q[i]+" ");
+					line.append(" E_total ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.searchNumConfsTotal[i]+" ");	
-					logPS.print(" SecondEw ");
+						line.append(cObj1.searchNumConfsTotal[i]+" ");	
+					line.append(" SecondEw ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.repeatEW[i]+" ");
-					logPS.print(" E_allPruned ");
+						line.append(cObj1.repeatEW[i]+" ");
+					line.append(" E_allPruned ");
 					for(int i=0;i<cObj1.numComplexes;i++)
-						logPS.print(cObj1.allPruned[i]+" ");
-					logPS.println();
+						line.append(cObj1.allPruned[i]+" ");
+					logPS.println(line);
+					if (resultStore != null){
+						StringBuilder seq = new StringBuilder();
+						for(int i=0; i<cObj1.currentMutation.length; i++)
+							seq.append(cObj1.currentMutation[i]).append(' ');
+						resultStore.add(seq.toString(), score, line.toString());
+					}
 					if (score.compareTo(bestScore) >0){
 						logPS.println("BestScoreChange "+bestScore+" to "+score);
 						bestScore = score;
 					}
-					logPS.flush();	
+					if (seqBounds != null)
+						seqBounds.addResult(cObj1.curMut, cObj1.q, score);
+					logPS.flush();
 				}
 			}
 			else if (distrDACS){ //distributed DACS
@@ -823,16 +723,256 @@ public class MutationManager
 		}
 	}
 
+	/**
+	 * Queues the result of an energy matrix job for merging on the merge pool. Jobs lock the
+	 * matrix positions they write (in increasing order), so results for disjoint position
+	 * pairs are merged concurrently; the template, intra and entropy runs lock all positions.
+	 * Blocks if too many results are already waiting, to bound the memory they hold.
+	 */
+	private void submitMerge(final CommucObj cObj) {
+
+		synchronized(this){
+			if(mergePool == null){
+				int numThreads = EnvironmentVars.numMergeThreads;
+				mergePool = Executors.newFixedThreadPool(numThreads);
+				mergeSlots = new Semaphore(4*numThreads);
+			}
+		}
+
+		final ReentrantLock locks[] = mergeLocks(cObj);
+		mergeSlots.acquireUninterruptibly();
+		mergePool.execute(new Runnable(){
+			public void run(){
+				for(ReentrantLock l : locks)
+					l.lock();
+				try{
+					mergePEMResult(cObj);
+				}
+				catch(Throwable t){
+					System.out.println("ERROR: merging the result of job "+cObj.mutationNumber+" failed");
+					t.printStackTrace();
+					System.exit(1);
+				}
+				finally{
+					for(ReentrantLock l : locks)
+						l.unlock();
+					mergeSlots.release();
+				}
+			}
+		});
+	}
+
+	//The position locks (in increasing position order) a merge of cObj needs
+	private synchronized ReentrantLock[] mergeLocks(CommucObj cObj) {
+		int numPos = (cObj.resMut != null) ? cObj.resMut.length : 0;
+		if(posLocks == null || posLocks.length < numPos){
+			posLocks = new ReentrantLock[numPos];
+			for(int i=0; i<numPos; i++)
+				posLocks[i] = new ReentrantLock();
+		}
+
+		boolean allPos = entropyComp || cObj.resMut == null || cObj.flagMutType.equals("TEMPL")
+				|| cObj.flagMutType.equals("INTRA");
+		ArrayList<ReentrantLock> locks = new ArrayList<ReentrantLock>();
+		for(int i=0; i<posLocks.length; i++){
+			if(allPos || (i<numPos && cObj.resMut[i] == 1))
+				locks.add(posLocks[i]);
+		}
+		if(locks.isEmpty()) //nothing position-specific (e.g. a template run with no positions)
+			locks.add(templLock);
+		return locks.toArray(new ReentrantLock[locks.size()]);
+	}
+
+	/**
+	 * Waits until all queued results have been merged; must be called before the matrix
+	 * being computed is used (does nothing if results are merged as they arrive)
+	 */
+	public void finishMerging() {
+		ExecutorService pool;
+		synchronized(this){
+			pool = mergePool;
+			mergePool = null;
+		}
+		if(pool == null)
+			return;
+
+		pool.shutdown();
+		try{
+			while(!pool.awaitTermination(1, TimeUnit.MINUTES)){
+				System.out.println("Waiting for the remaining results to be merged...");
+			}
+		}
+		catch(InterruptedException e){
+			System.out.println("ERROR: interrupted while merging results");
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	//Merges the result of an energy matrix job into the matrix being computed
+	private void mergePEMResult(CommucObj cObj) {
+
+		if(!entropyComp){
+			if(cObj.flagMutType.equals("TEMPL")){
+				if(compCETM)
+					cetm.mergeIn(cObj.cetm,cObj.resMut);
+				else
+					pairEMatrixMin.setTemplMinE(cObj.compEE.get(0).minE);
+			}
+			else if(cObj.flagMutType.equals("INTRA")){
+				if(!compCETM){
+					//KER: initialize eref to big E
+					Set<String> keys = eRef.keySet();
+					for(String pdbNum: keys){
+						double[] eRefs = eRef.get(pdbNum);
+						for(int j=0; j<eRefs.length;j++)
+							eRefs[j]=Double.POSITIVE_INFINITY;
+					}
+					//KER: I now output a separate Eref matrix
+					for(EMatrixEntrySlim re: cObj.compEE){
+						RotamerEntry eme = (RotamerEntry)pairEMatrixMin.singles.getTerm(re.index);
+						Residue mutRes = m.residue[pairEMatrixMin.resByPos.get(re.index[0]).get(0)];
+						int aaInd = m.strand[mutRes.strandNumber].rcl.getRC(eme.r.rotamers[0]).rot.aaType.index;
+						eRef.get(mutRes.getResNumberString())[aaInd] = Math.min(eRef.get(mutRes.getResNumberString())[aaInd],re.minE);	
+					}
+					//KER: Remove all of the bigE
+					for(String pdbNum: keys){
+						double[] eRefs = eRef.get(pdbNum);
+						for(int j=0; j<eRefs.length;j++)
+							if(eRef.get(pdbNum)[j]==Double.POSITIVE_INFINITY)
+								eRef.get(pdbNum)[j] = 0.0f;
+					}
+					pairEMatrixMin.eRef = eRef;//outputObject(eRef,eRefMatrix+".dat");
+				}
+			}
+			else{
+				if(compCETM)
+					cetm.mergeIn(cObj.cetm,cObj.resMut);
+				else{
+					if(cObj.flagMutType.equals("SHL-AS")){ //Shell-AS computation
+						for(EMatrixEntrySlim re : cObj.compEE){
+							pairEMatrixMin.singles.setE(re);
+							if(re.rotDih1 != null){
+								pairEMatrixMin.singles.setMaxE(re);
+								pairEMatrixMin.singles.setDihed(re);
+							}
+						}
+					}
+					else{ //Pairs Computation
+//							String fileName = cObj.arpFilenameMin+"_"+cObj.runParams.pos1+"_"+cObj.runParams.pos2;
+//							PairMats tmpPairs = PairMats.read(fileName, cObj.doDih);
+						PairMats tmpPairs = cObj.emat.pairs;
+						//Get what AAs we need to loop over
+						int p1 = cObj.runParams.pos1;
+						int p2 = cObj.runParams.pos2;
+						Integer[] AA1,AA2;
+						if(cObj.runParams.AAs1 != null)
+							AA1 = cObj.runParams.AAs1.toArray(new Integer[0]);
+						else{
+							AA1 = new Integer[tmpPairs.E[p1].length];
+							for(int i=0; i<AA1.length;i++){AA1[i] = i;}
+						}
+						if(cObj.runParams.AAs2 != null)
+							AA2 = cObj.runParams.AAs2.toArray(new Integer[0]);
+						else{
+							AA2 = new Integer[pairEMatrixMin.singles.E[p2].length];
+							for(int i=0; i<AA2.length;i++){AA2[i] = i;}
+						}
+						//Copy over all terms in tmpPairs
+						for(int a1 : AA1){
+							for(int r1=0; r1<tmpPairs.E[p1][a1].length;r1++){
+								if(cObj.runParams.rotamers != null && !cObj.runParams.rotamers.contains(new Index3(p1,a1,r1)))
+									continue;
+								for(int a2 : AA2){
+									for(int r2=0;r2<tmpPairs.E[p1][a1][r1][p2][a2].length;r2++){
+										pairEMatrixMin.pairs.E[p1][a1][r1][p2][a2][r2] = tmpPairs.E[p1][a1][r1][p2][a2][r2];
+										pairEMatrixMin.pairs.E[p2][a2][r2][p1][a1][r1] = tmpPairs.E[p1][a1][r1][p2][a2][r2]; //Set Symmetric entry
+										if(cObj.doDih){
+											pairEMatrixMin.pairs.rotDih1[p1][a1][r1][p2][a2][r2] = tmpPairs.rotDih1[p1][a1][r1][p2][a2][r2];
+											pairEMatrixMin.pairs.rotDih1[p2][a2][r2][p1][a1][r1] = tmpPairs.rotDih1[p1][a1][r1][p2][a2][r2];
+											pairEMatrixMin.pairs.rotDih2[p1][a1][r1][p2][a2][r2] = tmpPairs.rotDih2[p1][a1][r1][p2][a2][r2];
+											pairEMatrixMin.pairs.rotDih2[p2][a2][r2][p1][a1][r1] = tmpPairs.rotDih2[p1][a1][r1][p2][a2][r2];
+											pairEMatrixMin.pairs.maxE[p1][a1][r1][p2][a2][r2] = tmpPairs.maxE[p1][a1][r1][p2][a2][r2];
+											pairEMatrixMin.pairs.maxE[p2][a2][r2][p1][a1][r1] = tmpPairs.maxE[p1][a1][r1][p2][a2][r2];
+										}
+									}
+								}
+							}
+						}
+						
+//								pairEMatrixMin.pairs.setE(re);
+//								if(re.rotDih1 != null){
+//									pairEMatrixMin.pairs.setDihed(re);
+//									pairEMatrixMin.pairs.setMaxE(re);
+//								}
+						tmpPairs = null;
+					}
+					
+				}
+			}
+		}
+		else { //entropy E matrix computation
+			if (compASdist){ //AS-AS distance computation
+				asDist[cObj.mutationNumber] = cObj.asDist;
+			}
+			else {
+				//TODO: Fix entropy Ematrix
+				System.out.println("Need to fix Entropy");
+				//				if (cObj.flagMutType.equalsIgnoreCase("INTRA")){
+				//					for (int i=0; i<countNewEntries; i++){
+				//						int index1 = 1 + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i2] + cObj.compEE[i].i3;
+				//						pairEMatrixMinEntropy[cObj.mutationNumber*rotLib.getTotalNumRotamers()+index1][0] = cObj.compEE[i].minE;
+				//					}
+				//				}
+				//				else { //AS-AS run
+				//					for (int i=0; i<countNewEntries; i++){
+				//						int ind1 = -1;
+				//						int ind2 = -1;
+				//						int index1 = cObj.compEE[i].i1*rotLib.getTotalNumRotamers() + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i2] + cObj.compEE[i].i3;
+				//						int index2 = cObj.compEE[i].i4*rotLib.getTotalNumRotamers() + rotLib.getRotamerIndexOffset()[cObj.compEE[i].i5] + cObj.compEE[i].i6;
+				//						if (index1<rotLib.getTotalNumRotamers()){
+				//							ind1 = index1;
+				//							ind2 = index2-rotLib.getTotalNumRotamers();
+				//						}
+				//						else {
+				//							ind1 = index2;
+				//							ind2 = index1-rotLib.getTotalNumRotamers();
+				//						}
+				//						asasE[cObj.strandMut[0][0]][cObj.strandMut[0][1]][ind1][ind2] = cObj.compEE[i].minE;
+				//					}
+				//				}
+			}
+
+		}	
+		//Output mutation information to results file (for resume)
+		/*System.out.println("MutNUM: "+cObj.curMut+" produced "+countNewEntries+" new entries.");
+		logPS.print("Completed mutation "+cObj.curMut);
+			logPS.print(" SlaveNum "+cObj.slaveNum);
+			logPS.print(" Time "+(cObj.elapsedTime/60.0));
+			if (!entropyComp){
+				for(int i=0;i<cObj.mutableSpots;i++)
+					logPS.print(" "+cObj.resMut[i]);
+				logPS.print(" "+cObj.flagMutType);
+			}
+			logPS.println();
+			logPS.flush();*/
+	}
+
 	private void handleDuplicateInfo(CommucObj cObj, ArrayList<CommucObj> cObjs) {
+		boolean waiting = false;
 		for(int i=0; i<cObj.duplicateMut.length;i++){
 			if(cObj.duplicateMut[i] >= 0){//Check to see if that's computed
 				if(completedRuns[cObj.duplicateMut[i]][i] != null){
 					cObj.setPartitionProperties(i, completedRuns[cObj.duplicateMut[i]][i]);
+					cObj.duplicateMut[i] = -1; //this strand no longer has to be waited on
 				}
 				else{
-					waitingRuns.add(cObj);
+					if(!waiting){
+						waitingRuns.add(cObj);
+						cObjs.remove(cObj);
+						waiting = true;
+					}
 					System.out.println("cObj "+cObj.curMut+" is now waiting for "+cObj.duplicateMut[i]);
-					cObjs.remove(cObj);
 				}
 			}else if(cObj.duplicateMut[i] == KSParser.DUPFOUND){
 				completedRuns[cObj.curMut][i] = new PartitionMessage(i, cObj.curMut, cObj.seqNum,cObj.q[i], 
@@ -925,6 +1065,8 @@ public class MutationManager
 	}
 
 	public void closeLog() {
+		if (resultStore!=null)
+			resultStore.close();
 		if (logPS!=null){
 			logPS.flush();
 			logPS.close();
@@ -1072,6 +1214,12 @@ public class MutationManager
 	public void setDistrDEE(boolean dDEE){
 		distrDEE = dDEE;
 	}
+	public void setSeqBounds(KSSeqBounds sb){
+		seqBounds = sb;
+	}
+	public void setResultStore(KSResultStore rs){
+		resultStore = rs;
+	}
 	public void setBestScore(BigDecimal bs){
 		bestScore = bs;
 	}
@@ -76,7 +76,7 @@ public interface ObjectiveFunction {
     
     //Value and gradient at a given point (specified as values for all DOFs)
     public double getValue(DoubleMatrix1D x);
-    //public DoubleMatrix1D getGradient(DoubleMatrix1D x);
+    public DoubleMatrix1D getGradient(DoubleMatrix1D x);//Leaves the DOFs set to x
 
     //Value at a given value for a given DOF,
     //and, for efficiency, possibly omitting energy terms that don't depend on that DOF
@@ -3,6 +3,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 
 /*
 	This file is part of OSPREY.
@@ -271,7 +272,7 @@ public class PGAStar extends AStar{
 				}
 
 				//if the current node is fully assigned, we have found a full conformation
-				if (expNode.emptyLevels.isEmpty()){
+				if (expNode.emptyLevels().isEmpty()){
 					//curExpansion.delete(expNode);//delete this node to set-up for the next min conformation (next run of A*)
 					if(retConfE - expNode.fScore > 0.4 && retConfE < 0){
 						outPS.println(retConfE +" "+expNode.fScore);
@@ -298,13 +299,16 @@ public class PGAStar extends AStar{
 					if(doReorder)
 						nextLevelNodes = pickNextLevel(expNode);
 					else{
-						int pos = expNode.nonEmptyLevels.size();
+						int pos = expNode.nonEmptyLevels().size();
 						nextLevelNodes = new PGQueueNode[numNodesForLevel[pos]];
+						HTerms parentTerms = null;
+						if(canUseIncrementalH())
+							parentTerms = new HTerms(expNode);
 						for(int rot = 0; rot < numNodesForLevel[pos]; rot++){				
 							newNode = new PGQueueNode(numTreeLevels, expNode.confSoFar, expNode.fScore, pos, rot);  // No energy yet
-							newNode.fScore = fCompute(newNode);
 							nextLevelNodes[rot] = newNode;
 						}
+						scoreChildren(nextLevelNodes, parentTerms);
 					}
 					for(int rot = 0; rot < nextLevelNodes.length; rot++){
 						if(expNode.fScore != 0 && nextLevelNodes[rot].fScore - expNode.fScore < -0.001 && !es.useEPIC)
@@ -328,7 +332,7 @@ public class PGAStar extends AStar{
 		}
 		
 		//Get the emat indices for the current conformation to return
-		EMatrixEntryWIndex[] actualConf = getActualConf(expNode.confSoFar, emat);
+		EMatrixEntryWIndex[] actualConf = getActualConf(expNode.getConf(), emat);
 		expNode.actualConf = actualConf;
 		
 		//outPS.println("Number of A* nodes inserted in the queue: "+countNodes);
@@ -342,7 +346,7 @@ public class PGAStar extends AStar{
             //include h-score too if useHSer
             //optDOFVals is initially from the parent, to use an initial values; update to be optimal here
 
-        	if(expNode.nonEmptyLevels.size() == 0)
+        	if(expNode.nonEmptyLevels().size() == 0)
         		return 0;
         	
             //if only want FS terms for full confs
@@ -413,18 +417,18 @@ public class PGAStar extends AStar{
         
         CETObjFunction getNodeObjFunc(PGQueueNode node) {
             //not for splitBySlack
-        	 int[] conf = node.confSoFar;
+        	 int[] conf = node.getConf();
                 
-        	 Index3[] indices = new Index3[node.nonEmptyLevels.size()];
-             //int rots[] = new int[node.nonEmptyLevels.size()];
-        	 for(int level: node.nonEmptyLevels){
+        	 Index3[] indices = new Index3[node.nonEmptyLevels().size()];
+             //int rots[] = new int[node.nonEmptyLevels().size()];
+        	 for(int level: node.nonEmptyLevels()){
         		 if(conf[level]>=0){
                  	indices[level] = twoDTo3D[level][node.confSoFar[level]];
         		 }
         	 }
         	 
         	 
-//             for(int level : node.nonEmptyLevels){
+//             for(int level : node.nonEmptyLevels()){
 //
 //                if(conf[level]>=0){
 //                	indices[level] = twoDTo3D[level][node.confSoFar[level]];
@@ -482,7 +486,7 @@ public class PGAStar extends AStar{
                     if( m.strand[str].numberOfResidues > strandMut.numMutPerStrand[str] )//strand has template residues
                         transRotStrands[str] = true;
                     
-                    for(int i: node.nonEmptyLevels){
+                    for(int i: node.nonEmptyLevels()){
                         if(str==m.residue[strandMut.allMut[i]].strandNumber)//strand has an assigned residue
                             transRotStrands[str] = true;
                     }
@@ -500,7 +504,7 @@ public class PGAStar extends AStar{
         void applyRotamers(PGQueueNode node, Index3[] indices){
             //apply AA types and rotamers up to the current level
                     	
-            for (int i : node.nonEmptyLevels){
+            for (int i : node.nonEmptyLevels()){
 
                 RotamerEntry re = emat.singles.getTerm(indices[i]);
                 re.applyMutation(m, emat.resByPos, true,true );
@@ -540,7 +544,7 @@ public class PGAStar extends AStar{
             }
           
             //make the other residues not flexible
-            for(int i: node.emptyLevels){
+            for(int i: node.emptyLevels()){
             	Residue r = m.residue[strandMut.allMut[i]];
                 int str = r.strandNumber;
                 int strResNum = r.strandResidueNumber;
@@ -561,19 +565,31 @@ public class PGAStar extends AStar{
 		int maxMinFScoreIndex = -1;
 		double maxMinFScore = Double.NEGATIVE_INFINITY;
 
+		// Create the nodes for every rotamer at every position that has not been assigned in dequeuedNode,
+		// then score them all at once
+		PGQueueNode newNodes[][] = new PGQueueNode[dequeuedNode.emptyLevels().size()][];
+		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+			int pos = dequeuedNode.emptyLevels().get(iter);
+			newNodes[iter] = new PGQueueNode[numNodesForLevel[pos]];
+			for(int rot = 0; rot < numNodesForLevel[pos]; rot++){				
+				PGQueueNode newNode = new PGQueueNode(numTreeLevels, dequeuedNode.confSoFar, dequeuedNode.fScore, pos, rot);  // Set energy as parent energy
+				newNode.curTuples = dequeuedNode.curTuples; //set new node's tuples as parent tuples
+				newNodes[iter][rot] = newNode;
+			}
+		}
+		scoreChildren(newNodes);
+
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double minAtThisLevel = Double.POSITIVE_INFINITY;
 			int minIndexAtThisLevel = -1; 
-			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numNodesForLevel[pos]];
+			PGQueueNode curLevelPGQueueNodes[] = newNodes[iter];
 			// And for each rotamer at that level
 			for(int rot = 0; rot < numNodesForLevel[pos]; rot++){				
-				PGQueueNode newNode = new PGQueueNode(numTreeLevels, dequeuedNode.confSoFar, dequeuedNode.fScore, pos, rot);  // Set energy as parent energy
-				newNode.curTuples = dequeuedNode.curTuples; //set new node's tuples as parent tuples
+				PGQueueNode newNode = curLevelPGQueueNodes[rot];
 				//KER: Trying out gCompute as a heuristic
 				//newNode.fScore = gCompute(newNode);//fCompute(newNode);
-				newNode.fScore = fCompute(newNode);
 //				if(newNode.fScore - dequeuedNode.fScore < 0 && dequeuedNode.fScore < 0){
 //					//System.out.println("DELETE ME");
 //					newNode.fScore = dequeuedNode.fScore; //Something went wrong with the minimization, but we don't want to mess up the AStar run
@@ -616,15 +632,15 @@ public class PGAStar extends AStar{
 		int maxTuplePos = -1;
 
 		ArrayList<Index3> dequeuedNodeConf = new ArrayList<Index3>();
-		for(int pos: dequeuedNode.nonEmptyLevels){
+		for(int pos: dequeuedNode.nonEmptyLevels()){
 			Index3 index2 = twoDTo3D[pos][dequeuedNode.confSoFar[pos]];
 			dequeuedNodeConf.add(index2);
 		}
 
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			int numTuples = 0;
 
 			//Find the number of tuples that share at least one rotamer 
@@ -644,7 +660,7 @@ public class PGAStar extends AStar{
 		//If there isn't a spot with more tuples
 		//Use the position with the most tuples
 //		if(maxTuplePos == -1){
-//			for(int pos: dequeuedNode.emptyLevels){
+//			for(int pos: dequeuedNode.emptyLevels()){
 //				if(tuplesPerPos.get(pos).size() > maxTuples){
 //					maxTuples = tuplesPerPos.get(pos).size();
 //					maxTuplePos = pos;
@@ -658,25 +674,33 @@ public class PGAStar extends AStar{
 			bestLevelNodes = new PGQueueNode[numNodesForLevel[maxTuplePos]];
 			for(int rot = 0; rot < numNodesForLevel[maxTuplePos]; rot++){				
 				PGQueueNode newNode = new PGQueueNode(numTreeLevels, dequeuedNode.confSoFar, 0.0, maxTuplePos, rot);  // No energy yet
-				newNode.fScore = fCompute(newNode);
 				bestLevelNodes[rot] = newNode;
 			}
+			scoreChildren(bestLevelNodes, null);
 
 
 		}else{//Finally, if we still haven't found a position do the normal check
 			ArrayList<PGQueueNode[]> allLevelNodes = new ArrayList<PGQueueNode[]>(); 
-			for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-				int pos = dequeuedNode.emptyLevels.get(iter);
+			PGQueueNode newNodes[][] = new PGQueueNode[dequeuedNode.emptyLevels().size()][];
+			for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+				int pos = dequeuedNode.emptyLevels().get(iter);
+				newNodes[iter] = new PGQueueNode[numNodesForLevel[pos]];
+				for(int rot = 0; rot < numNodesForLevel[pos]; rot++)
+					newNodes[iter][rot] = new PGQueueNode(numTreeLevels, dequeuedNode.confSoFar, 0.0, pos, rot);  // No energy yet
+			}
+			scoreChildren(newNodes);
+
+			for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+				int pos = dequeuedNode.emptyLevels().get(iter);
 
 				double minAtThisLevel = Double.POSITIVE_INFINITY;
 				int minIndexAtThisLevel = -1; 
-				PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numNodesForLevel[pos]];
+				PGQueueNode curLevelPGQueueNodes[] = newNodes[iter];
 				// And for each rotamer at that level
 				for(int rot = 0; rot < numNodesForLevel[pos]; rot++){				
-					PGQueueNode newNode = new PGQueueNode(numTreeLevels, dequeuedNode.confSoFar, 0.0, pos, rot);  // No energy yet
+					PGQueueNode newNode = curLevelPGQueueNodes[rot];
 					//KER: Trying out gCompute as a heuristic
 					//newNode.fScore = gCompute(newNode);//fCompute(newNode);
-					newNode.fScore = fCompute(newNode);
 					/*if(newNode.fScore - dequeuedNode.fScore < -0.3 && dequeuedNode.fScore < 0){
 						System.out.println("DELETE ME");
 					}*/
@@ -707,13 +731,76 @@ public class PGAStar extends AStar{
 	}
 
 
+	//Computes the fScores of the children of an expanded node. The children are independent
+	//and only read the energy matrix, so with more than one compute thread they are scored in
+	//parallel; each score is written to its own node, so the expansion order does not change.
+	//If parentTerms is given, h(n) is computed incrementally from the parent's terms.
+	private void scoreChildren(PGQueueNode nodes[], HTerms parentTerms){
+		if(EnvironmentVars.numComputeThreads > 1 && nodes.length > EnvironmentVars.asScoreGranularity)
+			EnvironmentVars.getComputePool().invoke(new ScoreTask(nodes, parentTerms, 0, nodes.length));
+		else
+			scoreRange(nodes, parentTerms, 0, nodes.length);
+	}
+
+	//Scores the nodes for several levels at once (dynamic variable ordering)
+	private void scoreChildren(PGQueueNode nodes[][]){
+		int numNodes = 0;
+		for(PGQueueNode levelNodes[] : nodes)
+			numNodes += levelNodes.length;
+		PGQueueNode allNodes[] = new PGQueueNode[numNodes];
+		int ctr = 0;
+		for(PGQueueNode levelNodes[] : nodes){
+			System.arraycopy(levelNodes, 0, allNodes, ctr, levelNodes.length);
+			ctr += levelNodes.length;
+		}
+		scoreChildren(allNodes, null);
+	}
+
+	private void scoreRange(PGQueueNode nodes[], HTerms parentTerms, int start, int end){
+		for(int i=start; i<end; i++){
+			PGQueueNode node = nodes[i];
+			if(parentTerms != null)
+				node.fScore = Math.max(node.fScore, gCompute(node) + hComputeIncremental(node, parentTerms));
+			else
+				node.fScore = fCompute(node);
+		}
+	}
+
+	private class ScoreTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		PGQueueNode nodes[];
+		HTerms parentTerms;
+		int start, end;
+
+		ScoreTask(PGQueueNode nodes[], HTerms parentTerms, int start, int end){
+			this.nodes = nodes;
+			this.parentTerms = parentTerms;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start <= EnvironmentVars.asScoreGranularity)
+				scoreRange(nodes, parentTerms, start, end);
+			else{
+				int mid = (start + end) / 2;
+				invokeAll(new ScoreTask(nodes, parentTerms, start, mid),
+						new ScoreTask(nodes, parentTerms, mid, end));
+			}
+		}
+	}
+
+
 	//Updates and prints the state of the queue
 	private void printState(PGQueueNode expNode){
 
 		numExpanded++;
 
-		if (expNode.nonEmptyLevels.size()>topL){
-			topL = expNode.nonEmptyLevels.size();
+		if (expNode.nonEmptyLevels().size()>topL){
+			topL = expNode.nonEmptyLevels().size();
 			numTopL = 1;
 		}
 		else if (expNode.level+1==topL)
@@ -721,7 +808,7 @@ public class PGAStar extends AStar{
 
 
 		if((numExpanded%1000)==0){
-			outPS.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels.size() + " elem:");
+			outPS.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels().size() + " elem:");
 			for (int i=0;i<numTreeLevels;i++){
 				outPS.print(expNode.confSoFar[i]+" ");
 			}
@@ -801,8 +888,8 @@ public class PGAStar extends AStar{
 		}
 
 		//Setup CurConf
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			//Find Tuples
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 			assert curLevel == index1.pos;
@@ -852,8 +939,8 @@ public class PGAStar extends AStar{
 		//		do{
 		//			initSize = curTuples.size();
 		//			EnergyTuple curTuple = null;
-		//			for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-		//				int curLevel = node.nonEmptyLevels.get(curALindex);
+		//			for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+		//				int curLevel = node.nonEmptyLevels().get(curALindex);
 		//				if(!excludeLevel[curLevel]){
 		//					index1 = nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 		//					//Find Tuples
@@ -926,8 +1013,8 @@ public class PGAStar extends AStar{
 				for(Index3 i3_1: curTuple.rots){
 					int level_1 = i3_1.pos;
 					Index3 index_1 = twoDTo3D[level_1][node.confSoFar[level_1]];	//s at j
-					for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-						int level = node.nonEmptyLevels.get(curALindex);
+					for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+						int level = node.nonEmptyLevels().get(curALindex);
 	
 						if(!excludeLevel[level]){
 							index2 = twoDTo3D[level][node.confSoFar[level]];	//s at j
@@ -944,11 +1031,11 @@ public class PGAStar extends AStar{
 			}
 		}
 
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
 			minIndVoxE = 0;
 			sumMinPairE = 0;
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 
 			//minShellResE = RotamerSearch.getReducedShellRotE(pairwiseMinEnergyMatrix,index1,numTotalNodes);
@@ -969,8 +1056,8 @@ public class PGAStar extends AStar{
 		Index3 index2;
 		double sum = 0.0f;
 
-		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels.size(); levelALIndex++){
-			int level = node.nonEmptyLevels.get(levelALIndex);
+		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels().size(); levelALIndex++){
+			int level = node.nonEmptyLevels().get(levelALIndex);
 			if(!excludeLevel[level]){
 				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level];	//s at j
 				if(emat.areNeighbors(index1.pos, index2.pos))//pairwiseMinEnergyMatrix[index1][index2]!=null) //happens if they aren't neighbors
@@ -991,9 +1078,9 @@ public class PGAStar extends AStar{
 		EnergyTuple curTuple = null;
 		EnergyTuple tmpTuple = null;
 
-		for(int curALindex=startLevel; curALindex<node.nonEmptyLevels.size();curALindex++){
+		for(int curALindex=startLevel; curALindex<node.nonEmptyLevels().size();curALindex++){
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			if(!excludeLevel[curLevel]){
 				int index = nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 				Index3 i3 = rotIndexes[index];
@@ -1131,8 +1218,8 @@ public class PGAStar extends AStar{
 		for(Index3 i3_1: curTuple.rots){
 			int level_1 = i3_1.pos;
 			Index3 index_1 = twoDTo3D[level_1][node.confSoFar[level_1]];	//s at j
-			for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-				int level = node.nonEmptyLevels.get(curALindex);
+			for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+				int level = node.nonEmptyLevels().get(curALindex);
 	
 				if(!excludeTuple[level]){
 					index2 = twoDTo3D[level][node.confSoFar[level]];	//s at j
@@ -1145,11 +1232,11 @@ public class PGAStar extends AStar{
 		gn += minIndVoxE + sumMinPairE;
 
 
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
 			minIndVoxE = 0;
 			sumMinPairE = 0;
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			Index3 index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 
 			//minShellResE = RotamerSearch.getReducedShellRotE(pairwiseMinEnergyMatrix,index1,numTotalNodes);
@@ -1176,13 +1263,111 @@ public class PGAStar extends AStar{
 
 		double hn = 0.0f;
 
-		for (int curALindex=0 ;curALindex<node.emptyLevels.size();curALindex++){
+		for (int curALindex=0 ;curALindex<node.emptyLevels().size();curALindex++){
 			// For every level after the current one, we calculate the "heuristic" at that level
 			hn += EnergyAtLevel(node, curALindex);
 		}
 
 		return hn;
 	}
+	//The incremental heuristic gives exactly the same h(n) as hCompute, but it relies on the levels
+	//being assigned in order and on h(n) depending only on the pairs pruned with the assigned rotamers
+	private boolean canUseIncrementalH(){
+		return !doReorder && !es.useEPIC && prunedTriples == null
+				&& (energyTuples == null || energyTuples.size() == 0);
+	}
+
+	//The per-rotamer terms of h(n) for a node that is being expanded, shared by all of its children.
+	//pairE[j][s] is the sum of the pair energies of s at j with the assigned rotamers (hSumMinPVE),
+	//minMinE[j][s] is the sum of the min pair energies with the later unassigned levels (sumMinMinPVE),
+	//and invalid[k][u] is true if u at k is pair-pruned with one of the assigned rotamers
+	private class HTerms {
+
+		double pairE[][] = new double[numTreeLevels][];
+		double minMinE[][] = new double[numTreeLevels][];
+		boolean invalid[][] = new boolean[numTreeLevels][];
+
+		HTerms(PGQueueNode node){
+
+			for(int jALindex=0; jALindex<node.emptyLevels().size(); jALindex++){
+				int j = node.emptyLevels().get(jALindex);
+				pairE[j] = new double[numNodesForLevel[j]];
+				minMinE[j] = new double[numNodesForLevel[j]];
+				invalid[j] = new boolean[numNodesForLevel[j]];
+
+				for(int s=0; s<numNodesForLevel[j]; s++){
+					Index3 index1 = twoDTo3D[j][s];
+					pairE[j][s] = hSumMinPVE(node, index1);
+					minMinE[j][s] = sumMinMinPVE(node, jALindex, index1);
+
+					for(int level: node.nonEmptyLevels()){
+						Index3 i3 = twoDTo3D[level][node.confSoFar[level]];
+						if(emat.areNeighbors(i3.pos, index1.pos) && emat.getPairPruned(i3, index1)){
+							invalid[j][s] = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	//h(n) for a child of the node the terms were computed for. The child assigns the lowest
+	//unassigned level of its parent, so each pair sum only gains the term for the new rotamer.
+	//The min-min sums only change if the new rotamer prunes a pair with a rotamer that was still
+	//allowed at some later level; only then are they recomputed from scratch.
+	private double hComputeIncremental(PGQueueNode node, HTerms parentTerms){
+
+		int newLevel = node.level;
+		Index3 newIndex = twoDTo3D[newLevel][node.nodeNum];
+
+		//the last level that loses a rotamer because of the new assignment;
+		//the min-min sums of all the levels before it have to be recomputed
+		int lastChangedLevel = -1;
+		for(int k=numTreeLevels-1; k>newLevel && lastChangedLevel==-1; k--){
+			if(!emat.areNeighbors(newLevel, k))
+				continue;
+			for(int u=0; u<numNodesForLevel[k]; u++){
+				if(!parentTerms.invalid[k][u] && emat.getPairPruned(newIndex, twoDTo3D[k][u])){
+					lastChangedLevel = k;
+					break;
+				}
+			}
+		}
+
+		double hn = 0.0f;
+
+		for(int curALindex=0; curALindex<node.emptyLevels().size(); curALindex++){
+
+			int curLevel = node.emptyLevels().get(curALindex);
+			boolean neighbors = emat.areNeighbors(curLevel, newLevel);
+			double minE = (double)Math.pow(10,30);
+
+			for(int i1=0; i1<numNodesForLevel[curLevel]; i1++){
+
+				Index3 index1 = twoDTo3D[curLevel][i1];
+
+				double sumMinPairE = parentTerms.pairE[curLevel][i1];
+				if(neighbors)
+					sumMinPairE += emat.getPairMinE(index1, newIndex);
+
+				double sumMinMinPairE;
+				if(curLevel < lastChangedLevel)
+					sumMinMinPairE = sumMinMinPVE(node, curALindex, index1);
+				else
+					sumMinMinPairE = parentTerms.minMinE[curLevel][i1];
+
+				double curE = emat.getSingleMinE(index1) + sumMinPairE + sumMinMinPairE;
+				if(curE<minE)
+					minE = curE;
+			}
+
+			hn += minE;
+		}
+
+		return hn;
+	}
+
 	//Called by hCompute(.)
 	//  dLevel is called topLevel here.  
 	//  At each level we compute the intra energy, the shell energy, the pairwise energy with respect to things that have already been assigned (e.g. interaction energies with nodes <= dLevel)
@@ -1199,7 +1384,7 @@ public class PGAStar extends AStar{
 		double sumMinMinPairE;		//formula term 3
 
 
-		int curLevel = node.emptyLevels.get(curALindex);
+		int curLevel = node.emptyLevels().get(curALindex);
 
 		for (int i1=0; i1<numNodesForLevel[curLevel];i1++){		//the rotamers at j
 
@@ -1266,8 +1451,8 @@ public class PGAStar extends AStar{
 //		}
 
 
-		for (int levelALindex=0; levelALindex<node.nonEmptyLevels.size(); levelALindex++){
-			int level = node.nonEmptyLevels.get(levelALindex);
+		for (int levelALindex=0; levelALindex<node.nonEmptyLevels().size(); levelALindex++){
+			int level = node.nonEmptyLevels().get(levelALindex);
 			if(!excludeLevel[level]){
 				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level]; //the index of r at i
 
@@ -1286,7 +1471,7 @@ public class PGAStar extends AStar{
 		double sum = 0.0f;
 
 
-		for (int curALindex=jALindex+1; curALindex<node.emptyLevels.size(); curALindex++){
+		for (int curALindex=jALindex+1; curALindex<node.emptyLevels().size(); curALindex++){
 			sum += indMinMinPVE(node, curALindex, index1);
 		}
 
@@ -1299,7 +1484,7 @@ public class PGAStar extends AStar{
 		double minEn = (double)Math.pow(10,30);
 		double curEn;
 		Index3 secondIndex;
-		int kLevel = node.emptyLevels.get(kALindex);
+		int kLevel = node.emptyLevels().get(kALindex);
 
 		for (int i2=0; i2<numNodesForLevel[kLevel]; i2++){ //u at k
 
@@ -1321,15 +1506,19 @@ public class PGAStar extends AStar{
 
 
 
-	//Check whether the pair is pruned with any assigned rotamer so far
+	//Check whether the pair is pruned with any assigned rotamer so far,
+	//or forms a pruned triple with one of them
 	private boolean isPruned(Index3 secondIndex, Index3 index1, PGQueueNode node) {
 		if(emat.areNeighbors(index1.pos, secondIndex.pos) && emat.getPairPruned(index1, secondIndex))
 			return true;
 		
-		for(int level: node.nonEmptyLevels){
+		for(int level: node.nonEmptyLevels()){
 			Index3 i3 = twoDTo3D[level][node.confSoFar[level]];
 			if(emat.areNeighbors(i3.pos, secondIndex.pos) && emat.getPairPruned(i3, secondIndex))
 				return true;
+			if(prunedTriples != null && prunedTriples.contains(i3.pos, i3.aa, i3.rot,
+					index1.pos, index1.aa, index1.rot, secondIndex.pos, secondIndex.aa, secondIndex.rot))
+				return true;
 		}
 		
 		
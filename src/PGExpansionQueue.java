@@ -67,25 +67,38 @@ Bruce Donald, Professor of Computer Science
  */
 public class PGExpansionQueue {
 	
-	private PriorityBlockingQueue<PGQueueNode> thequeue;
-	long totalNodes = 0;
+	private PGFrontier thequeue;
+	long totalNodes = 0; //number of inserts
+	long numPolls = 0;
+	int peakSize = 0;
 	
 		//constructor
 	PGExpansionQueue () {
-		 thequeue = new PriorityBlockingQueue<PGQueueNode>(50000);
+		 this(50000);
 	}
 	
 	PGExpansionQueue (int i) {
-		 thequeue = new PriorityBlockingQueue<PGQueueNode>(i);
+		 if (EnvironmentVars.asQueueType.equalsIgnoreCase("BLOCKING"))
+			 thequeue = new BlockingFrontier(i);
+		 else if (EnvironmentVars.asQueueMaxNodes > 0)
+			 thequeue = new PGSpillFrontier(i, EnvironmentVars.asQueueMaxNodes, EnvironmentVars.asQueueSpillFrac);
+		 else
+			 thequeue = new PGHeapFrontier(i);
 	}
 	
 	 public void insert(PGQueueNode newNode){
-         thequeue.add(newNode);
+		 newNode.releaseLevels();
+         thequeue.insert(newNode);
          totalNodes++;
+         if (thequeue.size() > peakSize)
+        	 peakSize = thequeue.size();
 	 }
 
 	 public PGQueueNode getMin(){
-         return thequeue.poll();
+		 PGQueueNode node = thequeue.poll();
+		 if (node != null)
+			 numPolls++;
+         return node;
 	}
 	
 	//Checks if the two given nodes have the same partially assigned conformation
@@ -106,4 +119,36 @@ public class PGExpansionQueue {
 	public int numNodes() {
 		return thequeue.size();
 	}
+	
+	//Releases the queue's spill files (if any); the counters remain valid for the metrics
+	public void close() {
+		thequeue.close();
+	}
+	
+	/**
+	 * The original thread-safe queue, ordered by PGQueueNode.compareTo
+	 */
+	private static class BlockingFrontier implements PGFrontier {
+		
+		private PriorityBlockingQueue<PGQueueNode> q;
+		
+		BlockingFrontier(int initialCapacity){
+			q = new PriorityBlockingQueue<PGQueueNode>(initialCapacity);
+		}
+		
+		public void insert(PGQueueNode node){
+			q.add(node);
+		}
+		
+		public PGQueueNode poll(){
+			return q.poll();
+		}
+		
+		public int size(){
+			return q.size();
+		}
+		
+		public void close(){
+		}
+	}
 }
@@ -0,0 +1,180 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	PGHeapFrontier.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+/**
+ * Unsynchronized 4-ary min-heap of A* nodes.
+ * 
+ * The fScore of each node is copied into a primitive key array so sifting never calls
+ * compareTo. Ties are broken by insertion order, newest first: A* inserts children after
+ * their parent, so on equal scores the deeper node is expanded first, and the order is the
+ * same from run to run.
+ *
+ */
+public class PGHeapFrontier implements PGFrontier {
+
+	private static final int D = 4;
+
+	private double keys[];
+	private long seq[];
+	private PGQueueNode nodes[];
+	private int size = 0;
+	private long nextSeq = 0;
+
+	PGHeapFrontier(int initialCapacity){
+		if (initialCapacity < 16)
+			initialCapacity = 16;
+		keys = new double[initialCapacity];
+		seq = new long[initialCapacity];
+		nodes = new PGQueueNode[initialCapacity];
+	}
+
+	public void insert(PGQueueNode node){
+		if (size == keys.length)
+			grow();
+
+		double key = node.fScore;
+		long s = nextSeq++;
+
+		//sift up
+		int cur = size++;
+		while (cur > 0){
+			int parent = (cur-1) / D;
+			if (!less(key, s, keys[parent], seq[parent]))
+				break;
+			keys[cur] = keys[parent];
+			seq[cur] = seq[parent];
+			nodes[cur] = nodes[parent];
+			cur = parent;
+		}
+		keys[cur] = key;
+		seq[cur] = s;
+		nodes[cur] = node;
+	}
+
+	public PGQueueNode poll(){
+		if (size == 0)
+			return null;
+
+		PGQueueNode min = nodes[0];
+		size--;
+
+		double key = keys[size];
+		long s = seq[size];
+		PGQueueNode node = nodes[size];
+		nodes[size] = null;
+
+		if (size > 0){
+			//sift the last element down from the root
+			int cur = 0;
+			while (true){
+				int firstChild = cur*D + 1;
+				if (firstChild >= size)
+					break;
+				int lastChild = Math.min(firstChild + D, size);
+				int best = firstChild;
+				for (int c=firstChild+1; c<lastChild; c++){
+					if (less(keys[c], seq[c], keys[best], seq[best]))
+						best = c;
+				}
+				if (!less(keys[best], seq[best], key, s))
+					break;
+				keys[cur] = keys[best];
+				seq[cur] = seq[best];
+				nodes[cur] = nodes[best];
+				cur = best;
+			}
+			keys[cur] = key;
+			seq[cur] = s;
+			nodes[cur] = node;
+		}
+
+		return min;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public void close(){
+	}
+
+	//The lowest fScore in the heap (+infinity if empty)
+	double peekScore(){
+		if (size == 0)
+			return Double.POSITIVE_INFINITY;
+		return keys[0];
+	}
+
+	//Lower fScore first; on ties the later insertion comes first
+	private static boolean less(double k1, long s1, double k2, long s2){
+		if (k1 < k2)
+			return true;
+		if (k1 > k2)
+			return false;
+		return s1 > s2;
+	}
+
+	private void grow(){
+		int newCap = keys.length + (keys.length >> 1);
+		double newKeys[] = new double[newCap];
+		long newSeq[] = new long[newCap];
+		PGQueueNode newNodes[] = new PGQueueNode[newCap];
+		System.arraycopy(keys, 0, newKeys, 0, size);
+		System.arraycopy(seq, 0, newSeq, 0, size);
+		System.arraycopy(nodes, 0, newNodes, 0, size);
+		keys = newKeys;
+		seq = newSeq;
+		nodes = newNodes;
+	}
+
+}
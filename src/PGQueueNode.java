@@ -63,8 +63,9 @@ import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 import cern.colt.matrix.DoubleMatrix1D;
 
@@ -80,8 +81,9 @@ public class PGQueueNode implements Comparable,Serializable  {
 	//corresponding level
 	public int level;
 	
-	//the numbers of the nodes in the considered conformation up to the current level
-	public int confSoFar[];
+	//the numbers of the nodes in the considered conformation up to the current level (-1 if unassigned);
+	//packed as shorts since a node holds one entry per tree level and millions of nodes can be queued
+	public short confSoFar[];
 	
 	//the number of the corresponding node at that level
 	public int nodeNum;
@@ -90,9 +92,13 @@ public class PGQueueNode implements Comparable,Serializable  {
 	//public PGQueueNode prevNode;
 	//public PGQueueNode nextNode;
 	
-	// Residue positions that have not been assigned
-	ArrayList<Integer> emptyLevels;
-	ArrayList<Integer> nonEmptyLevels;
+	//bit l is set if level l is assigned (only used when there are at most 64 levels)
+	private long assignedMask;
+	
+	//level lists derived from the conformation while the node is being scored;
+	//dropped once the node is queued (see releaseLevels())
+	private transient Levels emptyLv = null;
+	private transient Levels nonEmptyLv = null;
 	
 	LinkedList<EnergyTuple> curTuples = null;
 	EMatrixEntryWIndex[] actualConf = null;
@@ -110,31 +116,154 @@ public class PGQueueNode implements Comparable,Serializable  {
 		level = newPos;
 		
 		
-		confSoFar = new int[totalNumResidues];
+		confSoFar = new short[totalNumResidues];
 		
 		for (int i=0; i<totalNumResidues; i++){
-			confSoFar[i] = curConf[i];
+			confSoFar[i] = toShort(curConf[i]);
 		}	
 		
-		confSoFar[newPos] = newRotAtPos;
+		setAssignment(newPos, newRotAtPos, fn);
+	}
+	
+	//Creates a child of a node with the given (packed) parent conformation
+	PGQueueNode (int totalNumResidues, short curConf[], double fn, int newPos, int newRotAtPos) {
+		
+		nodeNum = newRotAtPos;
+		level = newPos;
 		
+		confSoFar = new short[totalNumResidues];
+		System.arraycopy(curConf, 0, confSoFar, 0, totalNumResidues);
+		
+		setAssignment(newPos, newRotAtPos, fn);
+	}
+	
+	private void setAssignment(int newPos, int newRotAtPos, double fn){
+		
+		confSoFar[newPos] = toShort(newRotAtPos);
 		
 		fScore = fn;
 		
 		//prevNode = null;
 		//nextNode = null;
 		
-		emptyLevels = new ArrayList<Integer>();
-		nonEmptyLevels = new ArrayList<Integer>();
-		// Check which are the empty levels for this node.
-		for(int i = 0; i < confSoFar.length; i++){
-			if(confSoFar[i] == -1){
-				emptyLevels.add(i);
+		assignedMask = 0;
+		if (confSoFar.length <= 64){
+			for (int i=0; i<confSoFar.length; i++){
+				if (confSoFar[i] != -1)
+					assignedMask |= (1L << i);
 			}
-			else{
-				nonEmptyLevels.add(i);
+		}
+	}
+	
+	private static short toShort(int rot){
+		if (rot < -1 || rot > Short.MAX_VALUE){
+			System.out.println("ERROR: rotamer index "+rot+" does not fit in a PGQueueNode");
+			System.exit(1);
+		}
+		return (short)rot;
+	}
+	
+	//Returns the partially assigned conformation as an int array (-1 for unassigned levels)
+	public int[] getConf(){
+		int conf[] = new int[confSoFar.length];
+		for (int i=0; i<conf.length; i++)
+			conf[i] = confSoFar[i];
+		return conf;
+	}
+	
+	//The residue positions that have not been assigned, derived from the conformation
+	public Levels emptyLevels(){
+		Levels lv = emptyLv;
+		if (lv == null){
+			lv = new Levels(false);
+			emptyLv = lv;
+		}
+		return lv;
+	}
+	
+	//The residue positions that have been assigned, derived from the conformation
+	public Levels nonEmptyLevels(){
+		Levels lv = nonEmptyLv;
+		if (lv == null){
+			lv = new Levels(true);
+			nonEmptyLv = lv;
+		}
+		return lv;
+	}
+	
+	//Drops the derived level lists so that queued nodes only hold the packed conformation
+	public void releaseLevels(){
+		emptyLv = null;
+		nonEmptyLv = null;
+	}
+	
+	public int numAssigned(){
+		if (confSoFar.length <= 64)
+			return Long.bitCount(assignedMask);
+		int num = 0;
+		for (int i=0; i<confSoFar.length; i++){
+			if (confSoFar[i] != -1)
+				num++;
+		}
+		return num;
+	}
+	
+	/**
+	 * An ordered list of tree levels (either the assigned or the unassigned ones of a node)
+	 */
+	public class Levels implements Iterable<Integer> {
+		
+		private final int lv[];
+		
+		private Levels(boolean assigned){
+			int num = assigned ? numAssigned() : confSoFar.length - numAssigned();
+			lv = new int[num];
+			int cur = 0;
+			if (confSoFar.length <= 64){
+				long mask = assigned ? assignedMask : ~assignedMask;
+				if (confSoFar.length < 64)
+					mask &= (1L << confSoFar.length) - 1;
+				while (mask != 0){
+					lv[cur++] = Long.numberOfTrailingZeros(mask);
+					mask &= mask - 1;
+				}
 			}
-		}		
+			else {
+				for (int i=0; i<confSoFar.length; i++){
+					if ((confSoFar[i] != -1) == assigned)
+						lv[cur++] = i;
+				}
+			}
+		}
+		
+		public int get(int index){
+			return lv[index];
+		}
+		
+		public int size(){
+			return lv.length;
+		}
+		
+		public boolean isEmpty(){
+			return lv.length == 0;
+		}
+		
+		public Iterator<Integer> iterator(){
+			return new Iterator<Integer>(){
+				int cur = 0;
+				public boolean hasNext(){
+					return cur < lv.length;
+				}
+				public Integer next(){
+					if (cur >= lv.length)
+						throw new NoSuchElementException();
+					return lv[cur++];
+				}
+				public void remove(){
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
 	}
 	
 	
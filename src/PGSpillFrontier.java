@@ -0,0 +1,297 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	PGSpillFrontier.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+/**
+ * Memory-bounded A* frontier.
+ * 
+ * Nodes are kept in a PGHeapFrontier until it holds more than maxNodes. The worst-scoring
+ * spillFrac of the nodes is then written, in increasing fScore order, to a run file in
+ * EnvironmentVars.localDir. Before each poll, any run whose lowest score is below the heap
+ * minimum is paged back into the heap a chunk at a time, so nodes still come out in
+ * increasing fScore order.
+ *
+ * Records hold only the packed conformation, level, node number, fScore and FSTermIncluded.
+ * Nodes that carry tuples, an actual conformation or a fit-series point are never spilled:
+ * those fields refer to live objects (EnergyTuple equality compares Index3 references),
+ * so they stay on the heap and do not count towards maxNodes.
+ *
+ * At most maxRuns run files are open at once; past that all runs are merged into one.
+ * close() deletes the run files, and I/O errors are thrown as UncheckedIOException.
+ *
+ */
+public class PGSpillFrontier implements PGFrontier {
+
+	private static final int maxRuns = 16;
+
+	private PGHeapFrontier heap;
+	private int maxNodes;
+	private int numToKeep; //nodes left in memory after a spill
+	private int chunkSize; //nodes paged back in at a time
+	private int numPinned = 0; //nodes in the heap that cannot be spilled
+
+	private ArrayList<SpillRun> runs = new ArrayList<SpillRun>();
+	private long numSpilled = 0; //nodes currently on disk
+
+	PGSpillFrontier(int initialCapacity, int maxNodes, double spillFrac){
+		if (maxNodes < 2)
+			maxNodes = 2;
+		if (spillFrac <= 0 || spillFrac >= 1)
+			spillFrac = 0.5;
+		this.maxNodes = maxNodes;
+		numToKeep = Math.max(1, (int)(maxNodes*(1-spillFrac)));
+		chunkSize = Math.max(1, (maxNodes-numToKeep)/4);
+		heap = new PGHeapFrontier(Math.min(initialCapacity, maxNodes+1));
+	}
+
+	public void insert(PGQueueNode node){
+		heap.insert(node);
+		if (isPinned(node))
+			numPinned++;
+		if (heap.size() - numPinned > maxNodes)
+			spill();
+	}
+
+	public PGQueueNode poll(){
+		//page runs back in until the heap holds the overall minimum
+		while (true){
+			SpillRun best = null;
+			for (SpillRun run : runs){
+				if (best == null || run.headScore < best.headScore)
+					best = run;
+			}
+			if (best == null || best.headScore >= heap.peekScore())
+				break;
+			pageIn(best);
+		}
+		PGQueueNode node = heap.poll();
+		if (node != null && isPinned(node))
+			numPinned--;
+		return node;
+	}
+
+	public int size(){
+		return (int)Math.min(Integer.MAX_VALUE, heap.size() + numSpilled);
+	}
+
+	//Closes and deletes all run files; the spilled nodes are dropped
+	public void close(){
+		for (SpillRun run : runs)
+			run.delete();
+		runs.clear();
+		numSpilled = 0;
+	}
+
+	private static boolean isPinned(PGQueueNode node){
+		return node.curTuples != null || node.actualConf != null || node.optFSPoint != null;
+	}
+
+	//Writes the worst-scoring unpinned nodes of the heap to a new run file
+	private void spill(){
+		PGHeapFrontier kept = new PGHeapFrontier(maxNodes+1);
+		for (int i=0; i<numToKeep; i++)
+			kept.insert(heap.poll());
+
+		SpillRun run = new SpillRun();
+		try {
+			run.file = File.createTempFile("astar", ".run", new File(EnvironmentVars.localDir));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), 1<<16));
+			try {
+				PGQueueNode node;
+				while ((node = heap.poll()) != null){ //already in increasing fScore order
+					if (isPinned(node))
+						kept.insert(node);
+					else {
+						writeNode(out, node);
+						run.remaining++;
+					}
+				}
+			}
+			finally {
+				out.close();
+			}
+			run.open();
+		}
+		catch (IOException e){
+			run.delete();
+			throw new UncheckedIOException("could not spill A* nodes to "+EnvironmentVars.localDir, e);
+		}
+
+		heap = kept;
+		if (run.remaining == 0){ //everything past numToKeep was pinned
+			run.delete();
+			return;
+		}
+		numSpilled += run.remaining;
+		runs.add(run);
+
+		if (runs.size() > maxRuns)
+			mergeRuns();
+	}
+
+	//Merges all runs into a single run, so the number of open files stays bounded
+	private void mergeRuns(){
+		SpillRun merged = new SpillRun();
+		try {
+			merged.file = File.createTempFile("astar", ".run", new File(EnvironmentVars.localDir));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged.file), 1<<16));
+			try {
+				while (!runs.isEmpty()){
+					SpillRun best = runs.get(0);
+					for (SpillRun run : runs){
+						if (run.headScore < best.headScore)
+							best = run;
+					}
+					writeNode(out, best.next());
+					merged.remaining++;
+					if (best.remaining == 0){
+						best.delete();
+						runs.remove(best);
+					}
+				}
+			}
+			finally {
+				out.close();
+			}
+			merged.open();
+		}
+		catch (IOException e){
+			merged.delete();
+			throw new UncheckedIOException("could not merge spilled A* nodes in "+EnvironmentVars.localDir, e);
+		}
+		runs.add(merged);
+	}
+
+	//Moves the next chunk of nodes from the run back into the heap
+	private void pageIn(SpillRun run){
+		try {
+			for (int i=0; i<chunkSize && run.remaining > 0; i++){
+				heap.insert(run.next());
+				numSpilled--;
+			}
+		}
+		catch (IOException e){
+			throw new UncheckedIOException("could not read spilled A* nodes from "+run.file, e);
+		}
+		if (run.remaining == 0){
+			run.delete();
+			runs.remove(run);
+		}
+	}
+
+	//The fScore is written first so the reader can peek at a run's minimum
+	private static void writeNode(DataOutputStream out, PGQueueNode node) throws IOException {
+		out.writeDouble(node.fScore);
+		out.writeInt(node.level);
+		out.writeInt(node.nodeNum);
+		out.writeBoolean(node.FSTermIncluded);
+		out.writeShort(node.confSoFar.length);
+		for (int i=0; i<node.confSoFar.length; i++)
+			out.writeShort(node.confSoFar[i]);
+	}
+
+	private static PGQueueNode readNode(DataInputStream in, double fScore) throws IOException {
+		int level = in.readInt();
+		int nodeNum = in.readInt();
+		boolean FSTermIncluded = in.readBoolean();
+		short conf[] = new short[in.readShort()];
+		for (int i=0; i<conf.length; i++)
+			conf[i] = in.readShort();
+
+		PGQueueNode node = new PGQueueNode(conf.length, conf, fScore, level, nodeNum);
+		node.FSTermIncluded = FSTermIncluded;
+		return node;
+	}
+
+	private static class SpillRun {
+		File file;
+		DataInputStream in;
+		long remaining = 0;
+		double headScore;
+
+		void open() throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1<<16));
+			if (remaining > 0)
+				headScore = in.readDouble();
+		}
+
+		//Reads the node at the head of the run
+		PGQueueNode next() throws IOException {
+			PGQueueNode node = readNode(in, headScore);
+			remaining--;
+			if (remaining > 0)
+				headScore = in.readDouble();
+			return node;
+		}
+
+		void delete(){
+			if (in != null){
+				try { in.close(); } catch (IOException e){}
+				in = null;
+			}
+			if (file != null)
+				file.delete();
+		}
+	}
+
+}
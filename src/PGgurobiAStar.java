@@ -137,6 +137,7 @@ public class PGgurobiAStar extends AStar{
 	
 
 	MSMPLP mpLP = null;
+	static final int MPLP_MAX_ITER = 100; //cap on MPLP sweeps per node (they usually stop earlier on convergence)
 
 	private int numPreexpandedLevels = 0;
 
@@ -474,7 +475,7 @@ public class PGgurobiAStar extends AStar{
 				}
 
 				//if the current node is fully assigned, we have found a full conformation
-				if (expNode.emptyLevels.isEmpty()){
+				if (expNode.emptyLevels().isEmpty()){
 					//curExpansion.delete(expNode);//delete this node to set-up for the next min conformation (next run of A*)
 					if(retConfE - expNode.fScore > 0.4 && retConfE < 0){
 						System.out.println(retConfE +" "+expNode.fScore);
@@ -534,6 +535,11 @@ public class PGgurobiAStar extends AStar{
 					}
 					
 					
+					//The children's MPLP bounds start from the converged messages of the expanded node
+					double parentMsgs[] = null;
+					if(heuristic == HEURISTIC.MPLP)
+						parentMsgs = MPLPmessages(expNode);
+					
 					for(int rot = 0; rot < nextLevelNodes.length; rot++){
 
 						//Recompute better bound when inserting
@@ -545,13 +551,13 @@ public class PGgurobiAStar extends AStar{
 						}else if(heuristic == HEURISTIC.WCSP){
 							nextLevelNodes[rot].fScore = wcspFscore(nextLevelNodes[rot],expNode);
 						}else if(heuristic == HEURISTIC.MPLP){
-							nextLevelNodes[rot].fScore = MPLPfscore(nextLevelNodes[rot]);
+							nextLevelNodes[rot].fScore = MPLPfscore(nextLevelNodes[rot], parentMsgs);
 						}//Else the fScores already use the A* heuristic
 
 						//Validate the current bound
 //						long validStart = System.currentTimeMillis();
 //						double actualBound = validate(nextLevelNodes[rot]);
-//						KSParser.metrics.updateASMetrics(expNode.nonEmptyLevels.size(), actualBound, nextLevelNodes[rot].fScore);
+//						KSParser.metrics.updateASMetrics(expNode.nonEmptyLevels().size(), actualBound, nextLevelNodes[rot].fScore);
 //						long validEnd = System.currentTimeMillis();
 //						validateTime += (validEnd - validStart);
 						//End Validate
@@ -571,12 +577,12 @@ public class PGgurobiAStar extends AStar{
 
 					
 //					long stop = System.currentTimeMillis();
-//					KSParser.metrics.updateASTimes(expNode.nonEmptyLevels.size(), (stop-start - validateTime), nextLevelNodes.length);
+//					KSParser.metrics.updateASTimes(expNode.nonEmptyLevels().size(), (stop-start - validateTime), nextLevelNodes.length);
 				}	
 			}
 		}
 		
-		EMatrixEntryWIndex[] actualConf = getActualConf(expNode.confSoFar, emat);
+		EMatrixEntryWIndex[] actualConf = getActualConf(expNode.getConf(), emat);
 		expNode.actualConf = actualConf;
 		
 		System.out.println("Number of A* nodes inserted in the queue: "+(curExpansion.totalNodes -numNodesStart));
@@ -662,8 +668,14 @@ public class PGgurobiAStar extends AStar{
 	}
 
 	//Get MPLP bound for current subproblem
-	private double MPLPfscore(PGQueueNode node){
-		return mpLP.optimizeEMPLP(node.confSoFar, 100); 
+	private double MPLPfscore(PGQueueNode node, double parentMsgs[]){
+		return mpLP.optimizeEMPLP(node.getConf(), parentMsgs, MPLP_MAX_ITER); 
+	}
+	
+	//Converged MPLP messages for the subproblem of the given node
+	private double[] MPLPmessages(PGQueueNode node){
+		mpLP.optimizeEMPLP(node.getConf(), null, MPLP_MAX_ITER);
+		return mpLP.getMessages();
 	}
 
 	// PGC
@@ -678,9 +690,9 @@ public class PGgurobiAStar extends AStar{
 		double maxMinFScore = Double.NEGATIVE_INFINITY;
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		int iterationLength = dequeuedNode.emptyLevels.size();
+		int iterationLength = dequeuedNode.emptyLevels().size();
 		for(int iter = 0; iter < iterationLength; iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double minAtThisLevel = Double.POSITIVE_INFINITY;
 			int minIndexAtThisLevel = -1; 
 			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numNodesForLevel[pos]];
@@ -723,9 +735,9 @@ public class PGgurobiAStar extends AStar{
 		double maxMedFScore = Double.NEGATIVE_INFINITY;
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		int iterationLength = dequeuedNode.emptyLevels.size();
+		int iterationLength = dequeuedNode.emptyLevels().size();
 		for(int iter = 0; iter < iterationLength; iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double[] fscoresAtThisLevel = new double[numNodesForLevel[pos]]; 
 			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numNodesForLevel[pos]];
 			// And for each rotamer at that level
@@ -769,11 +781,11 @@ public class PGgurobiAStar extends AStar{
 		int levelToExpand;
 		if(minFirst){
 			//Sorted in descending order so we want the start from the far right if empty
-			levelToExpand = sortedIndicesNumNodesForLevel[dequeuedNode.emptyLevels.size()-1 ]; 
+			levelToExpand = sortedIndicesNumNodesForLevel[dequeuedNode.emptyLevels().size()-1 ]; 
 		}
 		else{
 			//Sorted in descending order so we want the start from the far left for max if empty
-			levelToExpand = sortedIndicesNumNodesForLevel[dequeuedNode.nonEmptyLevels.size() - numPreexpandedLevels];
+			levelToExpand = sortedIndicesNumNodesForLevel[dequeuedNode.nonEmptyLevels().size() - numPreexpandedLevels];
 		}
 		
 		int pos = levelToExpand;
@@ -794,7 +806,7 @@ public class PGgurobiAStar extends AStar{
 		//Find the level to expand next
 		//Choose the level with the max hmean score
 		//This assumes that all variables of domain size 1-2 that are preexpanded are to the right of this matrix.
-		int levelToExpand=this.hmean_static_order[dequeuedNode.nonEmptyLevels.size()-numPreexpandedLevels];
+		int levelToExpand=this.hmean_static_order[dequeuedNode.nonEmptyLevels().size()-numPreexpandedLevels];
 		
 		
 		int pos = levelToExpand;
@@ -821,10 +833,10 @@ public class PGgurobiAStar extends AStar{
 		double maxHmeanFScore = Double.NEGATIVE_INFINITY;
 
 		// Iterate through all residues that have not been assigned in the partial conformation of dequeuedNode.
-		int iterationLength = dequeuedNode.emptyLevels.size();
+		int iterationLength = dequeuedNode.emptyLevels().size();
 		for(int iter = 0; iter < iterationLength; iter++){
 			// pos: the actual residue index.
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			// Initially  the hmean is zero; it will only be changed for this residue if the minimum fScore for all rotamers is higher than dequeueNode.fScore 
 			double hmeanAtThisLevel = 0.0;
 			// We store all expanded nodes.
@@ -872,7 +884,7 @@ public class PGgurobiAStar extends AStar{
 	private PGQueueNode[] pickNextLevelSequential(PGQueueNode dequeuedNode){		
 
 		//Find the level to expand next
-		int levelToExpand=dequeuedNode.emptyLevels.get(0);
+		int levelToExpand=dequeuedNode.emptyLevels().get(0);
 		
 		
 		int pos = levelToExpand;
@@ -895,7 +907,7 @@ public class PGgurobiAStar extends AStar{
 
 		//Find the level to expand next
 		//This assumes that all variables of domain size 1-2 that are preexpanded are to the right of this matrix.
-		int levelToExpand=dom_cmed_order[dequeuedNode.emptyLevels.size()-1];
+		int levelToExpand=dom_cmed_order[dequeuedNode.emptyLevels().size()-1];
 		
 		
 		int pos = levelToExpand;
@@ -925,15 +937,15 @@ public class PGgurobiAStar extends AStar{
 		int maxTuplePos = -1;
 
 		ArrayList<Index3> dequeuedNodeConf = new ArrayList<Index3>();
-		for(int pos: dequeuedNode.nonEmptyLevels){
+		for(int pos: dequeuedNode.nonEmptyLevels()){
 			Index3 index2 = twoDTo3D[pos][dequeuedNode.confSoFar[pos]];
 			dequeuedNodeConf.add(index2);
 		}
 
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			int numTuples = 0;
 
 			//Find the number of tuples that share at least one rotamer 
@@ -953,7 +965,7 @@ public class PGgurobiAStar extends AStar{
 		//If there isn't a spot with more tuples
 		//Use the position with the most tuples
 		if(maxTuplePos == -1){
-			for(int pos: dequeuedNode.emptyLevels){
+			for(int pos: dequeuedNode.emptyLevels()){
 				if(tuplesPerPos.get(pos).size() > maxTuples){
 					maxTuples = tuplesPerPos.get(pos).size();
 					maxTuplePos = pos;
@@ -975,9 +987,9 @@ public class PGgurobiAStar extends AStar{
 		}else{//Finally, if we still haven't found a position do the normal check
 			ArrayList<PGQueueNode[]> allLevelNodes = new ArrayList<PGQueueNode[]>(); 
 			
-			int iterationLength = dequeuedNode.emptyLevels.size();
+			int iterationLength = dequeuedNode.emptyLevels().size();
 			for(int iter = 0; iter < iterationLength; iter++){
-				int pos = dequeuedNode.emptyLevels.get(iter);
+				int pos = dequeuedNode.emptyLevels().get(iter);
 
 				double minAtThisLevel = Double.POSITIVE_INFINITY;
 				int minIndexAtThisLevel = -1; 
@@ -1023,8 +1035,8 @@ public class PGgurobiAStar extends AStar{
 
 		numExpanded++;
 
-		if (expNode.nonEmptyLevels.size()>topL){
-			topL = expNode.nonEmptyLevels.size();
+		if (expNode.nonEmptyLevels().size()>topL){
+			topL = expNode.nonEmptyLevels().size();
 			numTopL = 1;
 		}
 		else if (expNode.level+1==topL)
@@ -1032,7 +1044,7 @@ public class PGgurobiAStar extends AStar{
 
 
 		if((numExpanded%50)==0){
-			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels.size() + " elem:");
+			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels().size() + " elem:");
 			for (int i=0;i<numTreeLevels;i++){
 				System.out.print(expNode.confSoFar[i]+" ");
 			}
@@ -1173,8 +1185,8 @@ public class PGgurobiAStar extends AStar{
 		}
 
 		//Setup CurConf
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 			//Find Tuples
 //			Index3 i1 = rotIndexes[index1];
@@ -1225,8 +1237,8 @@ public class PGgurobiAStar extends AStar{
 		//		do{
 		//			initSize = curTuples.size();
 		//			EnergyTuple curTuple = null;
-		//			for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-		//				int curLevel = node.nonEmptyLevels.get(curALindex);
+		//			for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+		//				int curLevel = node.nonEmptyLevels().get(curALindex);
 		//				if(!excludeLevel[curLevel]){
 		//					index1 = nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 		//					//Find Tuples
@@ -1299,8 +1311,8 @@ public class PGgurobiAStar extends AStar{
 				for(Index3 i3_1: curTuple.rots){
 					int level_1 = i3_1.pos;
 					Index3 index_1 = twoDTo3D[level_1][node.confSoFar[level_1]];	//s at j
-					for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-						int level = node.nonEmptyLevels.get(curALindex);
+					for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+						int level = node.nonEmptyLevels().get(curALindex);
 	
 						if(!excludeLevel[level]){
 							index2 = twoDTo3D[level][node.confSoFar[level]];	//s at j
@@ -1317,11 +1329,11 @@ public class PGgurobiAStar extends AStar{
 			}
 		}
 
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
 			minIndVoxE = 0;
 			sumMinPairE = 0;
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 
 			//minShellResE = RotamerSearch.getReducedShellRotE(pairwiseMinEnergyMatrix,index1,numTotalNodes);
@@ -1355,8 +1367,8 @@ public class PGgurobiAStar extends AStar{
 		}
 
 		//Setup CurConf
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 			//Find Tuples
 //			Index3 i1 = rotIndexes[index1];
@@ -1408,8 +1420,8 @@ public class PGgurobiAStar extends AStar{
 				for(Index3 i3_1: curTuple.rots){
 					int level_1 = i3_1.pos;
 					Index3 index_1 = twoDTo3D[level_1][node.confSoFar[level_1]];	//s at j
-					for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-						int level = node.nonEmptyLevels.get(curALindex);
+					for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+						int level = node.nonEmptyLevels().get(curALindex);
 	
 						if(!excludeLevel[level]){
 							index2 = twoDTo3D[level][node.confSoFar[level]];	//s at j
@@ -1426,11 +1438,11 @@ public class PGgurobiAStar extends AStar{
 			}
 		}
 
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
 			minIndVoxE = 0;
 			sumMinPairE = 0;
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 
 			//minShellResE = RotamerSearch.getReducedShellRotE(pairwiseMinEnergyMatrix,index1,numTotalNodes);
@@ -1452,8 +1464,8 @@ public class PGgurobiAStar extends AStar{
 		Index3 index2;
 		double sum = 0.0f;
 
-		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels.size(); levelALIndex++){
-			int level = node.nonEmptyLevels.get(levelALIndex);
+		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels().size(); levelALIndex++){
+			int level = node.nonEmptyLevels().get(levelALIndex);
 			if(!excludeLevel[level]){
 				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level];	//s at j
 				if(emat.areNeighbors(index1.pos, index2.pos))//pairwiseMinEnergyMatrix[index1][index2]!=null) //happens if they aren't neighbors
@@ -1473,8 +1485,8 @@ public class PGgurobiAStar extends AStar{
 		Index3 index2;
 		double sum = 0.0f;
 
-		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels.size(); levelALIndex++){
-			int level = node.nonEmptyLevels.get(levelALIndex);
+		for (int levelALIndex = startALindex; levelALIndex < node.nonEmptyLevels().size(); levelALIndex++){
+			int level = node.nonEmptyLevels().get(levelALIndex);
 			if(!excludeLevel[level]){
 				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level];	//s at j
 				if(emat.areNeighbors(index1.pos, index2.pos))//pairwiseMinEnergyMatrix[index1][index2]!=null) //happens if they aren't neighbors
@@ -1496,9 +1508,9 @@ public class PGgurobiAStar extends AStar{
 		EnergyTuple curTuple = null;
 		EnergyTuple tmpTuple = null;
 
-		for(int curALindex=startLevel; curALindex<node.nonEmptyLevels.size();curALindex++){
+		for(int curALindex=startLevel; curALindex<node.nonEmptyLevels().size();curALindex++){
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			if(!excludeLevel[curLevel]){
 				int index = nodeIndexOffset[curLevel] + node.confSoFar[curLevel];//index of r at i
 				Index3 i3 = rotIndexes[index];
@@ -1709,8 +1721,8 @@ public class PGgurobiAStar extends AStar{
 		for(Index3 i3_1: curTuple.rots){
 			int level_1 = i3_1.pos;
 			Index3 index_1 = twoDTo3D[level_1][node.confSoFar[level_1]];	//s at j
-			for (int curALindex=0; curALindex<node.nonEmptyLevels.size(); curALindex++){
-				int level = node.nonEmptyLevels.get(curALindex);
+			for (int curALindex=0; curALindex<node.nonEmptyLevels().size(); curALindex++){
+				int level = node.nonEmptyLevels().get(curALindex);
 	
 				if(!excludeTuple[level]){
 					index2 = twoDTo3D[level][node.confSoFar[level]];	//s at j
@@ -1723,11 +1735,11 @@ public class PGgurobiAStar extends AStar{
 		gn += minIndVoxE + sumMinPairE;
 
 
-		for (int curALindex=0; curALindex< node.nonEmptyLevels.size(); curALindex++){ //compute using the formula
+		for (int curALindex=0; curALindex< node.nonEmptyLevels().size(); curALindex++){ //compute using the formula
 			minIndVoxE = 0;
 			sumMinPairE = 0;
 
-			int curLevel = node.nonEmptyLevels.get(curALindex);
+			int curLevel = node.nonEmptyLevels().get(curALindex);
 			Index3 index1 = twoDTo3D[curLevel][node.confSoFar[curLevel]];//index of r at i
 
 			//minShellResE = RotamerSearch.getReducedShellRotE(pairwiseMinEnergyMatrix,index1,numTotalNodes);
@@ -1754,7 +1766,7 @@ public class PGgurobiAStar extends AStar{
 
 		double hn = 0.0f;
 
-		for (int curALindex=0 ;curALindex<node.emptyLevels.size();curALindex++){
+		for (int curALindex=0 ;curALindex<node.emptyLevels().size();curALindex++){
 			// For every level after the current one, we calculate the "heuristic" at that level
 			hn += EnergyAtLevel(node, curALindex);
 		}
@@ -1777,7 +1789,7 @@ public class PGgurobiAStar extends AStar{
 		double sumMinMinPairE;		//formula term 3
 
 
-		int curLevel = node.emptyLevels.get(curALindex);
+		int curLevel = node.emptyLevels().get(curALindex);
 
 		for (int i1=0; i1<numNodesForLevel[curLevel];i1++){		//the rotamers at j
 
@@ -1844,8 +1856,8 @@ public class PGgurobiAStar extends AStar{
 //		}
 
 
-		for (int levelALindex=0; levelALindex<node.nonEmptyLevels.size(); levelALindex++){
-			int level = node.nonEmptyLevels.get(levelALindex);
+		for (int levelALindex=0; levelALindex<node.nonEmptyLevels().size(); levelALindex++){
+			int level = node.nonEmptyLevels().get(levelALindex);
 			if(!excludeLevel[level]){
 				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level]; //the index of r at i
 
@@ -1864,7 +1876,7 @@ public class PGgurobiAStar extends AStar{
 		double sum = 0.0f;
 
 
-		for (int curALindex=jALindex+1; curALindex<node.emptyLevels.size(); curALindex++){
+		for (int curALindex=jALindex+1; curALindex<node.emptyLevels().size(); curALindex++){
 			sum += indMinMinPVE(node, curALindex, index1);
 		}
 
@@ -1877,7 +1889,7 @@ public class PGgurobiAStar extends AStar{
 		double minEn = (double)Math.pow(10,30);
 		double curEn;
 		Index3 secondIndex;
-		int kLevel = node.emptyLevels.get(kALindex);
+		int kLevel = node.emptyLevels().get(kALindex);
 
 		for (int i2=0; i2<numNodesForLevel[kLevel]; i2++){ //u at k
 
@@ -2064,7 +2076,7 @@ public class PGgurobiAStar extends AStar{
         //include h-score too if useHSer
         //optDOFVals is initially from the parent, to use an initial values; update to be optimal here
 
-    	if(expNode.nonEmptyLevels.size() == 0)
+    	if(expNode.nonEmptyLevels().size() == 0)
     		return 0;
     	
         //if only want FS terms for full confs
@@ -2136,19 +2148,19 @@ public class PGgurobiAStar extends AStar{
     
     CETObjFunction getNodeObjFunc(PGQueueNode node) {
         //not for splitBySlack
-    	 int[] conf = node.confSoFar;
+    	 int[] conf = node.getConf();
             
-    	 Index3[] indices = new Index3[node.nonEmptyLevels.size()];
-         //int rots[] = new int[node.nonEmptyLevels.size()];
-    	 for(int i=0; i<node.nonEmptyLevels.size();i++){
-    		 int level = node.nonEmptyLevels.get(i);
+    	 Index3[] indices = new Index3[node.nonEmptyLevels().size()];
+         //int rots[] = new int[node.nonEmptyLevels().size()];
+    	 for(int i=0; i<node.nonEmptyLevels().size();i++){
+    		 int level = node.nonEmptyLevels().get(i);
     		 if(conf[level]>=0){ //Should now always be greater than 0
              	indices[i] = twoDTo3D[level][node.confSoFar[level]];
     		 }
     	 }
     	 
     	 
-//         for(int level : node.nonEmptyLevels){
+//         for(int level : node.nonEmptyLevels()){
 //
 //            if(conf[level]>=0){
 //            	indices[level] = twoDTo3D[level][node.confSoFar[level]];
@@ -2206,7 +2218,7 @@ public class PGgurobiAStar extends AStar{
                 if( m.strand[str].numberOfResidues > strandMut.numMutPerStrand[str] )//strand has template residues
                     transRotStrands[str] = true;
                 
-                for(int i: node.nonEmptyLevels){
+                for(int i: node.nonEmptyLevels()){
                     if(str==m.residue[strandMut.allMut[i]].strandNumber)//strand has an assigned residue
                         transRotStrands[str] = true;
                 }
@@ -2224,7 +2236,7 @@ public class PGgurobiAStar extends AStar{
     void applyRotamers(PGQueueNode node, Index3[] indices){
         //apply AA types and rotamers up to the current level
                 	
-        for (int i=0; i< node.nonEmptyLevels.size();i++){
+        for (int i=0; i< node.nonEmptyLevels().size();i++){
 
             RotamerEntry re = emat.singles.getTerm(indices[i]);
             re.applyMutation(m, emat.resByPos, true,true );
@@ -2266,7 +2278,7 @@ public class PGgurobiAStar extends AStar{
         }
       
         //make the other residues not flexible
-        for(int i: node.emptyLevels){
+        for(int i: node.emptyLevels()){
         	Residue r = m.residue[strandMut.allMut[i]];
             int str = r.strandNumber;
             int strResNum = r.strandResidueNumber;
@@ -376,7 +376,7 @@ public class PGgurobiAStarBySeq extends AStar{
 				}
 
 				//if the current node is fully assigned, we have found a full conformation
-				if (expNode.emptyLevels.isEmpty()){
+				if (expNode.emptyLevels().isEmpty()){
 					//curExpansion.delete(expNode);//delete this node to set-up for the next min conformation (next run of A*)
 					if(retConfE - expNode.fScore > 0.4 && retConfE < 0){
 						System.out.println(retConfE +" "+expNode.fScore);
@@ -561,14 +561,14 @@ public class PGgurobiAStarBySeq extends AStar{
 //		double maxMinFScore = Double.NEGATIVE_INFINITY;
 //		int numRunning = 0;
 //		
-//		int numLevels = dequeuedNode.emptyLevels.size();
+//		int numLevels = dequeuedNode.emptyLevels().size();
 //		
 //		if(!reorder)
 //			numLevels = 1;
 //		
 //		// Iterate through all positions that have not been assigned in dequeuedNode.
 //		for(int iter = 0; iter < numLevels; iter++){
-//			int pos = dequeuedNode.emptyLevels.get(iter);
+//			int pos = dequeuedNode.emptyLevels().get(iter);
 //			double minAtThisLevel = Double.POSITIVE_INFINITY;
 //			int minIndexAtThisLevel = -1; 
 //			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numSeqForLevel[pos]];
@@ -596,7 +596,7 @@ public class PGgurobiAStarBySeq extends AStar{
 //		}
 //				
 //		// For now return the first level.  This should work the same as the old A*.... 
-//		if(!dequeuedNode.emptyLevels.isEmpty()){
+//		if(!dequeuedNode.emptyLevels().isEmpty()){
 //			return allLevelNodes.get(maxMinFScoreIndex);			
 //		}
 //		else{
@@ -620,15 +620,15 @@ public class PGgurobiAStarBySeq extends AStar{
 //		int maxTuplePos = -1;
 //
 //		ArrayList<Index3> dequeuedNodeConf = new ArrayList<Index3>();
-//		for(int pos: dequeuedNode.nonEmptyLevels){
+//		for(int pos: dequeuedNode.nonEmptyLevels()){
 //			int index2 = nodeIndexOffset[pos]+seqIndexOffset[pos][dequeuedNode.confSoFar[pos]] + dequeuedNode.confSoFar[pos];
 //			dequeuedNodeConf.add(rotIndexes[index2]);
 //		}
 //
 //
 //		// Iterate through all positions that have not been assigned in dequeuedNode.
-//		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-//			int pos = dequeuedNode.emptyLevels.get(iter);
+//		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+//			int pos = dequeuedNode.emptyLevels().get(iter);
 //			int numTuples = 0;
 //
 //			//Find the number of tuples that share at least one rotamer 
@@ -648,7 +648,7 @@ public class PGgurobiAStarBySeq extends AStar{
 //		//If there isn't a spot with more tuples
 //		//Use the position with the most tuples
 //		if(maxTuplePos == -1){
-//			for(int pos: dequeuedNode.emptyLevels){
+//			for(int pos: dequeuedNode.emptyLevels()){
 //				if(tuplesPerPos.get(pos).size() > maxTuples){
 //					maxTuples = tuplesPerPos.get(pos).size();
 //					maxTuplePos = pos;
@@ -668,8 +668,8 @@ public class PGgurobiAStarBySeq extends AStar{
 //
 //		}else{//Finally, if we still haven't found a position do the normal check
 //			ArrayList<PGQueueNode[]> allLevelNodes = new ArrayList<PGQueueNode[]>(); 
-//			for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-//				int pos = dequeuedNode.emptyLevels.get(iter);
+//			for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+//				int pos = dequeuedNode.emptyLevels().get(iter);
 //
 //				double minAtThisLevel = Double.POSITIVE_INFINITY;
 //				int minIndexAtThisLevel = -1; 
@@ -715,8 +715,8 @@ public class PGgurobiAStarBySeq extends AStar{
 
 		numExpanded++;
 
-		if (expNode.nonEmptyLevels.size()>topL){
-			topL = expNode.nonEmptyLevels.size();
+		if (expNode.nonEmptyLevels().size()>topL){
+			topL = expNode.nonEmptyLevels().size();
 			numTopL = 1;
 		}
 		else if (expNode.level+1==topL)
@@ -724,7 +724,7 @@ public class PGgurobiAStarBySeq extends AStar{
 
 
 		if((numExpanded%2)==0){
-			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels.size() + " elem:");
+			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels().size() + " elem:");
 			for (int i=0;i<numTreeLevels;i++){
 				System.out.print(expNode.confSoFar[i]+" ");
 			}
@@ -821,7 +821,7 @@ public class PGgurobiAStarBySeq extends AStar{
 		double sumMinMinPairE;		//formula term 3
 
 
-		int curLevel = curALindex;// node.emptyLevels.get(curALindex);
+		int curLevel = curALindex;// node.emptyLevels().get(curALindex);
 
 		int startAA;
 		int endAA;
@@ -863,8 +863,8 @@ public class PGgurobiAStarBySeq extends AStar{
 //		Index3 index2;
 //
 //		
-//		for (int levelALindex=0; levelALindex<node.nonEmptyLevels.size(); levelALindex++){
-//			int level = node.nonEmptyLevels.get(levelALindex);
+//		for (int levelALindex=0; levelALindex<node.nonEmptyLevels().size(); levelALindex++){
+//			int level = node.nonEmptyLevels().get(levelALindex);
 //			if(!excludeLevel[level]){
 //				index2 = twoDTo3D[level][node.confSoFar[level]];//nodeIndexOffset[level] + node.confSoFar[level]; //the index of r at i
 //
@@ -896,7 +896,7 @@ public class PGgurobiAStarBySeq extends AStar{
 		double minEn = (double)Math.pow(10,30);
 		double curEn;
 		Index3 secondIndex;
-		int kLevel = kALindex;//node.emptyLevels.get(kALindex);
+		int kLevel = kALindex;//node.emptyLevels().get(kALindex);
 
 		if(!emat.areNeighbors(index1.pos, kLevel))//pairwiseMinEnergyMatrix[index1][secondIndex] == null) //These positions aren't neighbors so return 0
 			return 0.0;
@@ -941,9 +941,9 @@ public class PGgurobiAStarBySeq extends AStar{
 		double maxMinFScore = Double.NEGATIVE_INFINITY;
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		int iterationLength = dequeuedNode.emptyLevels.size();
+		int iterationLength = dequeuedNode.emptyLevels().size();
 		for(int iter = 0; iter < iterationLength; iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double minAtThisLevel = Double.POSITIVE_INFINITY;
 			int minIndexAtThisLevel = -1; 
 			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numSeqForLevel[pos]];
@@ -986,9 +986,9 @@ public class PGgurobiAStarBySeq extends AStar{
 		double maxMedFScore = Double.NEGATIVE_INFINITY;
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		int iterationLength = dequeuedNode.emptyLevels.size();
+		int iterationLength = dequeuedNode.emptyLevels().size();
 		for(int iter = 0; iter < iterationLength; iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double[] fscoresAtThisLevel = new double[numSeqForLevel[pos]]; 
 			PGQueueNode curLevelPGQueueNodes[] = new PGQueueNode[numSeqForLevel[pos]];
 			// And for each rotamer at that level
@@ -1032,11 +1032,11 @@ public class PGgurobiAStarBySeq extends AStar{
 		int levelToExpand;
 		if(minFirst){
 			//Sorted in descending order so we want the start from the far right if empty
-			levelToExpand = sortedIndicesNumSeqsForLevel[dequeuedNode.emptyLevels.size()-1]; 
+			levelToExpand = sortedIndicesNumSeqsForLevel[dequeuedNode.emptyLevels().size()-1]; 
 		}
 		else{
 			//Sorted in descending order so we want the start from the far left for max if empty
-			levelToExpand = sortedIndicesNumSeqsForLevel[dequeuedNode.nonEmptyLevels.size() - numPreexpandedLevels ];
+			levelToExpand = sortedIndicesNumSeqsForLevel[dequeuedNode.nonEmptyLevels().size() - numPreexpandedLevels ];
 		}
 		
 		int pos = levelToExpand;
@@ -1058,7 +1058,7 @@ public class PGgurobiAStarBySeq extends AStar{
 	private PGQueueNode[] pickNextLevelSequential(PGQueueNode dequeuedNode){		
 
 		//Find the level to expand next
-		int levelToExpand=dequeuedNode.emptyLevels.get(0);
+		int levelToExpand=dequeuedNode.emptyLevels().get(0);
 		
 		
 		int pos = levelToExpand;
@@ -1080,7 +1080,7 @@ public class PGgurobiAStarBySeq extends AStar{
 	private PGQueueNode[] pickNextLevelByDomCmed(PGQueueNode dequeuedNode){		
 
 		//Find the level to expand next
-		int levelToExpand=dom_cmed_order[dequeuedNode.emptyLevels.size()-1];
+		int levelToExpand=dom_cmed_order[dequeuedNode.emptyLevels().size()-1];
 		
 		
 		int pos = levelToExpand;
@@ -1110,15 +1110,15 @@ public class PGgurobiAStarBySeq extends AStar{
 		int maxTuplePos = -1;
 
 		ArrayList<Index3> dequeuedNodeConf = new ArrayList<Index3>();
-		for(int pos: dequeuedNode.nonEmptyLevels){
+		for(int pos: dequeuedNode.nonEmptyLevels()){
 			Index3 index2 = twoDTo3D[pos][dequeuedNode.confSoFar[pos]];
 			dequeuedNodeConf.add(index2);
 		}
 
 
 		// Iterate through all positions that have not been assigned in dequeuedNode.
-		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			int numTuples = 0;
 
 			//Find the number of tuples that share at least one rotamer 
@@ -1138,7 +1138,7 @@ public class PGgurobiAStarBySeq extends AStar{
 		//If there isn't a spot with more tuples
 		//Use the position with the most tuples
 		if(maxTuplePos == -1){
-			for(int pos: dequeuedNode.emptyLevels){
+			for(int pos: dequeuedNode.emptyLevels()){
 				if(tuplesPerPos.get(pos).size() > maxTuples){
 					maxTuples = tuplesPerPos.get(pos).size();
 					maxTuplePos = pos;
@@ -1160,9 +1160,9 @@ public class PGgurobiAStarBySeq extends AStar{
 		}else{//Finally, if we still haven't found a position do the normal check
 			ArrayList<PGQueueNode[]> allLevelNodes = new ArrayList<PGQueueNode[]>(); 
 			
-			int iterationLength = dequeuedNode.emptyLevels.size();
+			int iterationLength = dequeuedNode.emptyLevels().size();
 			for(int iter = 0; iter < iterationLength; iter++){
-				int pos = dequeuedNode.emptyLevels.get(iter);
+				int pos = dequeuedNode.emptyLevels().get(iter);
 
 				double minAtThisLevel = Double.POSITIVE_INFINITY;
 				int minIndexAtThisLevel = -1; 
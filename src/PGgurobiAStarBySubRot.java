@@ -317,7 +317,7 @@ public class PGgurobiAStarBySubRot extends AStar{
 				}
 
 				//if the current node is fully assigned, we have found a full conformation
-				if (expNode.emptyLevels.isEmpty()){
+				if (expNode.emptyLevels().isEmpty()){
 					//curExpansion.delete(expNode);//delete this node to set-up for the next min conformation (next run of A*)
 					if(retConfE - expNode.fScore > 0.4 && retConfE < 0){
 						System.out.println(retConfE +" "+expNode.fScore);
@@ -436,13 +436,13 @@ public class PGgurobiAStarBySubRot extends AStar{
 		double maxMinFScore = Double.NEGATIVE_INFINITY;
 		int numRunning = 0;
 		
-		int numLevels = dequeuedNode.emptyLevels.size();
+		int numLevels = dequeuedNode.emptyLevels().size();
 		boolean reorder = false;
 		if(!reorder)
 			numLevels = 1;
 		// Iterate through all positions that have not been assigned in dequeuedNode.
 		for(int iter = 0; iter < numLevels; iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			double minAtThisLevel = Double.POSITIVE_INFINITY;
 			int minIndexAtThisLevel = -1; 
 			allLevelNodes[pos] = new PGQueueNode[numParentRotPerLvl[pos]];
@@ -503,7 +503,7 @@ public class PGgurobiAStarBySubRot extends AStar{
 		//There should always be a second best because we expand all the
 		//1 level nodes already
 		for(int iter=0; iter<numLevels;iter++){
-			int pos = dequeuedNode.emptyLevels.get(iter);
+			int pos = dequeuedNode.emptyLevels().get(iter);
 			minsAtLevel[pos][0] = Double.POSITIVE_INFINITY;
 			minsAtLevel[pos][1] = Double.POSITIVE_INFINITY;
 			
@@ -528,7 +528,7 @@ public class PGgurobiAStarBySubRot extends AStar{
 		}
 			
 		// For now return the first level.  This should work the same as the old A*.... 
-		if(!dequeuedNode.emptyLevels.isEmpty()){
+		if(!dequeuedNode.emptyLevels().isEmpty()){
 			return allLevelNodes[maxMinFScoreIndex];			
 		}
 		else{
@@ -552,15 +552,15 @@ public class PGgurobiAStarBySubRot extends AStar{
 //		int maxTuplePos = -1;
 //
 //		ArrayList<Index3> dequeuedNodeConf = new ArrayList<Index3>();
-//		for(int pos: dequeuedNode.nonEmptyLevels){
+//		for(int pos: dequeuedNode.nonEmptyLevels()){
 //			int index2 = nodeIndexOffset[pos]+seqIndexOffset[pos][dequeuedNode.confSoFar[pos]] + dequeuedNode.confSoFar[pos];
 //			dequeuedNodeConf.add(rotIndexes[index2]);
 //		}
 //
 //
 //		// Iterate through all positions that have not been assigned in dequeuedNode.
-//		for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-//			int pos = dequeuedNode.emptyLevels.get(iter);
+//		for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+//			int pos = dequeuedNode.emptyLevels().get(iter);
 //			int numTuples = 0;
 //
 //			//Find the number of tuples that share at least one rotamer 
@@ -580,7 +580,7 @@ public class PGgurobiAStarBySubRot extends AStar{
 //		//If there isn't a spot with more tuples
 //		//Use the position with the most tuples
 //		if(maxTuplePos == -1){
-//			for(int pos: dequeuedNode.emptyLevels){
+//			for(int pos: dequeuedNode.emptyLevels()){
 //				if(tuplesPerPos.get(pos).size() > maxTuples){
 //					maxTuples = tuplesPerPos.get(pos).size();
 //					maxTuplePos = pos;
@@ -600,8 +600,8 @@ public class PGgurobiAStarBySubRot extends AStar{
 //
 //		}else{//Finally, if we still haven't found a position do the normal check
 //			ArrayList<PGQueueNode[]> allLevelNodes = new ArrayList<PGQueueNode[]>(); 
-//			for(int iter = 0; iter < dequeuedNode.emptyLevels.size(); iter++){
-//				int pos = dequeuedNode.emptyLevels.get(iter);
+//			for(int iter = 0; iter < dequeuedNode.emptyLevels().size(); iter++){
+//				int pos = dequeuedNode.emptyLevels().get(iter);
 //
 //				double minAtThisLevel = Double.POSITIVE_INFINITY;
 //				int minIndexAtThisLevel = -1; 
@@ -647,8 +647,8 @@ public class PGgurobiAStarBySubRot extends AStar{
 
 		numExpanded++;
 
-		if (expNode.nonEmptyLevels.size()>topL){
-			topL = expNode.nonEmptyLevels.size();
+		if (expNode.nonEmptyLevels().size()>topL){
+			topL = expNode.nonEmptyLevels().size();
 			numTopL = 1;
 		}
 		else if (expNode.level+1==topL)
@@ -656,7 +656,7 @@ public class PGgurobiAStarBySubRot extends AStar{
 
 
 		if((numExpanded%2)==0){
-			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels.size() + " elem:");
+			System.out.print(curExpansion.numNodes()+" "+expNode.fScore+" level:"+expNode.level+" numElem:"+expNode.nonEmptyLevels().size() + " elem:");
 			for (int i=0;i<numTreeLevels;i++){
 				System.out.print(expNode.confSoFar[i]+" ");
 			}
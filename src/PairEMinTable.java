@@ -0,0 +1,109 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	PairEMinTable.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+/**
+ * For every rotamer, the lowest pair energy with any unpruned rotamer at each
+ * other position. Pair pruning is ignored, so the entries are lower bounds on the
+ * pair energy of the rotamer with any rotamer left at that position, and they stay
+ * valid (if looser) as more pairs are pruned. Non-neighboring positions are stored
+ * as 0, the same convention the DEE sums use for them.
+ *
+ */
+public class PairEMinTable {
+
+	//minE[pos][aa][rot][k]
+	private double minE[][][][];
+
+	PairEMinTable(Emat emat){
+
+		int numPos = emat.numMutPos();
+		minE = new double[numPos][][][];
+
+		for(int pos=0; pos<numPos; pos++){
+			minE[pos] = new double[emat.singles.pruned[pos].length][][];
+			for(int aa=0; aa<minE[pos].length; aa++){
+				minE[pos][aa] = new double[emat.singles.pruned[pos][aa].length][];
+				for(int rot=0; rot<minE[pos][aa].length; rot++){
+					minE[pos][aa][rot] = new double[numPos];
+					if(emat.singles.pruned[pos][aa][rot])
+						continue;
+					for(int k=0; k<numPos; k++){
+						if(k != pos && emat.areNeighbors(pos, k))
+							minE[pos][aa][rot][k] = minAtPos(emat, pos, aa, rot, k);
+					}
+				}
+			}
+		}
+	}
+
+	private double minAtPos(Emat emat, int pos, int aa, int rot, int k){
+
+		double min = Double.POSITIVE_INFINITY;
+		double pairE[][] = emat.pairs.E[pos][aa][rot][k];
+
+		for(int k_aa=0; k_aa<pairE.length; k_aa++){
+			for(int k_rot=0; k_rot<pairE[k_aa].length; k_rot++){
+				if(!emat.singles.pruned[k][k_aa][k_rot] && pairE[k_aa][k_rot] < min)
+					min = pairE[k_aa][k_rot];
+			}
+		}
+
+		return min;
+	}
+
+	//The lowest pair energy between (pos,aa,rot) and an unpruned rotamer at k
+	public double get(int pos, int aa, int rot, int k){
+		return minE[pos][aa][rot][k];
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	PrunedTriples.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.util.Arrays;
+
+/**
+ * Sparse set of pruned rotamer triples.
+ * 
+ * Each rotamer (pos,aa,rot) gets a flat index from per-position offsets, and a triple is
+ * stored as the three flat indices (sorted, so the order the triple is given in does not
+ * matter) packed into one long. The keys live in a primitive open-addressing hash table,
+ * so memory grows with the number of pruned triples rather than with the cube of the
+ * rotamer count.
+ *
+ */
+public class PrunedTriples {
+
+	//bits per flat rotamer index in a packed key
+	private static final int rotBits = 21;
+
+	private static final long emptyKey = -1L;
+
+	//offset[pos][aa] is the flat index of (pos,aa,0)
+	private int offset[][];
+
+	private long keys[];
+	private int size = 0;
+
+	//numRot[pos][aa] is the number of rotamers for each (pos,aa)
+	PrunedTriples(int numRot[][]){
+
+		offset = new int[numRot.length][];
+		int numTotalRot = 0;
+		for(int pos=0; pos<numRot.length; pos++){
+			offset[pos] = new int[numRot[pos].length];
+			for(int aa=0; aa<numRot[pos].length; aa++){
+				offset[pos][aa] = numTotalRot;
+				numTotalRot += numRot[pos][aa];
+			}
+		}
+
+		if(numTotalRot > (1<<rotBits)){
+			System.err.println("ERROR: too many rotamers ("+numTotalRot+") to store pruned triples");
+			System.exit(1);
+		}
+
+		keys = new long[1024];
+		Arrays.fill(keys, emptyKey);
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean contains(int pos1, int aa1, int rot1, int pos2, int aa2, int rot2, int pos3, int aa3, int rot3){
+		if(size == 0)
+			return false;
+
+		long key = packKey(offset[pos1][aa1]+rot1, offset[pos2][aa2]+rot2, offset[pos3][aa3]+rot3);
+		return keys[findSlot(keys, key)] == key;
+	}
+
+	//Returns true if the triple was not already in the set
+	public boolean add(int pos1, int aa1, int rot1, int pos2, int aa2, int rot2, int pos3, int aa3, int rot3){
+
+		long key = packKey(offset[pos1][aa1]+rot1, offset[pos2][aa2]+rot2, offset[pos3][aa3]+rot3);
+		int slot = findSlot(keys, key);
+		if(keys[slot] == key)
+			return false;
+
+		keys[slot] = key;
+		size++;
+
+		if(2*size > keys.length) //keep the table at most half full
+			rehash(2*keys.length);
+
+		return true;
+	}
+
+	private static long packKey(long a, long b, long c){
+		long tmp;
+		if(a < b){ tmp = a; a = b; b = tmp; }
+		if(b < c){ tmp = b; b = c; c = tmp; }
+		if(a < b){ tmp = a; a = b; b = tmp; }
+		return (a << (2*rotBits)) | (b << rotBits) | c;
+	}
+
+	//Linear probing: the slot holding key, or the empty slot where it would go
+	private static int findSlot(long table[], long key){
+		int mask = table.length-1;
+		int slot = hash(key) & mask;
+		while(table[slot] != emptyKey && table[slot] != key)
+			slot = (slot+1) & mask;
+		return slot;
+	}
+
+	private static int hash(long key){
+		key ^= (key >>> 33);
+		key *= 0xff51afd7ed558ccdL;
+		key ^= (key >>> 33);
+		return (int)key;
+	}
+
+	private void rehash(int newLength){
+		long newKeys[] = new long[newLength];
+		Arrays.fill(newKeys, emptyKey);
+		for(long key : keys){
+			if(key != emptyKey)
+				newKeys[findSlot(newKeys, key)] = key;
+		}
+		keys = newKeys;
+	}
+
+}
@@ -93,6 +93,10 @@ import java.util.Map.Entry;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.math.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.linalg.Algebra;
@@ -134,7 +138,7 @@ public class RotamerSearch implements Serializable
 	//KER: splitFlags will now be a 6D array to save space
 	//	boolean splitFlags[][][][][][] = null;
 
-	boolean tripleFlags[][][][][][][][][] = null;//Pruned triples
+	PrunedTriples prunedTriples = null;//Pruned triples
 	boolean useTriples = false;             //Indicates whether triples should be used
 	boolean useFlagsAStar = false;          //Should split and potentially triple flags be used in A*?
 
@@ -267,11 +271,11 @@ public class RotamerSearch implements Serializable
 	// a value of 0.03 means the energies computed
 	//  will allow for a calculation of K*_approx
 	//  that's within 3% of the true K*
-	BigDecimal partial_q = new BigDecimal(0.0);
+	LogPartitionFunction partial_q = new LogPartitionFunction();
 	// the partially computed partition function (updated as we go)
-	BigDecimal partial_p = new BigDecimal(0.0);
+	LogPartitionFunction partial_p = new LogPartitionFunction();
 	// the bound on the partition function of the pruned conformations
-	BigDecimal initial_q = new BigDecimal(0.0);
+	LogPartitionFunction initial_q = new LogPartitionFunction();
 	// used in mutation search as an initial partial_q if we're
 	//  bootstrapping the search
 	StrandRotamers[] strandRot = null;
@@ -422,8 +426,8 @@ public class RotamerSearch implements Serializable
 	//		return splitFlags;
 	//	}
 
-	public boolean[][][][][][][][][] getTripleFlags(){
-		return tripleFlags;
+	public PrunedTriples getTripleFlags(){
+		return prunedTriples;
 	}
 
 	public synchronized double getBestE(){
@@ -657,16 +661,21 @@ public class RotamerSearch implements Serializable
 	// This function is the model for a mutation search
 	// This is the function used by the master node to generate a list of
 	//  mutations that it wishes to consider.
+	// Each sequence that passes the volume filter is written to mutOut in the
+	//  mutation list file format, so the (possibly huge) list is spooled to disk
+	//  instead of being kept in memory. A mutable position (residueMutatable[i]==1)
+	//  never takes its default type: that sequence belongs to the combination in
+	//  which the position is not mutable, so over all combinations (down to zero
+	//  mutable positions) each sequence is written exactly once
 	// Utilizes a number of helper functions
 	public int simpleMasterMutationSearch(MutableResParams strandMut, int numMutable,
-			int theCurConfNum,
-			Set<OneMutation> mutArray, double minVol, double maxVol) {
+			int theCurConfNum, int residueMutatable[], PrintStream mutOut, double minVol, double maxVol) {
 
 		curConfNum = theCurConfNum;
 
 		AARotamerType curAAtypes[] = new AARotamerType[numMutable];
 		
-		masterMutationSearchHelper(0, numMutable, strandMut, mutArray, minVol, 
+		masterMutationSearchHelper(0, numMutable, strandMut, residueMutatable, mutOut, minVol, 
 				maxVol, curAAtypes);
 
 		return curConfNum;
@@ -677,7 +686,7 @@ public class RotamerSearch implements Serializable
 	//  decided not to so as to keep that function fast (ie. this way the
 	//  execution of a bunch of conditionals is saved in the normal search)
 	public void masterMutationSearchHelper(int depth, int maxDepth,
-			MutableResParams strandMut, Set<OneMutation> mutSet, double minVol, double maxVol, AARotamerType curAAtypes[]) {
+			MutableResParams strandMut, int residueMutatable[], PrintStream mutOut, double minVol, double maxVol, AARotamerType curAAtypes[]) {
 
 		if (depth >= maxDepth) {
 			// If we've arrived here then we're ready to
@@ -690,34 +699,26 @@ public class RotamerSearch implements Serializable
 				curVolume += curAAtypes[i].volume;
 			}
 			if ((curVolume > minVol) && (curVolume < maxVol)) {
-				// Add mutation to mutation array
-				OneMutation tMut = new OneMutation();
-				assignAANums(strandMut);
-				tMut.score = new BigDecimal("0.0");  // Added when aap removed 6/23/03
-				tMut.resTypes = new int[maxDepth];
-				for(int q=0;q<maxDepth;q++) {
-					tMut.resTypes[q] = curAAtypes[q].index;
-				}
-				tMut.vol = curVolume;
-				/*if (curConfNum >= mutArray.length) {
-					// If there's no space left, make space in mutArray
-					OneMutation newArray[] = new OneMutation[mutArray.length + 5000];
-					System.arraycopy(mutArray, 0, newArray, 0, mutArray.length);
-					mutArray = newArray;
-				}*/
-				getNumConfForMut(tMut);
-				mutSet.add(tMut);
 				curConfNum++;
+				mutOut.print(curConfNum +" "+ curVolume);
+				for(int q=0;q<maxDepth;q++)
+					mutOut.print(" "+curAAtypes[q].name);
+				mutOut.println();
 			}
 			return;
 		}
 
 		// Check with allowed AAs
 		Residue r = m.residue[strandMut.allMut[depth]];
+		int defaultType = -1; //skipped at a mutable position
+		if (residueMutatable[depth] == 1)
+			defaultType = r.rl.getAAType(r.defaultAA).index;
 
 		for(AARotamerType aa: r.AATypesAllowed()) {
+			if (aa.index == defaultType)
+				continue;
 			curAAtypes[depth] = aa;
-			masterMutationSearchHelper(depth+1,maxDepth,strandMut,mutSet,minVol,maxVol,curAAtypes);
+			masterMutationSearchHelper(depth+1,maxDepth,strandMut,residueMutatable,mutOut,minVol,maxVol,curAAtypes);
 		}
 	}
 	// Assigns elements of the ASAANums[] array
@@ -731,23 +732,6 @@ public class RotamerSearch implements Serializable
 			ctr++;
 		}
 	}
-	//Compute the number of conformations for the given mutation sequence
-	private void getNumConfForMut(OneMutation tMut){
-		tMut.numConfUB = BigInteger.ONE;
-		tMut.numConfB = BigInteger.ONE;
-		for (int i=0; i<tMut.resTypes.length; i++){
-			int str = m.residue[strandMut.allMut[i]].strandNumber;
-			int numRot = strandRot[str].rl.getNumRotForAAtype(tMut.resTypes[i]);
-			if (numRot==0)
-				numRot = 1;
-			tMut.numConfUB = tMut.numConfUB.multiply(BigInteger.valueOf(numRot));
-			tMut.numConfB = tMut.numConfUB;
-		}
-		/*int numLigRot = grl.getNumRotamers(ligROT.getCurRotType(0));
-		if (numLigRot==0)
-			numLigRot = 1;
-		tMut.numConfB = tMut.numConfB.multiply(BigInteger.valueOf(numLigRot));*/
-	}
 	//// END MASTER MUTATION SEARCH SECTION
 	///////////////////////////////////////////////////////////////////////////////////	
 
@@ -1320,7 +1304,7 @@ public class RotamerSearch implements Serializable
 								ForceFieldEnergy efuncmin = new ForceFieldEnergy(m,a96ffmin); //Has terms turned on for minimization
 								boolean transRotStrands[] = re.transRotStrands(m,arpMatrix.resByPos, strandMut);
 								ofmin = new ContSCObjFunction(m,numberOfStrands,efuncmin,strandRot,(doDihedE&&shellRun),transRotStrands);
-								ccdMin = new CCDMinimizer(ofmin,true);
+								ccdMin = CCDMinimizer.newMinimizer(ofmin,true);
 							}
 							else
 								simpMin.initialize(m,numberOfStrands,a96ffmin,strandRot,doDihedE);
@@ -2672,11 +2656,11 @@ public class RotamerSearch implements Serializable
 		setBestE(9999999.0f);
 		bestEUnMin = 9999999.0f;
 		if (usingInitialBest)
-			initial_q = initialBest.multiply(new BigDecimal((double)(1-KSepsilon)));
+			initial_q = new LogPartitionFunction(initialBest.multiply(new BigDecimal((double)(1-KSepsilon))));
 		else
-			initial_q = new BigDecimal(0.0);
-		partial_q = new BigDecimal(0.0);
-		partial_p = new BigDecimal(0.0);
+			initial_q = new LogPartitionFunction();
+		partial_q = new LogPartitionFunction();
+		partial_p = new LogPartitionFunction();
 
 		for(int resID:strandMut.allMut){
 			m.residue[resID].flexible = true;
@@ -2781,7 +2765,7 @@ public class RotamerSearch implements Serializable
 			cObj.allPruned[runNum] = allPruned;
 
 			// Compute q_X
-			cObj.q[runNum] = partial_q;
+			cObj.q[runNum] = partial_q.toBigDecimal();
 			cObj.bestE[runNum] = (double)bestEUnMin;
 			cObj.bestEMin[runNum] = (double)getBestE();
 		}
@@ -2830,7 +2814,7 @@ public class RotamerSearch implements Serializable
 						efunc = new ForceFieldEnergy(m, a96ff);
 						ContSCObjFunction of = new ContSCObjFunction(m,numberOfStrands,efunc,strandRot,doDihedE,null);
 						efunc = of.efunc;//ef will now include dihedral energies if appropriate
-						ccdMin = new CCDMinimizer(of,false);
+						ccdMin = CCDMinimizer.newMinimizer(of,false);
 					}
 					else
 						simpMin.initialize(m,numberOfStrands,a96ff,strandRot,doDihedE);
@@ -2886,6 +2870,8 @@ public class RotamerSearch implements Serializable
 			System.out.println("Partition function time (ms): "+(System.currentTimeMillis()-AStarStartTime));
 
 		}
+		if(MSAStarSearch != null)
+			MSAStarSearch.close();
 		MSAStarSearch = null;
 		return asr;
 
@@ -2904,9 +2890,6 @@ public class RotamerSearch implements Serializable
 		if(saveConfsParams.saveTopConfs || saveConfsParams.printTopConfs)
 			topConfs = new PriorityQueue<ConfPair>(saveConfsParams.numTopConfs);
 
-		ExpFunction ef = new ExpFunction();
-
-
 		int treeLevels; // total num levels in the conformation tree
 		/*if (ligPresent) //determine num tree levels: if ligPresent, then numInAS+1
 			treeLevels = numInAS+1;
@@ -2932,10 +2915,14 @@ public class RotamerSearch implements Serializable
 		//
 		//		k_const = k_const.subtract(numConfsPrunedMinDEESteric); //only the non-steric prunings are used in the computation of k_const
 
+		//The epsilon checks below are made on the logs of the partition functions (see LogPartitionFunction)
+		final double logE = -Ec_const/constRT;
+		
 		//Bound the contribution of the conformations pruned by MinDEE
-		BigDecimal pStar = ef.exp(-Ec_const/constRT).multiply(new BigDecimal(k_const),ExpFunction.mc);
+		final double logPStar = logE + LogPartitionFunction.log(k_const);
 
 		final double ro = (double)KSepsilon /(double)(1-KSepsilon);
+		final double logRo = Math.log(ro);
 
 		//		System.out.println("k_const: "+k_const+" pStar: "+printBigNum(pStar,5)+" numConfsPrunedMinDEESteric: "+numConfsPrunedMinDEESteric);
 
@@ -2943,12 +2930,11 @@ public class RotamerSearch implements Serializable
 		for (int curLevel=0; curLevel<treeLevels; curLevel++){
 			if (numRotForResNonPruned[curLevel]==0){ //no non-pruned rotamers for curLevel, so no possible conformations
 				allPruned = true;
-				BigDecimal e = ef.exp(-Ec_const/constRT);
-				if ( (!k_const.equals(BigInteger.ZERO)) && (e.compareTo(BigDecimal.ZERO)!=0) ) { //some non-sterics pruned but accuracy not achieved, so search must be repeated
-					BigDecimal psi = initial_q.max(partial_q.multiply(new BigDecimal(ro),ExpFunction.mc));
+				if ( (!k_const.equals(BigInteger.ZERO)) && (Math.exp(logE)!=0) ) { //some non-sterics pruned but accuracy not achieved, so search must be repeated
+					double logPsi = Math.max(initial_q.log(), partial_q.log()+logRo);
 
-					BigDecimal f = psi.divide(e,ExpFunction.mc); //rounding is ROUND_HALF_UP
-					BigInteger l_const = k_const.subtract( BigInteger.valueOf( (long)Math.ceil(f.doubleValue()) ) );
+					double f = Math.exp(logPsi-logE);
+					BigInteger l_const = k_const.subtract( BigInteger.valueOf( (long)Math.ceil(f) ) );
 					//					setupRepeatRun(l_const, numRotForResNonPruned, treeLevels, numMutable); //accuracy not achieved, so repeat the search with reduced num pruned conf MinDEE
 					//					repeatSearch = true;
 				}
@@ -3019,6 +3005,8 @@ public class RotamerSearch implements Serializable
 				MSAStarSearch = new PGgurobiAStar(treeLevels,numRotForResNonPruned,arpMatrix,Settings.ASTARMETHOD.ASWCSP,Settings.VARIABLEORDER.MINFSCORE,es,doPerturbations,m, strandRot, strandMut, cetm);
 				break;
 			}
+			if(useTriples && MSAStarSearch != null)
+				MSAStarSearch.setPrunedTriples(prunedTriples);
 		}
 
 		if(es.useEPIC){//set up fit series for A* search
@@ -3046,13 +3034,12 @@ public class RotamerSearch implements Serializable
 			parentConf = createParentConf(conf);
 
 			if (conf == null){ // no valid conformations remaining
-				if (partial_q.multiply(new BigDecimal(ro)).compareTo(pStar)<0){ //approximation accuracy not achieved
-					BigDecimal e = ef.exp(-Ec_const/constRT);
-					if ( (!k_const.equals(BigInteger.ZERO)) && (e.compareTo(BigDecimal.ZERO)!=0) ){ //some non-sterics pruned but accuracy not achieved, so search must be repeated
-						BigDecimal psi = initial_q.max(partial_q.multiply(new BigDecimal(ro)));
+				if (LogPartitionFunction.lessThan(partial_q.log()+logRo, logPStar)){ //approximation accuracy not achieved
+					if ( (!k_const.equals(BigInteger.ZERO)) && (Math.exp(logE)!=0) ){ //some non-sterics pruned but accuracy not achieved, so search must be repeated
+						double logPsi = Math.max(initial_q.log(), partial_q.log()+logRo);
 
-						BigDecimal f = psi.divide(e,4); //rounding is ROUND_HALF_UP
-						BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f.doubleValue())));
+						double f = Math.exp(logPsi-logE);
+						BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f)));
 						//							setupRepeatRun(l_const, numRotForResNonPruned, treeLevels, numMutable); //accuracy not achieved, so repeat the search with reduced num pruned conf MinDEE
 						//							repeatSearch = true;
 					}
@@ -3145,23 +3132,22 @@ public class RotamerSearch implements Serializable
 			}
 			
 			//double psi = Math.max(initial_q,partial_q);
-			BigDecimal psi = initial_q.max(partial_q.multiply(new BigDecimal(ro)));
+			double logPsi = Math.max(initial_q.log(), partial_q.log()+logRo);
+			double logNumConfsLeft = LogPartitionFunction.log(numConfsLeft);
 
 			//double curThreshold = -constRT * (Math.log(psi)+Math.log(ro/numConfsLeft));
 			double curThreshold = stericE;
-			BigDecimal diff_qp = psi.subtract(pStar,ExpFunction.mc);
-			if (diff_qp.compareTo(new BigDecimal(0.0))<0) { //the contribution of the pruned confs is bigger than ro*partial_q, so the search cannot be halted
+			if (LogPartitionFunction.lessThan(logPsi, logPStar)) { //the contribution of the pruned confs is bigger than ro*partial_q, so the search cannot be halted
 
-				BigDecimal qBound = partial_q.add(ef.exp(-minELowerBound/constRT).multiply(new BigDecimal(numConfsLeft),ExpFunction.mc),ExpFunction.mc); //an upper bound on what partial_q can be
+				double logQBound = LogPartitionFunction.logAdd(partial_q.log(), -minELowerBound/constRT + logNumConfsLeft); //an upper bound on what partial_q can be
 
-				if (pStar.compareTo(initial_q.max(qBound.multiply(new BigDecimal(ro),ExpFunction.mc)))>0 && 
+				if (logPStar > Math.max(initial_q.log(), logQBound+logRo) && 
 						(!useMaxKSconfs || (useMaxKSconfs && numConfsLeft.add(numConfsEvaluated).compareTo(maxKSconfs) < 0))){ //approximation accuracy cannot be achieved
 
-					BigDecimal e = ef.exp(-Ec_const/constRT);
-					if ( (!k_const.equals(BigInteger.ZERO)) && (e.compareTo(BigDecimal.ZERO)!=0) ){ //some non-sterics pruned but accuracy not achieved, so search must be repeated						
+					if ( (!k_const.equals(BigInteger.ZERO)) && (Math.exp(logE)!=0) ){ //some non-sterics pruned but accuracy not achieved, so search must be repeated						
 
-						BigDecimal f = psi.divide(e,4); //rounding is ROUND_HALF_UP
-						BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f.doubleValue())));
+						double f = Math.exp(logPsi-logE);
+						BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f)));
 						//						setupRepeatRun(l_const, numRotForResNonPruned, treeLevels, numMutable); //accuracy not achieved, so repeat the search with reduced num pruned conf MinDEE
 						//						repeatSearch = true;
 						AStarResults asr = new AStarResults(getBestE(),lowestBound,numConfsEvaluated.longValue(),minELowerBound);
@@ -3177,10 +3163,10 @@ public class RotamerSearch implements Serializable
 					curThreshold = stericE;
 			}
 			else
-				curThreshold = -constRT * (ef.log(diff_qp)-Math.log(numConfsLeft.doubleValue()));
+				curThreshold = -constRT * (LogPartitionFunction.logSubtract(logPsi, logPStar)-logNumConfsLeft);
 
 			System.out.println("conf: "+numConfsEvaluated.add(BigInteger.ONE)+" minELowerBound: "+minELowerBound+" curThreshold: "+curThreshold);
-			System.out.println("pStar: "+printBigNum(pStar,3)+" qStar: "+printBigNum(partial_q,3)+" rho*qStar: "+printBigNum(partial_q.multiply(new BigDecimal(ro)),3));
+			System.out.println("pStar: "+printBigNum(new ExpFunction().exp(logPStar),3)+" qStar: "+printBigNum(partial_q.toBigDecimal(),3)+" rho*qStar: "+printBigNum(partial_q.toBigDecimal().multiply(new BigDecimal(ro)),3));
 
 			//Check if we are done
 			if(lowestOverallBound+Ival < minELowerBound && numConfsEvaluated.compareTo(BigInteger.ONE) >= 0){ 
@@ -3239,12 +3225,11 @@ public class RotamerSearch implements Serializable
 			}
 		}
 		if ((numConfsLeft.equals(BigInteger.ZERO))&&(!k_const.equals(BigInteger.ZERO))){ //no conformations remaining, non-sterics pruned			
-			if (partial_q.multiply(new BigDecimal(ro),ExpFunction.mc).compareTo(pStar)<0){ //approximation accuracy not achieved, so repeat search
-				BigDecimal psi = initial_q.max(partial_q.multiply(new BigDecimal(ro)));
-				BigDecimal e = ef.exp(-Ec_const/constRT);
-				if (e.compareTo(BigDecimal.ZERO)!=0){
-					BigDecimal f = psi.divide(e,4); //rounding is ROUND_HALF_UP				
-					BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f.doubleValue())));
+			if (LogPartitionFunction.lessThan(partial_q.log()+logRo, logPStar)){ //approximation accuracy not achieved, so repeat search
+				double logPsi = Math.max(initial_q.log(), partial_q.log()+logRo);
+				if (Math.exp(logE)!=0){
+					double f = Math.exp(logPsi-logE);
+					BigInteger l_const = k_const.subtract(BigInteger.valueOf((long)Math.ceil(f)));
 					//					setupRepeatRun(l_const, numRotForResNonPruned, treeLevels, numMutable); //accuracy not achieved, so repeat the search with reduced num pruned conf MinDEE
 
 					repeatSearch = true;
@@ -3338,8 +3323,7 @@ public class RotamerSearch implements Serializable
 				energy[1] = calcTotalSnapshotEnergy();			
 				if(useCCD){//The ideal dihedrals are already recorded since we just reinitialized ccdMin
 					((ContSCObjFunction)ccdMin.objFcn).updateIdealDihedrals(); //The molecule has ideal values for the dihedrals now; record these
-					ccdMin.minimize();
-					energy[0] = (double)this.efunc.getEnergy();
+					energy[0] = MinEnergyCache.minimize(ccdMin, this.efunc, hElect, hVDW);
 				}else{
 					simpMin.minimize(numMinSteps);
 					//minimized energy
@@ -3437,8 +3421,7 @@ public class RotamerSearch implements Serializable
 	}
 
 	public synchronized void updatePartialQ(double energy){
-		ExpFunction ef = new ExpFunction();
-		partial_q = partial_q.add(ef.exp(-((energy)) / constRT),ExpFunction.mc);
+		partial_q.addEnergy(energy, constRT);
 	}
 
 
@@ -3896,13 +3879,13 @@ public class RotamerSearch implements Serializable
 
 		DEEGoldsteinTriples DEERun = new DEEGoldsteinTriples(arpMatrix, numMutable, strandMut, initEw, strandRot,  
 				resInTriple, doMinimize, arpMatrix.pairs.pruned, magicBullet, magicBulletNum, distrDEE, minimizeBB,
-				typeDep, doIMinDEE, Ival, tripleFlags, doPerturbations );
+				typeDep, doIMinDEE, Ival, prunedTriples, doPerturbations );
 
-		if(tripleFlags == null)//At this point tripleFlags == DEERun.tripleFlags
+		if(prunedTriples == null)//At this point prunedTriples == DEERun.prunedTriples
 			DEERun.initializeTripleFlags();
 
 		DEERun.ComputeEliminatedRotConf();
-		tripleFlags = DEERun.getTripleFlags();
+		prunedTriples = DEERun.getTripleFlags();
 
 		DEERun = null;
 	}
@@ -4129,9 +4112,9 @@ public class RotamerSearch implements Serializable
 		KSParser.metrics.totalNumConfs += asr.numConfsEvaluated;
 		
 		if(MSAStarSearch != null){
-			MSAStarSearch.stopSlaves();
+			MSAStarSearch.close();
 			KSParser.metrics.numExpanded += MSAStarSearch.numExpanded;
-			KSParser.metrics.totNumNodes += MSAStarSearch.curExpansion.totalNodes;
+			KSParser.metrics.updateQueueMetrics(MSAStarSearch.curExpansion);
 			MSAStarSearch = null;
 		}
 		return asr;
@@ -4304,6 +4287,8 @@ public class RotamerSearch implements Serializable
 			//			MSAStarSearch.rotIndexes = indicesEMatrix;
 			HashMap<ArrayList<Index3>,EnergyTuple> energyTuples = new HashMap<ArrayList<Index3>,EnergyTuple>();
 			MSAStarSearch.setEnergyTuples(energyTuples);
+			if(useTriples)
+				MSAStarSearch.setPrunedTriples(prunedTriples);
 			run1 = true;
 		}
 
@@ -4340,6 +4325,11 @@ public class RotamerSearch implements Serializable
 		//if we are running checkEPIC
 
 		improvedBounds = tuples || partitionedRotamers || superRotamers;
+		
+		if(canPipelineMinimization(cObj, minimizeBB, enumSettings, outSettings))
+			return doAStarGMECPipelined(treeLevels, Ew, approxMinGMEC, lambda, useEref, useMinDEEPruningEw,
+					Ival, enumSettings, logPS, run1, lowestBound);
+		
 		double minIval = Double.POSITIVE_INFINITY;
 		PGQueueNode curNode = new PGQueueNode(1, new int[1], 0.0, 0, 0);
 		while (true){
@@ -4370,10 +4360,10 @@ public class RotamerSearch implements Serializable
 					cObj.bestScore = new BigDecimal(getBestE()); //update the best score so far to supply to the next partition
 
 				//					if(!keepAStree){
-				MSAStarSearch.stopSlaves();
+				MSAStarSearch.close();
 				KSParser.metrics.numExpanded += MSAStarSearch.numExpanded;
-				KSParser.metrics.totNumNodes += MSAStarSearch.curExpansion.totalNodes;
-				MSAStarSearch = null;
+				KSParser.metrics.updateQueueMetrics(MSAStarSearch.curExpansion);
+					MSAStarSearch = null;
 				//					}
 
 				if (outputFile){
@@ -4612,7 +4602,7 @@ public class RotamerSearch implements Serializable
 									efunc = new ForceFieldEnergy(m, a96ff);
 									ContSCObjFunction of = new ContSCObjFunction(m,numberOfStrands,efunc,strandRot,doDihedE,null);
 									efunc = of.efunc;//ef will now include dihedral energies if appropriate
-									ccdMin = new CCDMinimizer(of,false);
+									ccdMin = CCDMinimizer.newMinimizer(of,false);
 								}
 								else
 									simpMin.initialize(m,numberOfStrands,a96ff,strandRot,doDihedE);
@@ -4634,9 +4624,8 @@ public class RotamerSearch implements Serializable
 						if (!minimizeBB) {//side-chain minimization
 							unMinE = calcTotalSnapshotEnergy();
 							if(useCCD){//The ideal dihedrals are already recorded since we just reinitialized ccdMin
-								ccdMin.minimize();
+								minE = MinEnergyCache.minimize(ccdMin, efunc, hElect, hVDW);
 								minTime = ccdMin.minTime;
-								minE = (double)efunc.getEnergy();
 
 
 								if(es.useEPIC && es.useSVE){
@@ -4761,6 +4750,280 @@ public class RotamerSearch implements Serializable
 	}
 
 
+	//The pipelined enumeration handles side-chain minimization without EPIC and without the
+	//per-residue bookkeeping of the improved-bound modes; everything else uses the serial loop.
+	//K* is not pipelined: its partition functions are computed by slaveRotamerSearchAStar, and
+	//the serial loop here exits if it is given a cObj, so cObj == null is a precondition, not a choice.
+	private boolean canPipelineMinimization(CommucObj cObj, boolean minimizeBB, Settings.Enum enumSettings, Settings.Output outSettings){
+		return EnvironmentVars.numMinimizerThreads > 0 && cObj == null
+				&& doMinimization && computeEVEnergy && !minimizeBB
+				&& !es.useEPIC && !es.gettingLowestBound && !improvedBounds
+				&& enumSettings.asMethod != Settings.ASTARMETHOD.BYSUBROT
+				&& (outSettings == null || !outSettings.savePDBs);
+	}
+	
+	//Pipelined version of the enumerate-then-minimize loop of doAStarGMECHelper.
+	//A* runs on this thread and extracts conformations (in lower-bound order) up to a few ahead
+	//of the one being committed; a pool of minimizers, each with its own copy of the molecule and
+	//force field, minimizes them meanwhile. Conformations are committed in enumeration order with
+	//the same halting conditions as the serial loop, so the best energy, the output file and the
+	//returned results are the same; the only difference is a few extra A* extractions (and
+	//minimizations) past the halting point.
+	private AStarResults doAStarGMECPipelined(int treeLevels, double Ew, boolean approxMinGMEC, double lambda,
+			boolean useEref, boolean useMinDEEPruningEw, double Ival, Settings.Enum enumSettings,
+			PrintStream logPS, boolean run1, double lowestBound){
+		
+		int numWorkers = EnvironmentVars.numMinimizerThreads;
+		int window = 2*numWorkers; //max number of conformations extracted but not yet committed
+		
+		final LinkedBlockingQueue<ConfMinimizer> idleMinimizers = new LinkedBlockingQueue<ConfMinimizer>();
+		for(int i=0; i<numWorkers; i++)
+			idleMinimizers.add(new ConfMinimizer());
+		ExecutorService minPool = Executors.newFixedThreadPool(numWorkers);
+		
+		LinkedList<PendingConf> pending = new LinkedList<PendingConf>();
+		ConfEnumerator confs = MSAStarSearch.enumerate(run1);
+		boolean stopExtracting = false;
+		long numExtracted = numConfsEvaluated.longValue();
+		int numConfsOutput = 0;
+		double minELowerBound = stericE;
+		
+		try{
+			while(true){
+				
+				//Extract conformations ahead of the commit point
+				while(!stopExtracting && pending.size() < window){
+					long startAS = System.currentTimeMillis();
+					boolean haveConf = confs.hasNext();
+					long endAS = System.currentTimeMillis();
+					KSParser.metrics.AStime += (endAS - startAS);
+					
+					if(!haveConf){ //no valid conformations remaining
+						stopExtracting = true;
+						break;
+					}
+					
+					PendingConf pc = new PendingConf(confs.next().conf, useEref);
+					pending.add(pc);
+					
+					//Stop extracting once a conformation is certain to halt the search:
+					//the best energy only goes down, so these conditions will still hold when it is committed
+					boolean isFirst = run1 && numExtracted == numConfsEvaluated.longValue();
+					if( (!isFirst && (pc.bound > getBestE()+Ew || (approxMinGMEC && pc.bound > lowestBound+lambda)))
+							|| (useMinDEEPruningEw && (lowestBound+Ival+Ew < pc.bound || numExtracted >= enumSettings.numToEnumerate)) )
+						stopExtracting = true;
+					else
+						pc.submit(minPool, idleMinimizers);
+					numExtracted++;
+				}
+				
+				if(pending.isEmpty()){ //A* is out of conformations and all of them have been committed
+					confs.close();
+					KSParser.metrics.numExpanded += MSAStarSearch.numExpanded;
+					KSParser.metrics.updateQueueMetrics(MSAStarSearch.curExpansion);
+							MSAStarSearch = null;
+					
+					if (logPS != null){
+						logPS.flush(); //there may still be results to output
+					}
+					return new AStarResults(getBestE(),lowestBound,numConfsEvaluated.longValue(),minELowerBound);
+				}
+				
+				//Commit the next conformation in enumeration order
+				PendingConf pc = pending.removeFirst();
+				EMatrixEntryWIndex conf[] = pc.conf;
+				minELowerBound = pc.bound;
+				
+				System.out.println("confNum: "+(numConfsEvaluated.add(BigInteger.ONE)));
+				for (int i=0; i<treeLevels; i++)
+					System.out.print(conf[i].eme.printRes(m,arpMatrix.resByPos));
+				
+				if (run1) //this is the first extracted conformation, so it has the lowest energy lower bound, so store it
+					lowestBound = minELowerBound;
+				
+				boolean done = false;
+				if ((minELowerBound>(getBestE()+Ew)) && (!run1)) //we already have all confs within Ew of the minGMEC
+					done = true;
+				else if (approxMinGMEC){ //running the heuristic halting condition
+					if ((minELowerBound>(lowestBound+lambda)) && (!run1)) //compare the current bound to the lowest bound
+						done = true;
+				}
+				
+				if(useMinDEEPruningEw){
+					if(lowestBound+Ival+Ew < minELowerBound || numConfsEvaluated.longValue() >= enumSettings.numToEnumerate){ // We are not done and we pruned too much, repeat search
+						return new AStarResults(getBestE(),lowestBound,numConfsEvaluated.longValue(),minELowerBound);
+					}
+				}
+				
+				if (done){ //we already have all required conformations
+					if (logPS != null){
+						logPS.flush();
+					}
+					if(useMinDEEPruningEw && !approxMinGMEC)
+						return new AStarResults(getBestE(),lowestBound,numConfsEvaluated.longValue(),minELowerBound);
+					else
+						return new AStarResults(lowestBound,lowestBound,numConfsEvaluated.longValue(),minELowerBound); //stop the search
+				}
+				
+				if(pc.result == null) //extraction stopped at this conformation, but the search did not
+					pc.submit(minPool, idleMinimizers);
+				double energies[] = pc.getEnergies();
+				double unMinE = energies[0];
+				double minE = energies[1];
+				
+				updateBestE(minE); //for the halting condition
+				
+				System.out.println(minELowerBound+" "+minE+" "+getBestE());
+				
+				if (logPS != null){//Output to file
+					
+					if ((approxMinGMEC)||(minE<=(getBestE()+Ew))){ //heuristic stopping condition or minE within Ew of the current lowest energy
+						
+						numConfsOutput++;
+						logPS.print(numConfsOutput+" ");
+						for (int i=0; i<treeLevels; i++)
+							logPS.print(conf[i].eme.printRes(m,arpMatrix.resByPos));
+						
+						logPS.print("unMinE: "+unMinE+" ");
+						logPS.print("minE: "+minE+" ");
+						logPS.print("minBound: "+minELowerBound+" ");
+						logPS.print("bestE: "+getBestE());
+						logPS.print(" timeToConf: "+ (System.currentTimeMillis() - KSParser.metrics.loopStart)+" ");
+						logPS.print("numConfs: "+(KSParser.metrics.totalNumConfs+numConfsEvaluated.longValue()+1)+" ");
+						if(MSAStarSearch != null){
+							logPS.print("numExpanded: "+(KSParser.metrics.numExpanded + MSAStarSearch.numExpanded)+" ");
+							logPS.print("totNumNodes: "+(KSParser.metrics.totNumNodes + MSAStarSearch.curExpansion.numNodes())+" ");
+						}
+						logPS.println();
+						logPS.flush();
+					}
+				}
+				
+				numConfsEvaluated = numConfsEvaluated.add(BigInteger.ONE);
+				
+				run1 = false;
+			}
+		}
+		finally{
+			minPool.shutdownNow();
+		}
+	}
+	
+	//A conformation extracted by A* in the pipelined enumeration, with its (pending) energies
+	private class PendingConf {
+		
+		EMatrixEntryWIndex conf[];
+		double bound; //the rotamer-based lower bound on the conformation's energy
+		boolean useEref;
+		Future<double[]> result = null; //{unMinE, minE}
+		
+		PendingConf(EMatrixEntryWIndex conf[], boolean useEref){
+			this.conf = conf;
+			this.useEref = useEref;
+			int[] curAANums = new int[conf.length];
+			int[] curRotNums = new int[conf.length];
+			for (int i=0; i<conf.length; i++){
+				curAANums[i] = conf[i].index[1];
+				curRotNums[i] = conf[i].index[2];
+			}
+			bound = computeBestRotEnergyBound(curAANums, curRotNums, null);
+		}
+		
+		void submit(ExecutorService minPool, final LinkedBlockingQueue<ConfMinimizer> idleMinimizers){
+			result = minPool.submit(new java.util.concurrent.Callable<double[]>(){
+				public double[] call() throws Exception {
+					ConfMinimizer cm = idleMinimizers.take();
+					try{
+						return cm.minimize(conf, useEref);
+					}
+					finally{
+						idleMinimizers.put(cm);
+					}
+				}
+			});
+		}
+		
+		double[] getEnergies(){
+			try{
+				return result.get();
+			}
+			catch(Exception e){
+				System.out.println("ERROR: minimization of a conformation failed");
+				e.printStackTrace();
+				System.exit(1);
+				return null;
+			}
+		}
+	}
+	
+	//Minimizes conformations on private copies of the molecule, force field, rotamers and
+	//minimizer, so several conformations can be minimized at once
+	private class ConfMinimizer {
+		
+		Molecule cm;
+		Amber96ext cff;
+		StrandRotamers[] cStrandRot;
+		SimpleMinimizer cSimpMin;
+		
+		ConfMinimizer(){
+			try{
+				//copied together so the copies refer to each other rather than to the originals
+				Object copy[] = (Object[]) KSParser.deepCopy(new Object[] {m, a96ff, strandRot, simpMin});
+				cm = (Molecule) copy[0];
+				cff = (Amber96ext) copy[1];
+				cStrandRot = (StrandRotamers[]) copy[2];
+				cSimpMin = (SimpleMinimizer) copy[3];
+			}
+			catch(Exception e){
+				System.out.println("ERROR: could not copy the molecule for pipelined minimization");
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		
+		//Returns {unMinE, minE} for the conformation, the same as the serial loop computes
+		double[] minimize(EMatrixEntryWIndex conf[], boolean useEref){
+			
+			cff.calculateTypesWithTemplates();
+			for (int i=0; i<conf.length; i++){
+				conf[i].eme.applyMutation(cm, arpMatrix.resByPos, addHydrogens, connectResidues);
+				conf[i].eme.applyRC(arpMatrix.resByPos, cm);
+			}
+			
+			cff.calculateTypesWithTemplates();
+			cff.initializeCalculation();
+			cff.setNBEval(hElect,hVDW);
+			
+			double unMinE = cff.calculateTotalEnergy(cm.actualCoordinates,-1)[0];
+			double minE;
+			if(useCCD){
+				EnergyFunction ef = new ForceFieldEnergy(cm, cff);
+				ContSCObjFunction of = new ContSCObjFunction(cm,numberOfStrands,ef,cStrandRot,doDihedE,null);
+				ef = of.efunc;//ef will now include dihedral energies if appropriate
+				CCDMinimizer ccd = CCDMinimizer.newMinimizer(of,false);
+				minE = MinEnergyCache.minimize(ccd, ef, hElect, hVDW);
+			}
+			else{
+				cSimpMin.initialize(cm,numberOfStrands,cff,cStrandRot,doDihedE);
+				cSimpMin.minimize(numMinSteps);
+				minE = cff.calculateTotalEnergy(cm.actualCoordinates,-1)[0];
+				if (doDihedE) //add dihedral energies
+					minE += cSimpMin.computeDihedEnergy();
+			}
+			cm.updateCoordinates();
+			cm.revertPertParamsToCurState();
+			
+			double totEref = 0.0f;
+			double totEntropy = 0.0f;
+			if (useEref)
+				totEref = getTotSeqEref(arpMatrix.eRef,conf,null,cm);
+			if (EnvironmentVars.useEntropy)
+				totEntropy = getTotSeqEntropy(strandMut,null,cm);
+			
+			return new double[] {unMinE + totEntropy - totEref, minE + totEntropy - totEref};
+		}
+	}
+	
 	private double storeGeneratedConformation(boolean useEref, int[] curAANums,
 			int[] curRotNums, Index3wVal[] boundPerPos,
 			Index3wVal[] energyPerPos,ArrayList<ArrayList<Integer>> resByPos, double minIval) {
@@ -4975,6 +5238,11 @@ public class RotamerSearch implements Serializable
 
 
 	private double getTotSeqEref(HashMap<String, double[]> eRef, EMatrixEntryWIndex[] conf,Index3wVal[] energyPerPos) {
+		return getTotSeqEref(eRef, conf, energyPerPos, m);
+	}
+	
+	//Same as above, for the conformation applied to the given molecule
+	private double getTotSeqEref(HashMap<String, double[]> eRef, EMatrixEntryWIndex[] conf,Index3wVal[] energyPerPos, Molecule m) {
 		double totEref = 0;
 		for(EMatrixEntryWIndex emeWI: conf){
 			double tmpE = ((RotamerEntry)emeWI.eme).getEref(eRef, m, arpMatrix.resByPos);
@@ -4992,6 +5260,11 @@ public class RotamerSearch implements Serializable
 
 	//Returns the reference energy for the current amino acid sequence assignment (for the mutatable positions only)
 	public double getTotSeqEntropy(MutableResParams strandMut,Index3wVal[] energyPerPos){
+		return getTotSeqEntropy(strandMut, energyPerPos, m);
+	}
+	
+	//Same as above, for the sequence applied to the given molecule
+	private double getTotSeqEntropy(MutableResParams strandMut,Index3wVal[] energyPerPos, Molecule m){
 
 		double totEref = 0.0f;
 
@@ -5734,7 +6007,7 @@ public class RotamerSearch implements Serializable
 		if(doMinimization){
 			if(!minimizeBB){
 				if(useCCD)
-					ccdMin.minimize();
+					MinEnergyCache.minimize(ccdMin, efunc, hElect, hVDW);
 				else
 					simpMin.minimize(numMinSteps);
 			}
@@ -61,6 +61,8 @@ public class Settings implements Serializable {
 	
 			useCCD = (new Boolean((String)sParams.getValue("USECCD","true"))).booleanValue();//CCD minimization
 			CCDMinimizer.EConvTol = (new Double((String)sParams.getValue("ECONVTOL","0.01"))).doubleValue();
+			LBFGSMinimizer.useLBFGS = (new Boolean((String)sParams.getValue("USELBFGS","false"))).booleanValue();//L-BFGS instead of CCD
+			EnvironmentVars.minEnergyCacheSize = (new Integer((String)sParams.getValue("MINCACHESIZE","0"))).intValue();
 			
 			if (!doMinimize) //no minimization
 				minimizeBB = false;
@@ -206,6 +208,12 @@ public class Settings implements Serializable {
 		
 		Enum(ParamSet sParams){
 			EnvironmentVars.useMPLP = (new Boolean((String)sParams.getValue("USEMPLP", "false"))).booleanValue(); 		//from Pablo
+			EnvironmentVars.asQueueType = sParams.getValue("ASTARQUEUE","HEAP").toUpperCase();
+			EnvironmentVars.asQueueMaxNodes = (new Integer((String)sParams.getValue("ASTARMAXNODES", "0"))).intValue();
+			EnvironmentVars.asQueueSpillFrac = (new Double((String)sParams.getValue("ASTARSPILLFRAC", "0.5"))).doubleValue();
+			EnvironmentVars.asScoreGranularity = Math.max(1, (new Integer((String)sParams.getValue("ASTARSCOREGRAIN", "4"))).intValue());
+			EnvironmentVars.wcspSolver = sParams.getValue("WCSPSOLVER","JAVA").toUpperCase();
+			EnvironmentVars.numMinimizerThreads = (new Integer((String)sParams.getValue("MINIMIZERTHREADS", "0"))).intValue();
 			approxMinGMEC = (new Boolean((String)sParams.getValue("APPROXMINGMEC", "false"))).booleanValue();
 			lambda = (new Double((String)sParams.getValue("LAMBDA", "0"))).doubleValue();
 			useFlagsAStar = (new Boolean((String)sParams.getValue("USEFLAGSASTAR","false"))).booleanValue();
@@ -324,6 +332,8 @@ public class Settings implements Serializable {
 		int numTopConfs;
 		boolean useMaxKSconfs;
 		BigInteger maxKSconfs;
+		int numTopSeqs; //if > 0, stop once the best numTopSeqs sequences are provably found (see KSSeqBounds)
+		String resultStoreName; //indexed store of the finished sequences ("none", the default, to only write the text log)
 		
 		KStar(ParamSet sParams, String runName){
 			numMutations = (new Integer((String)sParams.getValue("NUMMUTATIONS", "1"))).intValue();
@@ -356,6 +366,9 @@ public class Settings implements Serializable {
 			if(useMaxKSconfs)
 				maxKSconfs = new BigInteger(sParams.getValue("maxKSconfs"));
 			
+			numTopSeqs = (new Integer((String)sParams.getValue("NUMTOPSEQS","0"))).intValue();
+			resultStoreName = (String)sParams.getValue("RESULTSTORE","none");
+			
 		}
 		
 		
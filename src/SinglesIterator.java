@@ -0,0 +1,116 @@
+import java.util.Iterator;
+
+public class SinglesIterator implements Iterator<EMatrixEntryWIndex>{
+	private Emat emat;
+	private boolean hasNextItem = false;
+	private EMatrixEntry nextItem = null;
+	private int[] curI;
+	private int pos = -1;
+
+	public SinglesIterator(Emat energyMat){
+		emat = energyMat;
+		curI = new int[3];
+		for(int i=0; i<curI.length;i++)
+			curI[i] = 0;
+
+		if(emat.singles != null){
+			hasNextItem = true;
+			while(emat.singles.E[curI[0]][curI[1]].length == 0){
+				curI[1]++;
+			}
+			nextItem = emat.singles.getTerm(curI);
+
+		}
+		else{
+			hasNextItem = false;
+		}
+
+	}
+
+	// This iterator returns an iterator of all rotamers at position p.   
+	public SinglesIterator(Emat energyMat, int p){
+		pos = p;
+		emat = energyMat;
+		// 3D index for Position, AA, and rotamer.
+		curI = new int[3];
+		for(int i=0; i<curI.length;i++)
+			curI[i] = 0;
+
+		curI[0] = p;
+
+		if(emat.singles != null){
+			hasNextItem = true;
+			try{
+				// Find the first valid rotamer of a position.
+				while(emat.singles.E[curI[0]][curI[1]].length == 0){
+					curI[1]++;
+				}
+			}catch(Exception E){
+				System.out.println("An error occurred while generating rotamer iterator.  Possibly, all rotamers were pruned at residue position "+pos+".  Try increasing the pruning energy so that not all rotamers are pruned.");
+				E.printStackTrace();
+				System.exit(1);
+
+			}
+			nextItem = emat.singles.getTerm(curI);
+
+		}
+		else{
+			hasNextItem = false;
+		}
+
+	}
+
+	public boolean hasNext() {
+		return hasNextItem;
+	}
+
+	// Returns the next rotamer entry either pruned or unpruned. 
+	public EMatrixEntryWIndex next() {
+		int[] index = new int[curI.length];
+		for(int i=0; i<index.length;i++)
+			index[i] = curI[i];
+		EMatrixEntryWIndex ret = new EMatrixEntryWIndex(nextItem, index);
+		calcNext();
+		return ret;
+	}
+
+	// Find the next rotamer; called by next function
+	private void calcNext() {
+		hasNextItem = false;
+
+		int[] ctr = curI; 
+		int[] max = {emat.singles.E.length,emat.singles.E[curI[0]].length,emat.singles.E[curI[0]][curI[1]].length};
+		do{
+			if(Emat.incrementCtr(ctr,max)){
+				//Gone past the end of the matrix
+				if(ctr[0] == emat.singles.E.length)
+					return;
+				else if(pos != -1 && ctr[0] != pos)
+					return;
+				max = getMax(ctr);
+			}
+		}while(emat.singles.E[curI[0]][curI[1]].length==0);
+
+		hasNextItem = true;
+		nextItem = emat.singles.getTerm(ctr);
+	}
+
+	// Returns the max number of rotamers, amino acids, and positions, for the current "rotamer entry"
+	// For example, if their are 4 positions, 6 amino acids at the current position and 9 rotamers at the current "amino acid",
+	// then it returns [4, 6, 9].
+	private int[] getMax(int[] ctr){
+		int[] maxes = new int[ctr.length];
+		maxes[0] = emat.singles.E.length;
+		maxes[1] = emat.singles.E[ctr[0]].length;
+		maxes[2] = emat.singles.E[ctr[0]][ctr[1]].length;
+
+		return maxes;
+	}
+
+	@Override
+	public void remove() {
+		// TODO Auto-generated method stub
+
+	}
+
+}
@@ -0,0 +1,428 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	SocketElement.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//	  KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * The SocketElement class is the message endpoint used when the slaves are run
+ * as separate local JVM processes instead of threads. Incoming messages are put
+ * on the same queues that ThreadElement uses, so Probe, Iprobe and Recv behave
+ * exactly as in a threaded run; only Send differs in that the message is written
+ * to a loopback socket.
+ * 
+ * The master keeps one link per worker process. Workers send a heartbeat every
+ * few seconds, and a worker that stops sending heartbeats, closes its socket, or
+ * whose process exits is marked dead. Any jobs that were outstanding on a dead
+ * worker are sent to one of the remaining workers.
+ * @author kroberts
+ *
+ */
+public class SocketElement extends ThreadElement {
+
+	final static int heartbeatTag = 100; //tag for the worker keep-alive messages
+	static long heartbeatInterval = 5000; //milliseconds between heartbeats
+	static long heartbeatTimeout = 120000; //milliseconds without a message before a worker is declared dead
+	static int connectTimeout = 300000; //milliseconds to wait for the workers to connect
+
+	Link links[] = null; //links[0] is the master on a worker; links[1..n] are the workers on the master
+	int numProc;
+
+	/**
+	 * Creates the master endpoint, starts numWorkers worker JVMs and waits
+	 * for all of them to connect.
+	 * @param numWorkers number of worker processes to start
+	 * @param cfgName the configuration file the workers should read
+	 */
+	public SocketElement(int numWorkers, String cfgName) throws IOException {
+		super(0);
+		numProc = numWorkers+1;
+		links = new Link[numProc];
+
+		ServerSocket server = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress());
+		server.setSoTimeout(connectTimeout);
+
+		Process procs[] = new Process[numProc];
+		for(int i=1; i<numProc; i++)
+			procs[i] = MPItoThread.startWorkerProcess(server.getLocalPort(), i, cfgName);
+
+		try{
+			for(int i=1; i<numProc; i++){
+				Socket socket = server.accept();
+				Link l = new Link(socket);
+				int workerRank = (Integer)l.readMessage();
+				l.rank = workerRank;
+				l.proc = procs[workerRank];
+				links[workerRank] = l;
+			}
+		}
+		finally{
+			server.close();
+		}
+
+		for(int i=1; i<numProc; i++)
+			startReader(links[i]);
+		startMonitor();
+	}
+
+	/**
+	 * Creates the endpoint of a worker process and connects it to the master
+	 * listening on the given loopback port.
+	 * @param port the port the master is listening on
+	 * @param rank the rank assigned to this worker by the master
+	 */
+	public SocketElement(int port, int rank) throws IOException {
+		super(rank);
+		links = new Link[1];
+
+		Link l = new Link(new Socket(InetAddress.getLoopbackAddress(), port));
+		l.rank = 0;
+		links[0] = l;
+		l.write(Integer.valueOf(rank));
+
+		startReader(l);
+		startHeartbeat();
+	}
+
+	@Override
+	public int getSize(){
+		if(rank == 0)
+			return numProc;
+		else
+			return MPItoThread.numProc;
+	}
+
+	@Override
+	public void Send(Object buf, int offset, int count, int type,
+			int dest, int tag) {
+
+		ThreadMessage t = new ThreadMessage(null, type, rank, tag);
+		t.obj = t.determineObj(buf, type, offset, count);
+
+		if(rank == 0)
+			dispatch(t, dest);
+		else{
+			if(dest != 0){
+				System.out.println("ERROR: worker processes can only send messages to the master");
+				System.exit(1);
+			}
+			if(!links[0].send(t)){
+				System.out.println("ERROR: lost connection to the master process");
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Sends a message from the master to a worker. Jobs addressed to a worker
+	 * that is no longer running are sent to another worker instead; any other
+	 * message to a dead worker is dropped.
+	 */
+	private synchronized void dispatch(ThreadMessage t, int dest){
+		Link l = links[dest];
+		boolean job = isJob(t);
+
+		if(!l.alive){
+			if(!job)
+				return;
+			l = nextLiveLink();
+			System.out.println("Worker "+dest+" is no longer running, sending its job to worker "+l.rank);
+		}
+
+		if(job)
+			l.outstanding.addLast(t);
+		else if(isExit(t))
+			l.exiting = true;
+
+		if(!l.send(t))
+			workerDied(l);
+	}
+
+	/**
+	 * Returns the live worker with the fewest outstanding jobs.
+	 */
+	private Link nextLiveLink(){
+		Link best = null;
+		for(int i=1; i<numProc; i++){
+			if(links[i].alive && (best == null || links[i].outstanding.size() < best.outstanding.size()))
+				best = links[i];
+		}
+		if(best == null){
+			System.out.println("ERROR: all worker processes have died");
+			System.exit(1);
+		}
+		return best;
+	}
+
+	/**
+	 * Marks a worker as dead and re-sends the jobs it had not finished
+	 */
+	private synchronized void workerDied(Link l){
+		if(!l.alive)
+			return;
+		l.alive = false;
+		l.close();
+		if(l.exiting) //the worker was told to exit
+			return;
+		if(l.proc != null)
+			l.proc.destroy();
+
+		System.out.println("Worker process "+l.rank+" stopped responding, "+l.outstanding.size()+" job(s) will be redistributed");
+
+		LinkedList<ThreadMessage> pending = new LinkedList<ThreadMessage>(l.outstanding);
+		l.outstanding.clear();
+		for(ThreadMessage t : pending)
+			dispatch(t, l.rank);
+	}
+
+	/**
+	 * A K* job is a regTag message carrying a CommucObj that the worker answers
+	 * with a regTag message; only these are tracked for redistribution
+	 */
+	private boolean isJob(ThreadMessage t){
+		if(t.tag != KSParser.regTag || t.dataType != ThreadMessage.OBJECT)
+			return false;
+		Object o = ((Object[])t.obj)[0];
+		if(!(o instanceof CommucObj))
+			return false;
+		CommucObj cObj = (CommucObj)o;
+		return !(cObj.gurobiCalc || cObj.wcspCalc);
+	}
+
+	/**
+	 * The master tells a worker to exit by sending it a null CommucObj
+	 */
+	private boolean isExit(ThreadMessage t){
+		return t.tag == KSParser.regTag && t.dataType == ThreadMessage.OBJECT
+				&& ((Object[])t.obj).length > 0 && ((Object[])t.obj)[0] == null;
+	}
+
+	/**
+	 * Removes the job answered by a reply from the worker's outstanding list.
+	 * Only K* job replies are matched, by their mutation index; any other
+	 * regTag message leaves the list untouched.
+	 */
+	private synchronized void jobFinished(Link l, ThreadMessage reply){
+		if(!isJob(reply))
+			return;
+		int mut = jobId(reply);
+		Iterator<ThreadMessage> it = l.outstanding.iterator();
+		while(it.hasNext()){
+			if(jobId(it.next()) == mut){
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	private static int jobId(ThreadMessage t){
+		return ((CommucObj)((Object[])t.obj)[0]).curMut;
+	}
+
+	/**
+	 * Starts the thread that moves messages from a socket onto the message queue
+	 */
+	private void startReader(final Link l){
+		Thread reader = new Thread(){
+			public void run(){
+				try{
+					while(true){
+						ThreadMessage t = (ThreadMessage)l.readMessage();
+						l.lastSeen = System.currentTimeMillis();
+						if(t.tag == heartbeatTag)
+							continue;
+						if(rank == 0 && t.tag == KSParser.regTag)
+							jobFinished(l, t);
+						setMessage(t);
+					}
+				}
+				catch(Exception e){
+					if(rank == 0)
+						workerDied(l);
+					else{
+						System.out.println("Worker "+rank+" lost its connection to the master, exiting");
+						System.exit(0);
+					}
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Starts the worker thread that tells the master this process is still alive
+	 */
+	private void startHeartbeat(){
+		Thread heartbeat = new Thread(){
+			public void run(){
+				ThreadMessage t = new ThreadMessage(new Object[0], ThreadMessage.OBJECT, rank, heartbeatTag);
+				while(links[0].send(t)){
+					try{ Thread.sleep(heartbeatInterval); } catch(InterruptedException e){ return; }
+				}
+			}
+		};
+		heartbeat.setDaemon(true);
+		heartbeat.start();
+	}
+
+	/**
+	 * Starts the master thread that checks for workers that have exited or
+	 * have stopped sending heartbeats
+	 */
+	private void startMonitor(){
+		Thread monitor = new Thread(){
+			public void run(){
+				while(true){
+					try{ Thread.sleep(heartbeatInterval); } catch(InterruptedException e){ return; }
+					long now = System.currentTimeMillis();
+					for(int i=1; i<numProc; i++){
+						Link l = links[i];
+						if(!l.alive)
+							continue;
+						if(!isRunning(l.proc) || now - l.lastSeen > heartbeatTimeout)
+							workerDied(l);
+					}
+				}
+			}
+		};
+		monitor.setDaemon(true);
+		monitor.start();
+	}
+
+	private static boolean isRunning(Process p){
+		if(p == null)
+			return true;
+		try{
+			p.exitValue();
+			return false;
+		}
+		catch(IllegalThreadStateException e){
+			return true;
+		}
+	}
+
+	/**
+	 * Waits for the workers to exit after they have been sent the exit message
+	 */
+	public void shutdown(){
+		for(int i=1; i<numProc; i++){
+			Link l = links[i];
+			if(l.proc != null){
+				try{ l.proc.waitFor(); } catch(InterruptedException e){}
+			}
+			l.alive = false;
+			l.close();
+		}
+	}
+
+	/**
+	 * One end of a socket connection between the master and a worker
+	 */
+	class Link {
+		Socket socket;
+		ObjectOutputStream out;
+		ObjectInputStream in;
+		Process proc = null;
+		int rank = -1;
+		volatile boolean alive = true;
+		volatile boolean exiting = false;
+		volatile long lastSeen;
+		LinkedList<ThreadMessage> outstanding = new LinkedList<ThreadMessage>(); //jobs sent but not yet answered
+
+		Link(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			out = new ObjectOutputStream(socket.getOutputStream());
+			out.flush();
+			in = new ObjectInputStream(socket.getInputStream());
+			lastSeen = System.currentTimeMillis();
+		}
+
+		Object readMessage() throws IOException {
+			try{
+				return in.readObject();
+			}
+			catch(ClassNotFoundException e){
+				throw new IOException(e);
+			}
+		}
+
+		synchronized void write(Object o) throws IOException {
+			out.writeObject(o);
+			out.flush();
+			out.reset(); //don't keep references to every object ever sent
+		}
+
+		boolean send(ThreadMessage t){
+			try{
+				write(t);
+				return true;
+			}
+			catch(IOException e){
+				return false;
+			}
+		}
+
+		void close(){
+			try{ socket.close(); } catch(IOException e){}
+		}
+	}
+
+}
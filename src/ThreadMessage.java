@@ -50,7 +50,12 @@
 //	 ---------   -----------------    ------------------------    ----------------------------
 //	  KER        Kyle E. Roberts       Duke University         ker17@duke.edu
 ///////////////////////////////////////////////////////////////////////////////////////////////
-public class ThreadMessage {
+
+import java.io.Serializable;
+
+public class ThreadMessage implements Serializable {
+	  private static final long serialVersionUID = 1L;
+
 	  final static int UNDEFINED = -1 ;
 	  final static int NULL      =  0 ;
 	  final static int BYTE      =  1 ;
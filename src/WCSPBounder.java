@@ -0,0 +1,438 @@
+/*
+	This file is part of OSPREY.
+
+	OSPREY Protein Redesign Software Version 2.1 beta
+	Copyright (C) 2001-2012 Bruce Donald Lab, Duke University
+	
+	OSPREY is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as 
+	published by the Free Software Foundation, either version 3 of 
+	the License, or (at your option) any later version.
+	
+	OSPREY is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+	GNU Lesser General Public License for more details.
+	
+	You should have received a copy of the GNU Lesser General Public
+	License along with this library; if not, see:
+	      <http://www.gnu.org/licenses/>.
+		
+	There are additional restrictions imposed on the use and distribution
+	of this open-source code, including: (A) this header must be included
+	in any modification or extension of the code; (B) you are required to
+	cite our papers in any publications that use this code. The citation
+	for the various different modules of our software, together with a
+	complete list of requirements and restrictions are found in the
+	document license.pdf enclosed with this distribution.
+	
+	Contact Info:
+			Bruce Donald
+			Duke University
+			Department of Computer Science
+			Levine Science Research Center (LSRC)
+			Durham
+			NC 27708-0129 
+			USA
+			e-mail:   www.cs.duke.edu/brd/
+	
+	<signature of Bruce Donald>, Mar 1, 2012
+	Bruce Donald, Professor of Computer Science
+*/
+///////////////////////////////////////////////////////////////////////////////////////////////
+//	WCSPBounder.java
+//
+//	Version:           2.1 beta
+//
+//
+//	  authors:
+// 	  initials    name                 organization                email
+//	 ---------   -----------------    ------------------------    ----------------------------
+//     KER        Kyle E. Roberts       Duke University         ker17@duke.edu
+///////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * In-process bounding and solving for the pairwise WCSPs built by WCSPOptimization, so no
+ * toulbar2 process or .wcsp file is needed.
+ * 
+ * The problem is E(x) = sum_p unary[p][x_p] + sum_{p1,p2 neighbors} pair[p1,p2][x_p1][x_p2], with
+ * pruned pairs having infinite energy. Lower bounds come from MPLP-style message passing, done as a
+ * reparametrization: each edge update moves energy between the pair table and the two unary
+ * tables without changing E(x), and the bound is the sum of the minima of all the tables.
+ * Exact solutions come from a depth-first branch and bound on that bound.
+ * 
+ * A reparametrization of a problem is also one of any problem on a subset of its rotamers, so
+ * the converged tables of the full problem (all unpruned rotamers) are computed once per energy
+ * matrix and every node starts from them; in the branch and bound, children start from their parent.
+ *
+ */
+public class WCSPBounder {
+	
+	static int maxIter = 100; //max number of sweeps over the edges per bound
+	static double convTol = 1e-6; //the bound is converged when a sweep raises it by less than this
+	static double pruneTol = 1e-6; //slack for round-off when comparing bounds to the cutoff energy
+	
+	//converged full problem for each energy matrix
+	private static WeakHashMap<Emat,WCSPBounder> fullProblems = new WeakHashMap<Emat,WCSPBounder>();
+	
+	private int numPos;
+	private Index3 dom[][]; //the rotamers at each position
+	private int edgeP1[]; //the positions of each edge (pair of neighbors), edgeP1[e] < edgeP2[e]
+	private int edgeP2[];
+	
+	private double unary[][];
+	private double pair[][]; //pair[e][r1*dom[edgeP2[e]].length + r2]
+	private boolean alive[][]; //rotamers that have not been removed by branching
+	private int numAlive[];
+	
+	private double m1[], m2[]; //scratch for the edge updates
+	
+	private ArrayList<HashMap<Index3,Integer>> rotIndex = null; //index of each rotamer in dom (only for the full problems)
+	
+	private WCSPBounder(){
+	}
+	
+	//Builds the problem for the given rotamers from the energy matrix
+	WCSPBounder(Emat emat, Index3 dom[][]){
+		init(emat, dom);
+		for(int p=0; p<numPos; p++){
+			for(int r=0; r<dom[p].length; r++)
+				unary[p][r] = emat.getSingleMinE(dom[p][r]);
+		}
+		for(int e=0; e<edgeP1.length; e++){
+			Index3 d1[] = dom[edgeP1[e]], d2[] = dom[edgeP2[e]];
+			for(int r1=0; r1<d1.length; r1++){
+				for(int r2=0; r2<d2.length; r2++){
+					if(emat.getPairPruned(d1[r1], d2[r2]))
+						pair[e][r1*d2.length+r2] = Double.POSITIVE_INFINITY;
+					else
+						pair[e][r1*d2.length+r2] = emat.getPairMinE(d1[r1], d2[r2]);
+				}
+			}
+		}
+	}
+	
+	//Copies the problem (for branching)
+	WCSPBounder(WCSPBounder b){
+		numPos = b.numPos;
+		dom = b.dom;
+		edgeP1 = b.edgeP1;
+		edgeP2 = b.edgeP2;
+		unary = new double[numPos][];
+		alive = new boolean[numPos][];
+		for(int p=0; p<numPos; p++){
+			unary[p] = b.unary[p].clone();
+			alive[p] = b.alive[p].clone();
+		}
+		numAlive = b.numAlive.clone();
+		pair = new double[edgeP1.length][];
+		for(int e=0; e<edgeP1.length; e++)
+			pair[e] = b.pair[e].clone();
+		m1 = new double[b.m1.length];
+		m2 = new double[b.m2.length];
+	}
+	
+	private void init(Emat emat, Index3 dom[][]){
+		numPos = dom.length;
+		this.dom = dom;
+		
+		int maxDom = 0;
+		unary = new double[numPos][];
+		alive = new boolean[numPos][];
+		numAlive = new int[numPos];
+		for(int p=0; p<numPos; p++){
+			unary[p] = new double[dom[p].length];
+			alive[p] = new boolean[dom[p].length];
+			for(int r=0; r<dom[p].length; r++)
+				alive[p][r] = true;
+			numAlive[p] = dom[p].length;
+			maxDom = Math.max(maxDom, dom[p].length);
+		}
+		m1 = new double[maxDom];
+		m2 = new double[maxDom];
+		
+		ArrayList<int[]> edges = new ArrayList<int[]>();
+		for(int p1=0; p1<numPos; p1++){
+			for(int p2=p1+1; p2<numPos; p2++){
+				if(emat.areNeighbors(p1, p2))
+					edges.add(new int[] {p1,p2});
+			}
+		}
+		edgeP1 = new int[edges.size()];
+		edgeP2 = new int[edges.size()];
+		pair = new double[edges.size()][];
+		for(int e=0; e<edges.size(); e++){
+			edgeP1[e] = edges.get(e)[0];
+			edgeP2[e] = edges.get(e)[1];
+			pair[e] = new double[dom[edgeP1[e]].length*dom[edgeP2[e]].length];
+		}
+	}
+	
+	//Returns the problem for the given rotamers, starting from the converged full problem for
+	//	the energy matrix if there is one for the current pruning
+	static WCSPBounder forRotamers(Emat emat, Index3 dom[][]){
+		WCSPBounder full = getFullProblem(emat, dom.length);
+		WCSPBounder b = full.restrict(emat, dom);
+		if(b == null) //the pruning changed since the full problem was built
+			b = new WCSPBounder(emat, dom);
+		return b;
+	}
+	
+	private static WCSPBounder getFullProblem(Emat emat, int numPos){
+		synchronized(fullProblems){
+			WCSPBounder full = fullProblems.get(emat);
+			if(full == null || full.numPos != numPos){
+				Index3 dom[][] = new Index3[numPos][];
+				for(int p=0; p<numPos; p++){
+					ArrayList<Index3> rots = new ArrayList<Index3>();
+					SinglesIterator iter = emat.singlesIterator(p);
+					while(iter.hasNext()){
+						EMatrixEntryWIndex emeWI = iter.next();
+						if(!emeWI.eme.isPruned())
+							rots.add(new Index3(p,emeWI.aa1(),emeWI.rot1()));
+					}
+					dom[p] = rots.toArray(new Index3[0]);
+				}
+				full = new WCSPBounder(emat, dom);
+				full.bound();
+				full.rotIndex = new ArrayList<HashMap<Index3,Integer>>(numPos);
+				for(int p=0; p<numPos; p++){
+					HashMap<Index3,Integer> index = new HashMap<Index3,Integer>();
+					for(int r=0; r<dom[p].length; r++)
+						index.put(dom[p][r], r);
+					full.rotIndex.add(index);
+				}
+				fullProblems.put(emat, full);
+			}
+			return full;
+		}
+	}
+	
+	//The (reparametrized) problem on a subset of the rotamers, or null if a rotamer is missing
+	//	or a pair that is forbidden here is no longer pruned in the energy matrix
+	private WCSPBounder restrict(Emat emat, Index3 newDom[][]){
+		if(newDom.length != numPos)
+			return null;
+		
+		int map[][] = new int[numPos][];
+		for(int p=0; p<numPos; p++){
+			map[p] = new int[newDom[p].length];
+			for(int r=0; r<newDom[p].length; r++){
+				Integer ind = rotIndex.get(p).get(newDom[p][r]);
+				if(ind == null)
+					return null;
+				map[p][r] = ind;
+			}
+		}
+		
+		WCSPBounder b = new WCSPBounder();
+		b.init(emat, newDom);
+		if(b.edgeP1.length != edgeP1.length)
+			return null;
+		for(int p=0; p<numPos; p++){
+			for(int r=0; r<newDom[p].length; r++)
+				b.unary[p][r] = unary[p][map[p][r]];
+		}
+		for(int e=0; e<edgeP1.length; e++){
+			int p1 = edgeP1[e], p2 = edgeP2[e];
+			int d2 = dom[p2].length, newD2 = newDom[p2].length;
+			for(int r1=0; r1<newDom[p1].length; r1++){
+				for(int r2=0; r2<newD2; r2++){
+					double E = pair[e][map[p1][r1]*d2 + map[p2][r2]];
+					boolean pruned = emat.getPairPruned(newDom[p1][r1], newDom[p2][r2]);
+					if(E == Double.POSITIVE_INFINITY && !pruned)
+						return null;
+					b.pair[e][r1*newD2+r2] = pruned ? Double.POSITIVE_INFINITY : E;
+				}
+			}
+		}
+		return b;
+	}
+	
+	//Lower bound on the energy of the problem (infinite if no assignment is allowed)
+	double bound(){
+		double lb = curBound();
+		for(int it=0; it<maxIter && lb < Double.POSITIVE_INFINITY; it++){
+			for(int e=0; e<edgeP1.length; e++)
+				updateEdge(e);
+			double newLB = curBound();
+			boolean converged = newLB - lb < convTol;
+			lb = newLB;
+			if(converged)
+				break;
+		}
+		return lb;
+	}
+	
+	//The sum of the minima of the tables over the live rotamers
+	private double curBound(){
+		double lb = 0;
+		for(int p=0; p<numPos; p++){
+			double min = Double.POSITIVE_INFINITY;
+			for(int r=0; r<unary[p].length; r++){
+				if(alive[p][r] && unary[p][r] < min)
+					min = unary[p][r];
+			}
+			lb += min;
+		}
+		for(int e=0; e<edgeP1.length; e++){
+			boolean a1[] = alive[edgeP1[e]], a2[] = alive[edgeP2[e]];
+			double c[] = pair[e];
+			double min = Double.POSITIVE_INFINITY;
+			for(int r1=0; r1<a1.length; r1++){
+				if(!a1[r1])
+					continue;
+				for(int r2=0; r2<a2.length; r2++){
+					if(a2[r2] && c[r1*a2.length+r2] < min)
+						min = c[r1*a2.length+r2];
+				}
+			}
+			lb += min;
+		}
+		return lb;
+	}
+	
+	//Moves the unary energies of the edge's positions into the pair table and gives each position
+	//	back half of its min-marginal, which leaves the pair table with a minimum of 0
+	private void updateEdge(int e){
+		int p1 = edgeP1[e], p2 = edgeP2[e];
+		double u1[] = unary[p1], u2[] = unary[p2], c[] = pair[e];
+		boolean a1[] = alive[p1], a2[] = alive[p2];
+		int d1 = u1.length, d2 = u2.length;
+		
+		for(int r1=0; r1<d1; r1++)
+			m1[r1] = Double.POSITIVE_INFINITY;
+		for(int r2=0; r2<d2; r2++)
+			m2[r2] = Double.POSITIVE_INFINITY;
+		for(int r1=0; r1<d1; r1++){
+			if(!a1[r1])
+				continue;
+			for(int r2=0; r2<d2; r2++){
+				if(!a2[r2])
+					continue;
+				double t = c[r1*d2+r2] + u1[r1] + u2[r2];
+				if(t < m1[r1])
+					m1[r1] = t;
+				if(t < m2[r2])
+					m2[r2] = t;
+			}
+		}
+		
+		for(int r1=0; r1<d1; r1++){
+			if(!a1[r1])
+				continue;
+			for(int r2=0; r2<d2; r2++){
+				if(!a2[r2])
+					continue;
+				double t = c[r1*d2+r2] + u1[r1] + u2[r2];
+				if(t < Double.POSITIVE_INFINITY) //then both min-marginals are finite
+					c[r1*d2+r2] = t - 0.5*m1[r1] - 0.5*m2[r2];
+				else
+					c[r1*d2+r2] = Double.POSITIVE_INFINITY;
+			}
+		}
+		for(int r1=0; r1<d1; r1++){
+			if(a1[r1])
+				u1[r1] = 0.5*m1[r1];
+		}
+		for(int r2=0; r2<d2; r2++){
+			if(a2[r2])
+				u2[r2] = 0.5*m2[r2];
+		}
+	}
+	
+	//Removes all rotamers at position p but r
+	private void assign(int p, int r){
+		for(int i=0; i<alive[p].length; i++)
+			alive[p][i] = (i == r);
+		numAlive[p] = 1;
+	}
+	
+	//Returns the lowest-energy assignment (rotamer index at each position) with an energy below maxE, or null if there is none
+	int[] solve(double maxE){
+		Search s = new Search(maxE, false);
+		s.branch(new WCSPBounder(this));
+		return s.bestConf;
+	}
+	
+	//Returns all the assignments with energy at most maxE
+	ArrayList<int[]> enumerate(double maxE){
+		Search s = new Search(maxE, true);
+		s.branch(new WCSPBounder(this));
+		return s.confs;
+	}
+	
+	Index3[][] getRotamers(){
+		return dom;
+	}
+	
+	private class Search {
+		
+		double cutoff; //only assignments below this (at most this, when enumerating) are wanted
+		boolean all;
+		int bestConf[] = null;
+		ArrayList<int[]> confs = new ArrayList<int[]>();
+		
+		Search(double maxE, boolean all){
+			cutoff = maxE;
+			this.all = all;
+		}
+		
+		void branch(WCSPBounder b){
+			double lb = b.bound();
+			if(lb == Double.POSITIVE_INFINITY || lb - pruneTol > cutoff || (!all && lb - pruneTol >= cutoff))
+				return;
+			
+			//branch on the position with the fewest rotamers left
+			int pos = -1;
+			for(int p=0; p<numPos; p++){
+				if(b.numAlive[p] > 1 && (pos == -1 || b.numAlive[p] < b.numAlive[pos]))
+					pos = p;
+			}
+			
+			if(pos == -1){ //full assignment; its energy is the bound
+				if(lb > cutoff || (!all && lb == cutoff))
+					return;
+				int conf[] = new int[numPos];
+				for(int p=0; p<numPos; p++){
+					for(int r=0; r<b.alive[p].length; r++){
+						if(b.alive[p][r])
+							conf[p] = r;
+					}
+				}
+				if(all)
+					confs.add(conf);
+				else{
+					bestConf = conf;
+					cutoff = lb;
+				}
+				return;
+			}
+			
+			//try the rotamers in order of their unary energy
+			ArrayList<Integer> order = new ArrayList<Integer>();
+			for(int r=0; r<b.alive[pos].length; r++){
+				if(b.alive[pos][r])
+					order.add(r);
+			}
+			final double u[] = b.unary[pos];
+			Collections.sort(order, new Comparator<Integer>(){
+				public int compare(Integer r1, Integer r2){
+					return Double.compare(u[r1], u[r2]);
+				}
+			});
+			
+			for(int r : order){
+				WCSPBounder child = new WCSPBounder(b);
+				child.assign(pos, r);
+				branch(child);
+			}
+		}
+	}
+}
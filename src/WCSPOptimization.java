@@ -41,6 +41,9 @@ public class WCSPOptimization {
 	double lowestE;
 	int confLength;
 	int numConstraints;
+	int maxDom;
+	double upperE; //only conformations below this energy are wanted
+	boolean wcspWritten = false;
 
 	RotConf bestConf; 
 
@@ -148,72 +151,8 @@ public class WCSPOptimization {
 		else
 			upperBound = getCostForFullConf(upperE, MAXUPPER);
 
-		//Make dat dir if it doesn't exist
-		File datDir = new File(outDir);
-		if(!datDir.exists()){
-			datDir.mkdirs();
-		}
-
-		try{  
-			FileWriter fstream = new FileWriter(outDir+File.separator+filename, false);
-			BufferedWriter out = new BufferedWriter(fstream);
-
-			KSParser.outputObject(lowestE,outDir+File.separator+filename+".minE");
-
-			//Write header
-			out.write("toulbar_osprey "+numVars+" "+maxDom+" "+numConstraints+" "+upperBound+"\n");
-			for(Index3 i[]:rots )
-				out.write(i.length+" ");
-			out.write("\n");
-
-
-			for(int p1=0; p1<node.confSoFar.length;p1++){
-				int ctr=0;
-				out.write("1 "+p1+" "+upperBound+" "+rots[p1].length+"\n");
-
-				for(int r1=0; r1<rots[p1].length;r1++){
-					Index3 rot = rots[p1][r1];
-					double E = emat.getSingleMinE(rot);
-					String cost = getCost(E,upperBound);
-					out.write(r1+" "+cost+"\n");
-				}
-
-			}
-
-			//Go through pairs
-
-			for(int p1=0; p1<node.confSoFar.length;p1++){
-				for(int p2=p1+1;p2<node.confSoFar.length;p2++){
-					if(p1!=p2 && emat.areNeighbors(p1, p2)){
-						String[] s = new String[rots[p1].length*rots[p2].length];
-						numPairs = 0;
-						for(int r1=0;r1<rots[p1].length;r1++){
-							Index3 rot1 = rots[p1][r1];
-							for(int r2=0;r2<rots[p2].length;r2++){ //The options here is that either p1 or p2 is already defined and I need to use confSoFar
-								Index3 rot2 = rots[p2][r2];
-
-								if(emat.getPairPruned(rot1, rot2)) //Will be null if not neighbors
-									continue;
-
-								double E = emat.getPairMinE(rot1, rot2);
-								String cost = getCost(E,upperBound);
-
-								s[numPairs] = (r1+" "+r2+" "+cost+"\n"); 
-								numPairs++;
-
-							}
-						}
-						out.write("2 "+p1+" "+p2+" "+upperBound+" "+(numPairs)+"\n");
-						for(int i=0; i<numPairs;i++)
-							out.write(s[i]);
-					}
-				}
-			}
-
-			out.close(); 
-		}catch(Exception E){
-			E.printStackTrace();
-		}
+		this.maxDom = maxDom;
+		this.upperE = upperE;
 
 	}
 
@@ -317,72 +256,8 @@ public class WCSPOptimization {
 		else
 			upperBound = getCostForFullConf(upperE, MAXUPPER);
 
-		//Make dat dir if it doesn't exist
-		File datDir = new File(outDir);
-		if(!datDir.exists()){
-			datDir.mkdirs();
-		}
-
-		try{  
-			FileWriter fstream = new FileWriter(outDir+File.separator+filename, false);
-			BufferedWriter out = new BufferedWriter(fstream);
-
-			KSParser.outputObject(lowestE,outDir+File.separator+filename+".minE");
-
-			//Write header
-			out.write("toulbar_osprey "+numVars+" "+maxDom+" "+numConstraints+" "+upperBound+"\n");
-			for(Index3 i[]:rots )
-				out.write(i.length+" ");
-			out.write("\n");
-
-
-			for(int p1=0; p1<node.confSoFar.length;p1++){
-				int ctr=0;
-				out.write("1 "+p1+" "+upperBound+" "+rots[p1].length+"\n");
-
-				for(int r1=0; r1<rots[p1].length;r1++){
-					Index3 rot = rots[p1][r1];
-					double E = emat.getSingleMinE(rot);
-					String cost = getCost(E,upperBound);
-					out.write(r1+" "+cost+"\n");
-				}
-
-			}
-
-			//Go through pairs
-
-			for(int p1=0; p1<node.confSoFar.length;p1++){
-				for(int p2=p1+1;p2<node.confSoFar.length;p2++){
-					if(p1!=p2 && emat.areNeighbors(p1, p2)){
-						String[] s = new String[rots[p1].length*rots[p2].length];
-						numPairs = 0;
-						for(int r1=0;r1<rots[p1].length;r1++){
-							Index3 rot1 = rots[p1][r1];
-							for(int r2=0;r2<rots[p2].length;r2++){ //The options here is that either p1 or p2 is already defined and I need to use confSoFar
-								Index3 rot2 = rots[p2][r2];
-
-								if(emat.getPairPruned(rot1, rot2)) //Will be null if not neighbors
-									continue;
-
-								double E = emat.getPairMinE(rot1, rot2);
-								String cost = getCost(E,upperBound);
-
-								s[numPairs] = (r1+" "+r2+" "+cost+"\n"); 
-								numPairs++;
-
-							}
-						}
-						out.write("2 "+p1+" "+p2+" "+upperBound+" "+(numPairs)+"\n");
-						for(int i=0; i<numPairs;i++)
-							out.write(s[i]);
-					}
-				}
-			}
-
-			out.close(); 
-		}catch(Exception E){
-			E.printStackTrace();
-		}
+		this.maxDom = maxDom;
+		this.upperE = upperE;
 
 	}
 
@@ -476,6 +351,18 @@ public class WCSPOptimization {
 		else
 			upperBound = getCostForFullConf(upperE, MAXUPPER);
 
+		this.maxDom = maxDom;
+		this.upperE = upperE;
+
+	}
+
+
+	//Writes the problem to the .wcsp file read by toulbar2 (only done when toulbar2 is run)
+	private void writeWCSPFile(){
+		if(wcspWritten)
+			return;
+		wcspWritten = true;
+
 		//Make dat dir if it doesn't exist
 		File datDir = new File(outDir);
 		if(!datDir.exists()){
@@ -489,13 +376,13 @@ public class WCSPOptimization {
 			KSParser.outputObject(lowestE,outDir+File.separator+filename+".minE");
 
 			//Write header
-			out.write("toulbar_osprey "+numVars+" "+maxDom+" "+numConstraints+" "+upperBound+"\n");
+			out.write("toulbar_osprey "+confLength+" "+maxDom+" "+numConstraints+" "+upperBound+"\n");
 			for(Index3 i[]:rots )
 				out.write(i.length+" ");
 			out.write("\n");
 
 
-			for(int p1=0; p1<node.confSoFar.length;p1++){
+			for(int p1=0; p1<confLength;p1++){
 				int ctr=0;
 				out.write("1 "+p1+" "+upperBound+" "+rots[p1].length+"\n");
 
@@ -510,11 +397,11 @@ public class WCSPOptimization {
 
 			//Go through pairs
 
-			for(int p1=0; p1<node.confSoFar.length;p1++){
-				for(int p2=p1+1;p2<node.confSoFar.length;p2++){
+			for(int p1=0; p1<confLength;p1++){
+				for(int p2=p1+1;p2<confLength;p2++){
 					if(p1!=p2 && emat.areNeighbors(p1, p2)){
 						String[] s = new String[rots[p1].length*rots[p2].length];
-						numPairs = 0;
+						int numPairs = 0;
 						for(int r1=0;r1<rots[p1].length;r1++){
 							Index3 rot1 = rots[p1][r1];
 							for(int r2=0;r2<rots[p2].length;r2++){ //The options here is that either p1 or p2 is already defined and I need to use confSoFar
@@ -542,11 +429,46 @@ public class WCSPOptimization {
 		}catch(Exception E){
 			E.printStackTrace();
 		}
-
 	}
 
-
+	//Problems without toulbar2 options are solved in process unless toulbar2 is selected
+	private boolean inProcess(String[] additionalCommands){
+		return additionalCommands == null && !EnvironmentVars.wcspSolver.equalsIgnoreCase("TOULBAR2");
+	}
+	
+	//The rotamers of the problem for the in-process solver, leaving out empty entries of rots
+	private Index3[][] getDomains(){
+		Index3 dom[][] = new Index3[confLength][];
+		for(int p=0; p<confLength; p++){
+			ArrayList<Index3> d = new ArrayList<Index3>();
+			for(Index3 rot : rots[p]){
+				if(rot != null)
+					d.add(rot);
+			}
+			dom[p] = d.toArray(new Index3[0]);
+		}
+		return dom;
+	}
+	
+	//Converts an in-process solution (indices into dom) to indices into rots and stores it
+	private double storeSolution(WCSPBounder b, int sol[]){
+		Index3 dom[][] = b.getRotamers();
+		Index3 solRots[] = new Index3[confLength];
+		for(int p=0; p<confLength; p++)
+			solRots[p] = dom[p][sol[p]];
+		return storeSolution(solRots);
+	}
+	
 	public double optimize(String[] additionalCommands){
+		
+		if(inProcess(additionalCommands)){
+			WCSPBounder b = WCSPBounder.forRotamers(emat, getDomains());
+			int sol[] = b.solve(upperE);
+			if(sol == null)
+				return Double.POSITIVE_INFINITY;
+			return storeSolution(b, sol);
+		}
+		writeWCSPFile();
 		//String[] commands = {"/home/home1/kroberts/Downloads/toulbar2.0.9.5.0-Release-sources/build/bin/Linux/toulbar2","-s",outDir+File.separator+filename};
 
 		int commandLength = 0;
@@ -633,6 +555,10 @@ public class WCSPOptimization {
 
 
 	public double getBound(String[] additionalCommands){
+		
+		if(inProcess(additionalCommands))
+			return WCSPBounder.forRotamers(emat, getDomains()).bound();
+		writeWCSPFile();
 		//String[] commands = {"/home/home1/kroberts/Downloads/toulbar2.0.9.5.0-Release-sources/build/bin/Linux/toulbar2","-s",outDir+File.separator+filename};
 
 		int commandLength = 0;
@@ -715,6 +641,14 @@ public class WCSPOptimization {
 
 
 	public void getAllConfs(double Ew, double bestE){
+		
+		if(inProcess(null)){
+			WCSPBounder b = WCSPBounder.forRotamers(emat, getDomains());
+			for(int sol[] : b.enumerate(Ew+bestE))
+				storeSolution(b, sol);
+			return;
+		}
+		writeWCSPFile();
 
 		long costL = getCostForFullConf(Ew+bestE, upperBound);
 		String cost = (new Long(costL)).toString();
@@ -1002,7 +936,6 @@ public class WCSPOptimization {
 
 		String[] solution = sol.split(" ");
 
-		EMatrixEntryWIndex[] curConf = new EMatrixEntryWIndex[confLength]; 
 		Index3 gmecRots[] = new Index3[confLength]; 
 
 		//Find the GMEC
@@ -1010,6 +943,16 @@ public class WCSPOptimization {
 		for(int p=0;p<solution.length-1;p++){
 			int index = new Integer(solution[p+1]);
 			gmecRots[p] = rots[p][index];
+		}
+		
+		return storeSolution(gmecRots);
+	}
+	
+	//Adds the conformation with the given rotamers to allConfs and returns its energy
+	private double storeSolution(Index3 gmecRots[]){
+		
+		EMatrixEntryWIndex[] curConf = new EMatrixEntryWIndex[confLength]; 
+		for(int p=0;p<gmecRots.length;p++){
 			int[] rot = {gmecRots[p].pos,gmecRots[p].aa,gmecRots[p].rot};
 			curConf[p] = new EMatrixEntryWIndex(emat.singles.getTerm(gmecRots[p]),rot);
 		}
@@ -43,8 +43,10 @@ public class WCSPSearch extends AStar {
 		RotConf bConf = wcspOpt.allConfs.poll();
 		if(bConf == null)
 			dummy.actualConf = null;
-		else
+		else{
 			dummy.actualConf = bConf.conf;
+			dummy.fScore = bConf.E;
+		}
 	
 		return dummy;
 	}